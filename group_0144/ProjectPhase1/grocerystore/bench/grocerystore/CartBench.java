@@ -0,0 +1,60 @@
+package grocerystore;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the scan-to-total path of a cart: scanning a product into the cart and reading the total
+ * shown to the customer. Prints the time per scan and the bytes allocated per scan once the cart
+ * has grown to the size of a large basket.
+ *
+ * Run with the store classes on the class path: java grocerystore.CartBench [scans] [lines]
+ */
+public class CartBench {
+
+  public static void main(String[] args) {
+    int scans = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+    int lines = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+
+    Product[] basket = new Product[lines];
+    for (int i = 0; i < lines; i++) {
+      basket[i] = new Product(String.valueOf(100000000000L + i), 1000000, "Bench", "Bench",
+          "Product " + i, 10, 1 + i % 12, 199 + 100 * i, "Bench", 99 + 100 * i);
+    }
+    Cart cart = new Cart();
+
+    //warms up, and grows the cart to its full size so the timed loop allocates nothing
+    long sink = run(cart, basket, scans / 10);
+
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long tid = Thread.currentThread().getId();
+    long bytesBefore = threads.getThreadAllocatedBytes(tid);
+    long start = System.nanoTime();
+    sink += run(cart, basket, scans);
+    long elapsed = System.nanoTime() - start;
+    long bytes = threads.getThreadAllocatedBytes(tid) - bytesBefore;
+
+    System.out.printf("%d scans over %d lines: %.1f ns/scan, %.3f bytes/scan (%s)%n", scans, lines,
+        (double) elapsed / scans, (double) bytes / scans, sink != 0 ? "ok" : "-");
+  }
+
+  /**
+   * Scans products into the cart, changes a quantity and takes a line out now and then, and reads
+   * the total after every scan.
+   */
+  private static long run(Cart cart, Product[] basket, int scans) {
+    long sink = 0;
+    for (int i = 0; i < scans; i++) {
+      Product p = basket[i % basket.length];
+      cart.add(p, 1);
+      if (i % 97 == 0) {
+        cart.set(p, 3);
+      }
+      if (i % 1009 == 0) {
+        cart.remove(p);
+      }
+      sink += cart.total(i % 2 == 0);
+    }
+    return sink;
+  }
+}
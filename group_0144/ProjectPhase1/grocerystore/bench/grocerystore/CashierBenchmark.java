@@ -0,0 +1,90 @@
+package grocerystore;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Checks out baskets of 10 and 60 lines and reads the total of a full cart. A checkout scans the
+ * basket first, since a cart cannot be checked out twice; it then sells the cart, books the profit
+ * and writes the sale to the history, whose csv files are group committed as they are in a store.
+ * Checkouts are run with and without a journal of the inventory, which records every line sold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx24g")
+public class CashierBenchmark {
+
+  private static final int PICKS = 1 << 16;
+
+  @Param({"1000", "10000", "100000", "1000000", "10000000"})
+  int skus;
+
+  @Param({"10", "60"})
+  int lines;
+
+  @Param({"false", "true"})
+  boolean journal;
+
+  Inventory inventory;
+  InventoryJournal inventoryJournal;
+  History history;
+  Cashier lane;
+  Cashier fullCart;
+  String[] upcs;
+  int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    inventory = SyntheticCatalog.inventory(skus);
+    if (journal) {
+      inventoryJournal = SyntheticCatalog.journal(inventory, "cashier");
+    }
+    history = new History(SyntheticCatalog.directory("cashier"));
+    lane = new Cashier(history, "2", "Bench");
+    fullCart = new Cashier(history, "3", "Bench");
+    int[] picks = SyntheticCatalog.picks(skus, PICKS, 7);
+    upcs = new String[PICKS];
+    for (int i = 0; i < PICKS; i++) {
+      upcs[i] = SyntheticCatalog.upc(picks[i]);
+    }
+    for (int i = 0; i < lines; i++) {
+      fullCart.addToCart(upcs[i], 1, inventory);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    history.close();
+    if (inventoryJournal != null) {
+      inventoryJournal.close();
+    }
+  }
+
+  @Benchmark
+  public boolean checkout() throws IOException {
+    for (int i = 0; i < lines; i++) {
+      lane.addToCart(upcs[next++ & (PICKS - 1)], 1, inventory);
+    }
+    return lane.checkout(inventory);
+  }
+
+  @Benchmark
+  public long getCartTotal() {
+    return fullCart.getCartTotal();
+  }
+}
@@ -0,0 +1,95 @@
+package grocerystore;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Records sales of five products at a time, and asks for the profit of each checkout in a month of
+ * a year of checkouts. The year holds one checkout per SKU, up to a million, so the profit history
+ * grows with the catalog the way it does in a store that sells more products.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx24g")
+public class HistoryBenchmark {
+
+  private static final int CARTS = 1 << 10;
+  private static final int MAX_CHECKOUTS = 1000000;
+  private static final LocalDateTime YEAR = LocalDateTime.of(2017, 1, 1, 0, 0);
+
+  @Param({"1000", "10000", "100000", "1000000", "10000000"})
+  int skus;
+
+  History sales;
+  History year;
+  Cashier cashier;
+  Cart[] carts;
+  String[][] months;
+  int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    sales = new History(SyntheticCatalog.directory("sales"));
+    year = new History(SyntheticCatalog.directory("year"));
+    cashier = new Cashier(sales, "2", "Bench");
+
+    int[] picks = SyntheticCatalog.picks(skus, CARTS * 5, 11);
+    carts = new Cart[CARTS];
+    for (int c = 0; c < CARTS; c++) {
+      carts[c] = new Cart();
+      for (int i = 0; i < 5; i++) {
+        carts[c].add(SyntheticCatalog.product(picks[c * 5 + i]), 1 + i);
+      }
+    }
+
+    int checkouts = Math.min(skus, MAX_CHECKOUTS);
+    long secondsApart = 365L * 24 * 3600 / checkouts;
+    for (int i = 0; i < checkouts; i++) {
+      year.recordProfit(cashier, YEAR.plusSeconds(i * secondsApart), 100 + i % 900);
+    }
+    year.sync();
+
+    Random random = new Random(3);
+    months = new String[CARTS][];
+    for (int i = 0; i < CARTS; i++) {
+      LocalDateTime start = YEAR.plusDays(random.nextInt(335));
+      months[i] = new String[] {start.toString(), start.plusDays(30).toString()};
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    sales.close();
+    year.close();
+  }
+
+  @Benchmark
+  public void recordSell() throws IOException {
+    Cart cart = carts[next++ & (CARTS - 1)];
+    sales.recordSell(cashier, cart, cart.profit(false));
+  }
+
+  @Benchmark
+  public Map<String, Long> getProfitHistory() {
+    String[] month = months[next++ & (CARTS - 1)];
+    return year.getProfitHistory(month[0], month[1]);
+  }
+}
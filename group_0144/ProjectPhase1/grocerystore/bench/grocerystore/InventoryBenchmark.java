@@ -0,0 +1,105 @@
+package grocerystore;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looks products up by UPC and sells them one at a time, the two things every scan at a checkout
+ * lane does, in inventories of a thousand to ten million SKUs. Products are picked at random so the
+ * larger inventories do not stay in cache. Each is run with and without a journal attached, since
+ * a store always has one and every sale is recorded in it.
+ *
+ * The benchmarks in this directory run under JMH. Build them with mvn package in this directory,
+ * then run java -jar target/benchmarks.jar [InventoryBenchmark|CashierBenchmark|...].
+ * Ten million SKUs need about 20 GB of heap; add -p skus=1000,100000 to run only some sizes, and
+ * -p journal=true to run only with a journal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx24g")
+public class InventoryBenchmark {
+
+  private static final int PICKS = 1 << 16;
+
+  @Param({"1000", "10000", "100000", "1000000", "10000000"})
+  int skus;
+
+  @Param({"false", "true"})
+  boolean journal;
+
+  Inventory inventory;
+  InventoryJournal inventoryJournal;
+  String[] upcs;
+  Product[] products;
+
+  /**
+   * Where a thread is in the picks.
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    int next;
+
+    int next() {
+      return next++ & (PICKS - 1);
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    inventory = SyntheticCatalog.inventory(skus);
+    if (journal) {
+      inventoryJournal = SyntheticCatalog.journal(inventory, "inventory");
+    }
+    int[] picks = SyntheticCatalog.picks(skus, PICKS, 42);
+    upcs = new String[PICKS];
+    products = new Product[PICKS];
+    for (int i = 0; i < PICKS; i++) {
+      upcs[i] = SyntheticCatalog.upc(picks[i]);
+      products[i] = inventory.getProduct(upcs[i]);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    if (inventoryJournal != null) {
+      inventoryJournal.close();
+    }
+  }
+
+  @Benchmark
+  public Product getProduct(Cursor cursor) {
+    return inventory.getProduct(upcs[cursor.next()]);
+  }
+
+  @Benchmark
+  public void sellProduct(Cursor cursor) {
+    inventory.sellProduct(products[cursor.next()]);
+  }
+
+  /**
+   * Four lanes selling at once, so products of the same lock stripe now and then wait for each
+   * other.
+   */
+  @Benchmark
+  @Threads(4)
+  public void sellProductFourLanes(Cursor cursor) {
+    inventory.sellProduct(products[cursor.next()]);
+  }
+}
@@ -0,0 +1,80 @@
+package grocerystore;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Opening a store: reading the initial inventory from its csv file, and the manager starting the
+ * sales that are due, one product in a hundred being on sale. Each is timed once per iteration,
+ * from a new inventory and a new manager.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx24g")
+public class SetupBenchmark {
+
+  @Param({"1000", "10000", "100000", "1000000", "10000000"})
+  int skus;
+
+  String csv;
+  Inventory inventory;
+  History history;
+  Manager manager;
+
+  @Setup
+  public void setUp() throws IOException {
+    csv = SyntheticCatalog.csv(skus);
+    inventory = SyntheticCatalog.inventory(skus);
+    history = new History(SyntheticCatalog.directory("setup"));
+  }
+
+  /**
+   * Schedules a sale that started yesterday and ends tomorrow for one product in a hundred, with a
+   * new manager whose sales have not been started.
+   */
+  @Setup(Level.Iteration)
+  public void scheduleSales() throws IOException {
+    manager = new Manager(history, "1", "Bench");
+    for (int i = 0; i < skus; i += 100) {
+      manager.addToSaleCart(SyntheticCatalog.upc(i), 1.49, inventory);
+    }
+    LocalDateTime now = LocalDateTime.now().withNano(0);
+    manager.putOnSale(now.minusDays(1).toString(), now.plusDays(1).toString());
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    history.close();
+  }
+
+  @Benchmark
+  public Inventory newInventory() throws IOException {
+    Inventory read = new Inventory();
+    IO.newInventory(csv, read);
+    return read;
+  }
+
+  @Benchmark
+  public Manager updateStore() throws ParseException {
+    manager.updateStore(inventory);
+    return manager;
+  }
+}
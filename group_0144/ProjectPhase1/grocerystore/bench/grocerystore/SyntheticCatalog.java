@@ -0,0 +1,131 @@
+package grocerystore;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Makes synthetic products for the benchmarks, the same every time for the same number of SKUs, so
+ * a benchmark run before a change can be compared with one run after it. Product i has the UPC
+ * 100000000000 + i, sits in one of 40 aisles, and has enough stock that a benchmark never sells it
+ * out.
+ */
+final class SyntheticCatalog {
+
+  static final int AISLES = 40;
+  static final int STOCK = 1 << 30;
+
+  private static final String[] SECTIONS = {"Dairy", "Produce", "Bakery", "Meat", "Frozen",
+      "Pantry", "Snacks", "Drinks", "Household", "Pet food"};
+
+  //every benchmark makes its products here before it makes a history, so the log of the store
+  //goes to the temporary directory rather than to log.txt in the directory the benchmark runs in
+  static {
+    EventLog.setFile(new File(System.getProperty("java.io.tmpdir"), "grocerystore-bench.log"));
+  }
+
+  private SyntheticCatalog() {
+  }
+
+  /**
+   * Returns the UPC of product i.
+   */
+  static String upc(int i) {
+    return String.valueOf(100000000000L + i);
+  }
+
+  /**
+   * Makes product i.
+   */
+  static Product product(int i) {
+    return new Product(upc(i), STOCK, SECTIONS[i % SECTIONS.length], "Subsection " + i % 97,
+        "Product " + i, 10, 1 + i % AISLES, regularPrice(i), "Distributor " + i % 211, cost(i));
+  }
+
+  private static long regularPrice(int i) {
+    return 199 + i % 5000;
+  }
+
+  private static long cost(int i) {
+    return 99 + i % 2500;
+  }
+
+  /**
+   * Makes an inventory of products 0 to skus - 1, the way IO.newInventory fills one from a csv.
+   */
+  static Inventory inventory(int skus) {
+    Inventory inventory = new Inventory();
+    for (int i = 0; i < skus; i++) {
+      Product p = product(i);
+      inventory.indexProduct(p);
+      inventory.addToLayout(p);
+    }
+    return inventory;
+  }
+
+  /**
+   * Writes products 0 to skus - 1 to a csv file in the format of InitialItems.csv, unless it has
+   * been written already, and returns its path.
+   */
+  static String csv(int skus) throws IOException {
+    File file = new File(System.getProperty("java.io.tmpdir"), "synthetic-" + skus + ".csv");
+    if (file.exists()) {
+      return file.getPath();
+    }
+    File tmp = new File(file.getPath() + ".tmp");
+    BufferedWriter out = new BufferedWriter(new FileWriter(tmp), 1 << 16);
+    try {
+      out.write("UPC Number,Quantity,Section,Subsection,Name,Threshold,Aisle Number,Price,"
+          + "DistributorName,Cost\n");
+      StringBuilder row = new StringBuilder(128);
+      for (int i = 0; i < skus; i++) {
+        row.setLength(0);
+        row.append(upc(i)).append(',').append(STOCK).append(',')
+            .append(SECTIONS[i % SECTIONS.length]).append(",Subsection ").append(i % 97)
+            .append(",Product ").append(i).append(",10,").append(1 + i % AISLES).append(',');
+        Money.append(row, regularPrice(i)).append(",Distributor ").append(i % 211).append(',');
+        Money.append(row, cost(i)).append('\n');
+        out.append(row);
+      }
+    } finally {
+      out.close();
+    }
+    Files.move(tmp.toPath(), file.toPath());
+    return file.getPath();
+  }
+
+  /**
+   * Returns count product numbers below skus picked at random, the same ones for the same seed.
+   */
+  static int[] picks(int skus, int count, long seed) {
+    Random random = new Random(seed);
+    int[] picks = new int[count];
+    for (int i = 0; i < count; i++) {
+      picks[i] = random.nextInt(skus);
+    }
+    return picks;
+  }
+
+  /**
+   * Attaches a journal in a new directory to inventory, the way a store does when it opens, so
+   * every change to the inventory is recorded and compacted into a snapshot as it is in a store.
+   */
+  static InventoryJournal journal(Inventory inventory, String name) throws IOException {
+    File directory = directory(name);
+    InventoryJournal journal = new InventoryJournal(
+        new File(directory, "inventory.journal").getPath(),
+        new File(directory, "inventory.ser").getPath(), InventoryJournal.DEFAULT_COMPACT_EVERY);
+    inventory.setJournal(journal);
+    return journal;
+  }
+
+  /**
+   * Makes an empty directory for the files of a benchmark's history or journal.
+   */
+  static File directory(String name) throws IOException {
+    return Files.createTempDirectory("grocerystore-" + name).toFile();
+  }
+}
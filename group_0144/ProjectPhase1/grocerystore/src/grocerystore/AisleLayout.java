@@ -0,0 +1,173 @@
+package grocerystore;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The AisleLayout knows which aisle every product of the store is in. Each aisle keeps its products
+ * in walk order (by section, then subsection, then UPC), and the aisle of each product is looked up
+ * by UPC, so moving a product to another aisle takes it straight out of its old spot instead of
+ * searching the old aisle for it. The products of an aisle are handed out as an unmodifiable
+ * snapshot that is made the first time it is asked for after the aisle changed, so a replanogram
+ * moving thousands of products only pays for the moves.
+ */
+class AisleLayout implements Serializable {
+
+  /**
+   * The order products are walked in within an aisle.
+   */
+  static final Comparator<Product> WALK_ORDER = new Comparator<Product>() {
+    public int compare(Product p1, Product p2) {
+      int c = compareText(p1.section, p2.section);
+      if (c == 0) {
+        c = compareText(p1.getSubSection(), p2.getSubSection());
+      }
+      return c != 0 ? c : p1.getUPC().compareTo(p2.getUPC());
+    }
+  };
+
+  /**
+   * Where a product is in the layout: its aisle, and the key it is kept under there.
+   */
+  private static class Spot implements Comparable<Spot>, Serializable {
+
+    final int aisle;
+    final String section;
+    final String subSection;
+    final String upc;
+
+    Spot(Product p) {
+      aisle = p.getAisleNo();
+      section = p.section;
+      subSection = p.getSubSection();
+      upc = p.getUPC();
+    }
+
+    public int compareTo(Spot other) {
+      int c = compareText(section, other.section);
+      if (c == 0) {
+        c = compareText(subSection, other.subSection);
+      }
+      return c != 0 ? c : upc.compareTo(other.upc);
+    }
+  }
+
+  /**
+   * aisles : the products of each aisle in walk order, by aisle number
+   * spots : the spot of every product in the layout, by UPC
+   * snapshots : the snapshot of each aisle that has not changed since it was made
+   */
+  private final TreeMap<Integer, TreeMap<Spot, Product>> aisles = new TreeMap<>();
+  private final Map<String, Spot> spots = new HashMap<>();
+  private transient Map<Integer, List<Product>> snapshots = new ConcurrentHashMap<>();
+
+  /**
+   * Puts a product in the aisle it says it is in, taking it out of the aisle it was in before if
+   * it was already in the layout.
+   *
+   * @param p the product
+   */
+  synchronized void place(Product p) {
+    remove(p.getUPC());
+    Spot spot = new Spot(p);
+    TreeMap<Spot, Product> aisle = aisles.get(spot.aisle);
+    if (aisle == null) {
+      aisle = new TreeMap<>();
+      aisles.put(spot.aisle, aisle);
+    }
+    aisle.put(spot, p);
+    spots.put(spot.upc, spot);
+    snapshots.remove(spot.aisle);
+  }
+
+  /**
+   * Takes a product out of the layout.
+   *
+   * @param upc the UPC of the product
+   * @return false if the product was not in the layout
+   */
+  synchronized boolean remove(String upc) {
+    Spot spot = spots.remove(upc);
+    if (spot == null) {
+      return false;
+    }
+    TreeMap<Spot, Product> aisle = aisles.get(spot.aisle);
+    aisle.remove(spot);
+    if (aisle.isEmpty()) {
+      aisles.remove(spot.aisle);
+    }
+    snapshots.remove(spot.aisle);
+    return true;
+  }
+
+  /**
+   * Returns the products of an aisle in walk order.
+   *
+   * @param aisleNum the aisle number
+   * @return an unmodifiable snapshot of the products of the aisle, empty if there are none
+   */
+  List<Product> aisle(int aisleNum) {
+    List<Product> snapshot = snapshots.get(aisleNum);
+    if (snapshot != null) {
+      return snapshot;
+    }
+    synchronized (this) {
+      TreeMap<Spot, Product> aisle = aisles.get(aisleNum);
+      if (aisle == null) {
+        return Collections.emptyList();
+      }
+      snapshot = Collections.unmodifiableList(new ArrayList<>(aisle.values()));
+      snapshots.put(aisleNum, snapshot);
+      return snapshot;
+    }
+  }
+
+  /**
+   * Returns the products of every aisle from first to last, aisle by aisle in walk order.
+   *
+   * @param first the first aisle number
+   * @param last the last aisle number
+   * @return an unmodifiable list of the products of the aisles
+   */
+  List<Product> aisles(int first, int last) {
+    List<Integer> numbers;
+    synchronized (this) {
+      if (last < first) {
+        return Collections.emptyList();
+      }
+      numbers = new ArrayList<>(aisles.subMap(first, true, last, true).keySet());
+    }
+    List<Product> products = new ArrayList<>();
+    for (int aisleNum : numbers) {
+      products.addAll(aisle(aisleNum));
+    }
+    return Collections.unmodifiableList(products);
+  }
+
+  /**
+   * Reads the layout and starts it with no snapshots, which are not serialized.
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    snapshots = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Compares two texts that may be null, null first.
+   */
+  private static int compareText(String s1, String s2) {
+    if (s1 == null || s2 == null) {
+      return s1 == null ? (s2 == null ? 0 : -1) : 1;
+    }
+    return s1.compareTo(s2);
+  }
+}
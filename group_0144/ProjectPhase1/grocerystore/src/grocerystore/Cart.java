@@ -0,0 +1,292 @@
+package grocerystore;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A Cart holds the products a worker has scanned and how many of each, in the order they were
+ * first scanned. Its lines are kept in parallel arrays (product, quantity, and the prices the line
+ * was first scanned at) with an open-addressing table from product to line, so scanning a product
+ * that is already in the cart or changing its quantity allocates nothing. The regular and member
+ * totals and profits of the cart are kept up to date as lines change, so reading a total does not
+ * go over the cart. Money is in cents, so the totals are exact however often lines change.
+ *
+ * A line keeps the prices it was first scanned at, as a receipt does, so the totals of a cart do
+ * not move under the cashier when a sale starts or ends halfway through it. The cart is also a map
+ * of product to quantity, for the code that reads carts as maps.
+ */
+class Cart extends AbstractMap<Product, Integer> implements Serializable {
+
+  /**
+   * products : the product of each line
+   * quantities : the quantity of each line
+   * prices : the prices of each line
+   * size : the number of lines
+   * index : the line of each product plus one, or 0 for an empty bucket
+   * total, memberTotal : the price of the cart to a customer who is not or is a member
+   * profit, memberProfit : the profit on the cart from a customer who is not or is a member
+   */
+  private Product[] products = new Product[8];
+  private int[] quantities = new int[8];
+  private Prices[] prices = new Prices[8];
+  private int size;
+  private transient int[] index = new int[16];
+  private long total;
+  private long memberTotal;
+  private long profit;
+  private long memberProfit;
+
+  /**
+   * Adds units of a product to the cart, in a new line if it is not in the cart yet.
+   *
+   * @param p the product
+   * @param q the number of units to add
+   * @return the quantity of the product in the cart now
+   */
+  int add(Product p, int q) {
+    int line = find(p);
+    if (line < 0) {
+      line = append(p);
+    }
+    quantities[line] += q;
+    account(line, q);
+    return quantities[line];
+  }
+
+  /**
+   * Sets the quantity of a product in the cart, taking its line out if the quantity is not
+   * positive.
+   *
+   * @param p the product
+   * @param q the new quantity
+   * @return the quantity the product had before, 0 if it was not in the cart
+   */
+  int set(Product p, int q) {
+    int line = find(p);
+    if (q <= 0) {
+      return line < 0 ? 0 : removeLine(line);
+    }
+    if (line < 0) {
+      line = append(p);
+    }
+    int old = quantities[line];
+    quantities[line] = q;
+    account(line, q - old);
+    return old;
+  }
+
+  /**
+   * Returns the quantity of a product in the cart.
+   *
+   * @param p the product
+   * @return the quantity, 0 if the product is not in the cart
+   */
+  int quantity(Product p) {
+    int line = find(p);
+    return line < 0 ? 0 : quantities[line];
+  }
+
+  /**
+   * Returns what the cart costs a customer.
+   *
+   * @param membershipStatus true if the customer is a member
+   * @return the total price of the cart, in cents
+   */
+  long total(boolean membershipStatus) {
+    return membershipStatus ? memberTotal : total;
+  }
+
+  /**
+   * Returns the profit the store makes on the cart.
+   *
+   * @param membershipStatus true if the customer is a member
+   * @return the total profit of the cart, in cents
+   */
+  long profit(boolean membershipStatus) {
+    return membershipStatus ? memberProfit : profit;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean containsKey(Object key) {
+    return key instanceof Product && find((Product) key) >= 0;
+  }
+
+  public Integer get(Object key) {
+    int line = key instanceof Product ? find((Product) key) : -1;
+    return line < 0 ? null : quantities[line];
+  }
+
+  public Integer put(Product p, Integer q) {
+    int old = set(p, q);
+    return old == 0 ? null : old;
+  }
+
+  public Integer remove(Object key) {
+    int line = key instanceof Product ? find((Product) key) : -1;
+    return line < 0 ? null : removeLine(line);
+  }
+
+  public void clear() {
+    Arrays.fill(products, 0, size, null);
+    Arrays.fill(prices, 0, size, null);
+    Arrays.fill(quantities, 0, size, 0);
+    Arrays.fill(index, 0);
+    size = 0;
+    total = 0;
+    memberTotal = 0;
+    profit = 0;
+    memberProfit = 0;
+  }
+
+  public Set<Entry<Product, Integer>> entrySet() {
+    return new AbstractSet<Entry<Product, Integer>>() {
+      public int size() {
+        return size;
+      }
+
+      public Iterator<Entry<Product, Integer>> iterator() {
+        return new Iterator<Entry<Product, Integer>>() {
+          private int next;
+          private int last = -1;
+
+          public boolean hasNext() {
+            return next < size;
+          }
+
+          public Entry<Product, Integer> next() {
+            if (next >= size) {
+              throw new NoSuchElementException();
+            }
+            last = next++;
+            return new SimpleImmutableEntry<>(products[last], quantities[last]);
+          }
+
+          public void remove() {
+            if (last < 0) {
+              throw new IllegalStateException();
+            }
+            removeLine(last);
+            next = last;
+            last = -1;
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Adds the prices and profits of a change of delta units in a line to the totals of the cart.
+   */
+  private void account(int line, int delta) {
+    Product p = products[line];
+    Prices linePrices = prices[line];
+    total += linePrices.current * delta;
+    memberTotal += linePrices.member * delta;
+    profit += p.getProfit(linePrices, false) * delta;
+    memberProfit += p.getProfit(linePrices, true) * delta;
+  }
+
+  /**
+   * Adds an empty line for a product at its current prices and returns it.
+   */
+  private int append(Product p) {
+    if (size == products.length) {
+      int capacity = 2 * products.length;
+      products = Arrays.copyOf(products, capacity);
+      quantities = Arrays.copyOf(quantities, capacity);
+      prices = Arrays.copyOf(prices, capacity);
+      index = new int[2 * capacity];
+      reindex();
+    }
+    Prices linePrices = p.getPrices();
+    int line = size++;
+    products[line] = p;
+    prices[line] = linePrices;
+    index[bucket(p)] = line + 1;
+    return line;
+  }
+
+  /**
+   * Takes a line out of the cart, moving the lines after it up one, and returns its quantity.
+   */
+  private int removeLine(int line) {
+    int q = quantities[line];
+    account(line, -q);
+    int after = size - line - 1;
+    System.arraycopy(products, line + 1, products, line, after);
+    System.arraycopy(quantities, line + 1, quantities, line, after);
+    System.arraycopy(prices, line + 1, prices, line, after);
+    size--;
+    products[size] = null;
+    prices[size] = null;
+    quantities[size] = 0;
+    Arrays.fill(index, 0);
+    reindex();
+    return q;
+  }
+
+  /**
+   * Returns the line of a product, or -1 if it is not in the cart.
+   */
+  private int find(Product p) {
+    int mask = index.length - 1;
+    for (int b = hash(p) & mask; index[b] != 0; b = (b + 1) & mask) {
+      if (products[index[b] - 1] == p) {
+        return index[b] - 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the first empty bucket for a product.
+   */
+  private int bucket(Product p) {
+    int mask = index.length - 1;
+    int b = hash(p) & mask;
+    while (index[b] != 0) {
+      b = (b + 1) & mask;
+    }
+    return b;
+  }
+
+  /**
+   * Puts every line in the empty index.
+   */
+  private void reindex() {
+    for (int line = 0; line < size; line++) {
+      index[bucket(products[line])] = line + 1;
+    }
+  }
+
+  /**
+   * Spreads the identity hash of a product over the bits the index uses.
+   */
+  private static int hash(Product p) {
+    int h = System.identityHashCode(p);
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Reads the cart and rebuilds its index, since the products read back have new identity hashes.
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    index = new int[2 * products.length];
+    reindex();
+  }
+}
@@ -8,10 +8,6 @@ import java.io.IOException;
  */
 public class Cashier extends Worker {
 
-  /*
-    cartTotal is the price displayed on the screen for the customer and cashier.
-   */
-  private Double cartTotal = 0.0;
   private boolean membershipCartStatus = false;
 
   /**
@@ -26,52 +22,37 @@ public class Cashier extends Worker {
     this.setWorkerType("Cashier");
   }
 
-  /**
-   * Adds a Product with a specified quantity to a cart.
-   *
-   * @param upc the unique UPC of this product.
-   * @param q the number of times this product is scanned (i.e. the quantity).
-   */
-  public void addToCart(String upc, Integer q, Inventory inventory) {
-    Product p = inventory.getProduct(upc);
-    super.addToCart(upc, q, inventory);
-    cartTotal = cartTotal + p.getCurrPrice() * q;
-  }
-
   /**
    * Clears the cart.
    */
   public void clearCart() {
     cart.clear();
-    cartTotal = 0.0;
     membershipCartStatus = false;
   }
 
   /**
-   * Returns the total price for a cart.
+   * Returns the total price for a cart. The cart keeps its total up to date as items are scanned,
+   * so this does not go over the cart.
    *
-   * @return The total price for a cart.
+   * @return The total price for a cart, in cents.
    */
-  public Double getCartTotal() {
-    Double cartTotal = 0.0;
-    for (Product p : cart.keySet()) {
-      if(membershipCartStatus)
-      {
-        cartTotal += p.getMemberPrice() * cart.get(p);
-      }
-      else
-      {
-        cartTotal += p.getCurrPrice() * cart.get(p);
-      }
-    }
-    return cartTotal;
+  public long getCartTotal() {
+    return cart.total(membershipCartStatus);
   }
 
-  // this is called before checking out
-  public void hasMembershipStatus(String memberId, Inventory inventory) {
+  /**
+   * Gives the cart member prices if memberId is the id of a member. Called before checking out.
+   *
+   * @param memberId the member id the customer gave
+   * @param inventory the inventory whose members are looked in
+   * @return true if the customer is a member
+   */
+  public boolean hasMembershipStatus(String memberId, Inventory inventory) {
     if (inventory.isAMember(memberId)) {
       membershipCartStatus = true;
+      return true;
     }
+    return false;
   }
 //  void addMember(String memberId, String firstName, String lastName, String phoneNum,
 //      Inventory inventory){
@@ -85,33 +66,22 @@ public class Cashier extends Worker {
 
   /**
    * Processes the items in a cart. Reduces the number of items in inventory and sends transaction
-   * information to the History.
+   * information to the History. The whole cart is sold at once, so if another lane has sold the
+   * last of one of its products in the meantime nothing is sold and the cart is kept.
    * @param inventory the inventory to look in
+   * @return true if the cart was checked out, false if there was not enough stock for it.
    * @throws IOException Throws an IOException.
    */
-  public void checkout(Inventory inventory) throws IOException {
-    Double totalProfit = 0.0;
-    for (Product p : cart.keySet()) {
-      Integer q = 0;
-      Integer quantity = cart.get(p);
-      while (q < quantity) {
-        inventory.sellProduct(p); // should this be product or upc
-        totalProfit += p.getProfit(membershipCartStatus);
-        q++;
-
-        // Checks if below threshold
-        if (p.needReorder && !p.getPendingOrder().isPending()) {
-          PendingOrder order= p.getPendingOrder();
-          order.addPendingOrder();
-          order.setPendingTrue();
-          inventory.addPendingOrder(p);
-        }
-      }
+  public boolean checkout(Inventory inventory) throws IOException {
+    if (!inventory.sellCart(cart)) {
+      return false;
     }
+    long totalProfit = cart.profit(membershipCartStatus);
     // Tells History that a transaction has gone through
     history.recordSell(this, cart, totalProfit);
     performMeasure += 1;
     clearCart();
+    return true;
   }
 
   /**
@@ -120,17 +90,10 @@ public class Cashier extends Worker {
    * loss was counted for this return to History.
    */
   public void customerReturn(Inventory inventory) throws IOException {
-    Double totalLoss = 0.0;
+    long totalLoss = -cart.profit(membershipCartStatus);
     inventory.cartToStorage(cart);
     for (Product p : cart.keySet()) {
-      Integer q = 0;
-      Integer quantity = cart.get(p);
-      String upc = p.getUPC();
-      while (q < quantity) {
-        inventory.receivedProduct(upc); // should this be product or upc
-        totalLoss -= p.getProfit(membershipCartStatus);
-        q++;
-      }
+      inventory.receivedProduct(p.getUPC(), cart.quantity(p));
     }
     // Tells History that a transaction has gone through
     history.recordReturn(this, totalLoss);
@@ -0,0 +1,272 @@
+package grocerystore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A CsvAppender keeps one history csv file open for as long as the store is running and appends
+ * lines to it. Lines are gathered in memory and written out together (group commit) once enough
+ * of them have built up, once the oldest of them has waited long enough, or when sync is called,
+ * so a busy checkout no longer opens and closes the file for every line. How long lines may wait
+ * and whether a commit forces them to the disk is set by the Durability of the appender.
+ *
+ * A commit takes the pending lines out under the monitor of the appender and writes and forces
+ * them after letting it go. A full group is handed to the flusher, so a lane appending a line
+ * never waits for the disk, unless the appender is EVERY_LINE or the flusher has fallen
+ * BACKLOG_GROUPS groups behind. Groups are written one at a time, in the order they were taken
+ * out.
+ */
+class CsvAppender {
+
+  /**
+   * How hard an appender tries to keep lines that were appended.
+   */
+  enum Durability {
+    /**
+     * Every line is written and forced to the disk before append returns.
+     */
+    EVERY_LINE(true),
+    /**
+     * Lines are written in groups, and each group is forced to the disk.
+     */
+    GROUP_COMMIT(true),
+    /**
+     * Lines are written in groups and left to the operating system to put on the disk.
+     */
+    BUFFERED(false);
+
+    final boolean force;
+
+    Durability(boolean force) {
+      this.force = force;
+    }
+  }
+
+  /**
+   * The defaults for the size and age a group of lines can reach before it is written.
+   */
+  static final int DEFAULT_MAX_BYTES = 64 << 10;
+  static final long DEFAULT_MAX_DELAY_MILLIS = 200;
+
+  /**
+   * The number of full groups that can wait for the flusher before lanes write them themselves.
+   */
+  private static final int BACKLOG_GROUPS = 4;
+
+  /**
+   * The thread that writes groups of lines that have waited too long, shared by every appender and
+   * by the inventory journals.
+   */
+  static final ScheduledExecutorService flusher =
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "csv-group-commit");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+
+  /**
+   * file : the csv file lines are appended to
+   * channel : the open channel of the file
+   * durability : how hard this appender tries to keep lines
+   * maxBytes : the size a group of lines can reach before it is written
+   * maxDelayMillis : how long the oldest line of a group can wait before it is written
+   * pending : the lines that have not been taken out to be written yet
+   * oldest : when the oldest pending line was appended, in nanoseconds
+   * closed : whether the file has been closed, after which nothing more can be appended
+   * handedOff : whether a full group has been handed to the flusher and not taken out yet
+   * timer : the task that writes groups that have waited too long
+   * writeLock : held while a group is taken out and written, so groups are written in order
+   */
+  private final File file;
+  private final FileChannel channel;
+  private final Durability durability;
+  private final int maxBytes;
+  private final long maxDelayMillis;
+  private final StringBuilder pending = new StringBuilder();
+  private long oldest;
+  private boolean closed;
+  private boolean handedOff;
+  private ScheduledFuture<?> timer;
+  private final Object writeLock = new Object();
+
+  /**
+   * Opens file for appending, creating it if it is not there.
+   *
+   * @param file the csv file
+   * @param durability how hard to try to keep appended lines
+   * @param maxBytes the size a group of lines can reach before it is written
+   * @param maxDelayMillis how long the oldest line of a group can wait before it is written
+   * @throws IOException Throws an IOException.
+   */
+  CsvAppender(File file, Durability durability, int maxBytes, long maxDelayMillis)
+      throws IOException {
+    this.file = file;
+    this.durability = durability;
+    this.maxBytes = maxBytes;
+    this.maxDelayMillis = maxDelayMillis;
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    if (durability != Durability.EVERY_LINE) {
+      timer = flusher.scheduleWithFixedDelay(new Runnable() {
+        public void run() {
+          commitIfDue();
+        }
+      }, maxDelayMillis, maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Opens file for appending with the default group size and delay.
+   *
+   * @param file the csv file
+   * @param durability how hard to try to keep appended lines
+   * @throws IOException Throws an IOException.
+   */
+  CsvAppender(File file, Durability durability) throws IOException {
+    this(file, durability, DEFAULT_MAX_BYTES, DEFAULT_MAX_DELAY_MILLIS);
+  }
+
+  /**
+   * Returns the file this appender appends to.
+   *
+   * @return the csv file
+   */
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Appends a line made of columns joined by commas.
+   *
+   * @param columns the columns of the line
+   * @return the line that was appended
+   * @throws ClosedChannelException if the appender has been closed
+   * @throws IOException Throws an IOException.
+   */
+  String append(List<String> columns) throws IOException {
+    String line = String.join(",", columns);
+    boolean now = false;
+    synchronized (this) {
+      if (closed) {
+        throw new ClosedChannelException();
+      }
+      if (pending.length() == 0) {
+        oldest = System.nanoTime();
+      }
+      pending.append(line).append('\n');
+      if (durability == Durability.EVERY_LINE
+          || pending.length() >= BACKLOG_GROUPS * maxBytes) {
+        now = true;
+      } else if (pending.length() >= maxBytes && !handedOff) {
+        handedOff = true;
+        flusher.execute(new Runnable() {
+          public void run() {
+            try {
+              commit(false);
+            } catch (IOException e) {
+              e.printStackTrace();
+            }
+          }
+        });
+      }
+    }
+    if (now) {
+      commit(false);
+    }
+    return line;
+  }
+
+  /**
+   * Writes every pending line and, unless the appender is BUFFERED, forces them to the disk.
+   *
+   * @throws IOException Throws an IOException.
+   */
+  void sync() throws IOException {
+    commit(false);
+  }
+
+  /**
+   * Writes the pending lines and closes the file.
+   *
+   * @throws IOException Throws an IOException.
+   */
+  void close() throws IOException {
+    synchronized (this) {
+      if (timer != null) {
+        timer.cancel(false);
+        timer = null;
+      }
+    }
+    commit(true);
+  }
+
+  /**
+   * Writes the pending lines if the oldest of them has waited long enough. Run by the flusher.
+   */
+  private void commitIfDue() {
+    synchronized (this) {
+      if (pending.length() == 0
+          || System.nanoTime() - oldest < TimeUnit.MILLISECONDS.toNanos(maxDelayMillis)) {
+        return;
+      }
+    }
+    try {
+      commit(false);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Takes the pending lines out and writes them as one group, then closes the file if close is
+   * set. Only taking the lines out holds the monitor of this appender. Lines that could not be
+   * written are put back in front of those appended since.
+   */
+  private void commit(boolean close) throws IOException {
+    synchronized (writeLock) {
+      String group;
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        group = pending.toString();
+        pending.setLength(0);
+        handedOff = false;
+        closed = close;
+      }
+      try {
+        if (!group.isEmpty()) {
+          ByteBuffer bytes = StandardCharsets.UTF_8.encode(group);
+          while (bytes.hasRemaining()) {
+            channel.write(bytes);
+          }
+          if (durability.force) {
+            channel.force(false);
+          }
+        }
+      } catch (IOException e) {
+        synchronized (this) {
+          pending.insert(0, group);
+          closed = false;
+        }
+        throw e;
+      }
+      if (close) {
+        channel.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,349 @@
+package grocerystore;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The CsvIngester reads the csv files the store is set up from (initial items, new shipments,
+ * members). Large files are cut into chunks at line ends, each chunk is memory mapped and parsed
+ * on its own thread, and the parsed rows are handed back in the order of the file on the thread
+ * that called read. Only a few chunks are in flight at a time, so a file of millions of rows never
+ * has to be in memory all at once.
+ *
+ * Fields may be quoted ("Milk, 2%") with a doubled quote standing for a quote inside a quoted
+ * field; a quoted field cannot span lines. A row that has the wrong number of fields, or that the
+ * RowParser refuses, is left out and reported as a Rejection with its line number instead of
+ * stopping the whole load.
+ */
+class CsvIngester {
+
+  /**
+   * The default size of the chunks a file is cut into.
+   */
+  static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+
+  /**
+   * Turns the fields of one row into a value. Throwing any RuntimeException (for example a
+   * NumberFormatException) rejects the row.
+   *
+   * @param <T> the type of the values
+   */
+  interface RowParser<T> {
+
+    T parse(String[] fields);
+  }
+
+  /**
+   * Receives the parsed rows, one at a time and in the order of the file.
+   *
+   * @param <T> the type of the values
+   */
+  interface RowConsumer<T> {
+
+    void accept(T row);
+  }
+
+  /**
+   * A row that was left out, with the line it was on and why.
+   */
+  static class Rejection {
+
+    final long line;
+    final String text;
+    final String reason;
+
+    Rejection(long line, String text, String reason) {
+      this.line = line;
+      this.text = text;
+      this.reason = reason;
+    }
+
+    public String toString() {
+      return "line " + line + ": " + reason + ": " + text;
+    }
+  }
+
+  /**
+   * columns : the number of fields every row must have
+   * header : true if the first line of the file is a header and is skipped
+   * chunkSize : the size of the chunks the file is cut into
+   */
+  private final int columns;
+  private final boolean header;
+  private final int chunkSize;
+
+  /**
+   * Creates an ingester for files with a header line.
+   *
+   * @param columns the number of fields every row must have
+   */
+  CsvIngester(int columns) {
+    this(columns, true, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Creates an ingester.
+   *
+   * @param columns the number of fields every row must have
+   * @param header true if the first line of the file is a header and is skipped
+   * @param chunkSize the size of the chunks the file is cut into
+   */
+  CsvIngester(int columns, boolean header, int chunkSize) {
+    this.columns = columns;
+    this.header = header;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Reads a csv file, parsing its rows with parser and handing them to consumer in file order.
+   *
+   * @param filePath the csv file
+   * @param parser turns the fields of a row into a value
+   * @param consumer receives the values, on the calling thread
+   * @param <T> the type of the values
+   * @return the rows that were left out
+   * @throws IOException Throws an IOException.
+   */
+  <T> List<Rejection> read(String filePath, RowParser<T> parser, RowConsumer<T> consumer)
+      throws IOException {
+    List<Rejection> rejections = new ArrayList<>();
+    RandomAccessFile file = new RandomAccessFile(filePath, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      long size = channel.size();
+      if (size <= chunkSize) {
+        Chunk<T> chunk = parse(channel, 0, size, parser);
+        drain(chunk, 0, consumer, rejections);
+        return rejections;
+      }
+
+      int threads = Runtime.getRuntime().availableProcessors();
+      ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "csv-ingester");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+      try {
+        Deque<Future<Chunk<T>>> inFlight = new ArrayDeque<>();
+        long start = 0;
+        long linesBefore = 0;
+        while (start < size || !inFlight.isEmpty()) {
+          while (start < size && inFlight.size() < 2 * threads) {
+            long end = lineEnd(channel, Math.min(start + chunkSize, size), size);
+            inFlight.add(pool.submit(newTask(channel, start, end, parser)));
+            start = end;
+          }
+          Chunk<T> chunk = inFlight.poll().get();
+          drain(chunk, linesBefore, consumer, rejections);
+          linesBefore += chunk.lines;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while reading " + filePath, e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException("Could not read " + filePath, e.getCause());
+      } finally {
+        pool.shutdownNow();
+      }
+    } finally {
+      file.close();
+    }
+    return rejections;
+  }
+
+  /**
+   * Reads a csv file and prints the rows that were left out to System.err.
+   *
+   * @param filePath the csv file
+   * @param parser turns the fields of a row into a value
+   * @param consumer receives the values, on the calling thread
+   * @param <T> the type of the values
+   * @return the number of rows that were left out
+   * @throws IOException Throws an IOException.
+   */
+  <T> int readAndReport(String filePath, RowParser<T> parser, RowConsumer<T> consumer)
+      throws IOException {
+    List<Rejection> rejections = read(filePath, parser, consumer);
+    for (Rejection rejection : rejections) {
+      System.err.println("Rejected row of " + filePath + ", " + rejection);
+    }
+    return rejections.size();
+  }
+
+  /**
+   * Returns a task that parses the chunk from start to end.
+   */
+  private <T> Callable<Chunk<T>> newTask(final FileChannel channel, final long start,
+      final long end, final RowParser<T> parser) {
+    return new Callable<Chunk<T>>() {
+      public Chunk<T> call() throws IOException {
+        return parse(channel, start, end, parser);
+      }
+    };
+  }
+
+  /**
+   * Hands the rows of a parsed chunk to consumer and adds its rejections, numbering their lines
+   * from the lines of the chunks before it.
+   */
+  private static <T> void drain(Chunk<T> chunk, long linesBefore, RowConsumer<T> consumer,
+      List<Rejection> rejections) {
+    for (T row : chunk.rows) {
+      consumer.accept(row);
+    }
+    for (Rejection rejection : chunk.rejections) {
+      rejections.add(new Rejection(linesBefore + rejection.line, rejection.text,
+          rejection.reason));
+    }
+  }
+
+  /**
+   * Returns the position just after the first line end at or after pos, or size if there is none.
+   */
+  private static long lineEnd(FileChannel channel, long pos, long size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(8192);
+    while (pos < size) {
+      buffer.clear();
+      int n = channel.read(buffer, pos);
+      if (n <= 0) {
+        break;
+      }
+      for (int i = 0; i < n; i++) {
+        if (buffer.get(i) == '\n') {
+          return pos + i + 1;
+        }
+      }
+      pos += n;
+    }
+    return size;
+  }
+
+  /**
+   * Maps and parses the lines from start to end. Line numbers of the rejections are counted from
+   * the start of the chunk.
+   */
+  private <T> Chunk<T> parse(FileChannel channel, long start, long end, RowParser<T> parser)
+      throws IOException {
+    Chunk<T> chunk = new Chunk<>();
+    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    CharBuffer text = StandardCharsets.UTF_8.decode(mapped);
+    int length = text.length();
+    int lineStart = 0;
+    while (lineStart < length) {
+      int lineEnd = lineStart;
+      while (lineEnd < length && text.get(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      int contentEnd = lineEnd;
+      if (contentEnd > lineStart && text.get(contentEnd - 1) == '\r') {
+        contentEnd--;
+      }
+      chunk.lines++;
+      boolean isHeader = header && start == 0 && chunk.lines == 1;
+      if (!isHeader && contentEnd > lineStart) {
+        String line = text.subSequence(lineStart, contentEnd).toString();
+        parseLine(chunk, line, parser);
+      }
+      lineStart = lineEnd + 1;
+    }
+    return chunk;
+  }
+
+  /**
+   * Parses one line into the chunk, or rejects it.
+   */
+  private <T> void parseLine(Chunk<T> chunk, String line, RowParser<T> parser) {
+    String[] fields = split(line);
+    if (fields == null) {
+      chunk.rejections.add(new Rejection(chunk.lines, line, "unterminated quote"));
+    } else if (fields.length != columns) {
+      chunk.rejections.add(new Rejection(chunk.lines, line,
+          "expected " + columns + " fields but found " + fields.length));
+    } else {
+      try {
+        chunk.rows.add(parser.parse(fields));
+      } catch (RuntimeException e) {
+        chunk.rejections.add(new Rejection(chunk.lines, line, e.toString()));
+      }
+    }
+  }
+
+  /**
+   * Splits a line into its fields, taking quotes into account.
+   *
+   * @param line the line
+   * @return the fields of the line, or null if a quoted field is never closed
+   */
+  static String[] split(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    int i = 0;
+    int length = line.length();
+    while (true) {
+      field.setLength(0);
+      if (i < length && line.charAt(i) == '"') {
+        i++;
+        while (true) {
+          if (i >= length) {
+            return null;
+          }
+          char c = line.charAt(i++);
+          if (c == '"') {
+            if (i < length && line.charAt(i) == '"') {
+              field.append('"');
+              i++;
+            } else {
+              break;
+            }
+          } else {
+            field.append(c);
+          }
+        }
+        //anything between the closing quote and the next comma is kept as it is
+        while (i < length && line.charAt(i) != ',') {
+          field.append(line.charAt(i++));
+        }
+      } else {
+        while (i < length && line.charAt(i) != ',') {
+          field.append(line.charAt(i++));
+        }
+      }
+      fields.add(field.toString());
+      if (i >= length) {
+        break;
+      }
+      i++;
+    }
+    return fields.toArray(new String[fields.size()]);
+  }
+
+  /**
+   * The rows and rejections of one chunk of a file.
+   */
+  private static class Chunk<T> {
+
+    final List<T> rows = new ArrayList<>();
+    final List<Rejection> rejections = new ArrayList<>();
+    long lines;
+  }
+}
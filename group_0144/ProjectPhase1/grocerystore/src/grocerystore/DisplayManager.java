@@ -1,6 +1,6 @@
 package grocerystore;
 
-import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -11,25 +11,48 @@ import java.util.Map.Entry;
 public class DisplayManager {
 
   /**
-   * Takes in a Map with Product key and another Map with String key and Double value as value and
-   * creates a neat String to be used to be displayed on the GUI.
+   * Takes in a Map with the name and UPC of a product as key and another Map with String key and
+   * price in cents as value and creates a neat String to be used to be displayed on the GUI.
    *
-   * @param pricemap Map with Product key and Map with String key and Double value as value
+   * @param pricemap Map with product key and Map with String key and price in cents as value
    * @return An organized string that contains all the information in pricemap
    */
-  public static String displayPriceHistory(Map<Product, Map<String, Double>> pricemap) {
+  public static String displayPriceHistory(Map<String, Map<String, Long>> pricemap) {
     StringBuilder informat = new StringBuilder();
-    for (Entry<Product, Map<String, Double>> item : pricemap.entrySet()) {
-      informat.append(item.getKey().getName()).append("\n");
-      Map<String, Double> datepricemap = item.getValue();
-      for (Entry<String, Double> dateprice : datepricemap.entrySet()) {
-        String datepriceline = dateprice.getKey() + " : " + dateprice.getValue();
-        informat.append(datepriceline).append("\n");
-      }
+    for (Entry<String, Map<String, Long>> item : pricemap.entrySet()) {
+      informat.append(item.getKey()).append("\n");
+      informat.append(displayMoneyMap(item.getValue()));
     }
     return informat.toString();
   }
 
+  /**
+   * Takes in a Map with K key and an amount of money in cents as value and creates a neat String,
+   * with the amounts in dollars, to be displayed on the GUI.
+   *
+   * @param amounts Map of K key and amount in cents
+   * @param <K> Could be String, Product, etc... that has toString() method
+   * @return An organized string that contains all the information in amounts
+   */
+  public static <K> String displayMoneyMap(Map<K, Long> amounts) {
+    StringBuilder informat = new StringBuilder();
+    for (Entry<K, Long> entry : amounts.entrySet()) {
+      informat.append(entry.getKey()).append(" : ");
+      Money.append(informat, entry.getValue()).append("\n");
+    }
+    return informat.toString();
+  }
+
+  /**
+   * Returns an amount of money in cents as dollars, such as "12.34", to be displayed on the GUI.
+   *
+   * @param cents the amount in cents
+   * @return the amount in dollars
+   */
+  public static String displayMoney(long cents) {
+    return Money.format(cents);
+  }
+
   /**
    * Takes in a Map with K and T and creates a neat String to be used to be displayed on the GUI.
    *
@@ -48,12 +71,12 @@ public class DisplayManager {
   }
 
   /**
-   * Returns a string representation of an array.
-   * @param items the array list to represent
-   * @param <E> the type of the items in the array list
-   * @return the string form of the array list
+   * Returns a string representation of a list.
+   * @param items the list to represent
+   * @param <E> the type of the items in the list
+   * @return the string form of the list
    */
-  public static <E> String displayArray(ArrayList<E> items) {
+  public static <E> String displayArray(List<E> items) {
     StringBuilder stringform = new StringBuilder();
     for (E item : items) {
       stringform.append(item).append("\n");
@@ -0,0 +1,312 @@
+package grocerystore;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The EventLog is the one log of the store (log.txt). Events are put into a ring buffer of
+ * preallocated records by the thread that made them, which only has to fill in a few typed fields,
+ * and a background writer thread takes them out in order, formats them as key=value lines and
+ * writes them to the file. A checkout therefore never waits on formatting or on the disk, unless
+ * the writer has fallen a whole ring behind, in which case the checkout waits for room rather than
+ * dropping events.
+ */
+final class EventLog {
+
+  /**
+   * The kinds of events, with the fields each of them fills in.
+   */
+  enum Kind {
+    ON_SALE,          // product, text (start), text2 (end), amount (price)
+    PRICE_CHANGE,     // product, amount (new price)
+    REORDER,          // product, quantity
+    SHELVED,          // product, quantity
+    RECEIVED,         // product, worker, quantity
+    REGISTERED,       // product, worker, quantity
+    SELL,             // product, quantity
+    RETURN,           // amount (loss)
+    PROFIT,           // amount
+    REG_PRICE_HISTORY,
+    SALE_PRICE_HISTORY,
+    ORDER_HISTORY,    // product
+    PROFIT_HISTORY,   // text (start), text2 (end)
+    WRITE_CSV         // text (file), text2 (line)
+  }
+
+  /**
+   * The number of records in the ring, a power of two.
+   */
+  private static final int CAPACITY = 1 << 14;
+  private static final String LOG_FILE = "log.txt";
+
+  //the file the log is written to, and the log once it has been started
+  private static String logFile = LOG_FILE;
+  private static EventLog instance;
+
+  /**
+   * One slot of the ring. Its fields are written by the thread that claimed it and read by the
+   * writer once the slot is published.
+   */
+  private static final class Record {
+
+    Kind kind;
+    long time;
+    String product;
+    String worker;
+    String text;
+    String text2;
+    int quantity;
+    long amount;
+  }
+
+  /**
+   * records : the ring of records
+   * published : the sequence number last published in each slot
+   * claimed : the next sequence number to be claimed by a thread making an event
+   * written : the next sequence number the writer will take out
+   * flushed : every event before this sequence number has been flushed to the file
+   * requested : the sequence number a caller of flush is waiting to be flushed up to
+   * sleeping : whether the writer is parked, waiting for a producer to wake it
+   * flushLock : the monitor callers of flush wait on until the writer flushes
+   * fileName : the file the events are written to
+   * writerThread : the background writer
+   */
+  private final Record[] records = new Record[CAPACITY];
+  private final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+  private final AtomicLong claimed = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+  private final AtomicLong flushed = new AtomicLong();
+  private final AtomicLong requested = new AtomicLong();
+  private volatile boolean sleeping;
+  private final Object flushLock = new Object();
+  private final String fileName;
+  private final Thread writerThread;
+
+  /**
+   * Creates the log and starts its writer.
+   *
+   * @param fileName the file the events are appended to
+   */
+  private EventLog(String fileName) {
+    this.fileName = fileName;
+    for (int i = 0; i < CAPACITY; i++) {
+      records[i] = new Record();
+      published.set(i, -1);
+    }
+    writerThread = new Thread(new Runnable() {
+      public void run() {
+        writeLoop();
+      }
+    }, "event-log-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+    Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+      public void run() {
+        flush();
+      }
+    }));
+  }
+
+  /**
+   * Returns the log of the store.
+   *
+   * @return the event log
+   */
+  static synchronized EventLog get() {
+    if (instance == null) {
+      instance = new EventLog(logFile);
+    }
+    return instance;
+  }
+
+  /**
+   * Writes the log to another file than log.txt in the current directory. Must be called before
+   * the log is first used.
+   *
+   * @param file the file the events are appended to
+   */
+  static synchronized void setFile(File file) {
+    if (instance != null) {
+      throw new IllegalStateException("the log is already written to " + instance.fileName);
+    }
+    logFile = file.getPath();
+  }
+
+  /**
+   * Puts an event into the ring.
+   *
+   * @param kind the kind of event
+   * @param product the name of the product, or null
+   * @param worker the worker, or null
+   * @param text the first text field, or null
+   * @param text2 the second text field, or null
+   * @param quantity the quantity, or 0
+   * @param amount the amount of money in cents, or 0
+   */
+  void log(Kind kind, String product, String worker, String text, String text2, int quantity,
+      long amount) {
+    long seq = claimed.getAndIncrement();
+    //wait for the writer to make room rather than overwrite an event it has not taken out yet
+    while (seq - written.get() >= CAPACITY) {
+      LockSupport.unpark(writerThread);
+      Thread.yield();
+    }
+    int slot = (int) (seq & (CAPACITY - 1));
+    Record record = records[slot];
+    record.kind = kind;
+    record.time = System.currentTimeMillis();
+    record.product = product;
+    record.worker = worker;
+    record.text = text;
+    record.text2 = text2;
+    record.quantity = quantity;
+    record.amount = amount;
+    //a volatile publish, so that the writer cannot go to sleep without seeing it or being woken
+    published.set(slot, seq);
+    if (sleeping) {
+      LockSupport.unpark(writerThread);
+    }
+  }
+
+  /**
+   * Waits until every event logged before this call is written to the file.
+   */
+  void flush() {
+    long target = claimed.get();
+    long current = requested.get();
+    while (current < target && !requested.compareAndSet(current, target)) {
+      current = requested.get();
+    }
+    LockSupport.unpark(writerThread);
+    synchronized (flushLock) {
+      while (flushed.get() < target && writerThread.isAlive()) {
+        try {
+          flushLock.wait(100);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Takes events out of the ring in order and writes them. The file is flushed whenever the ring
+   * is empty, or as soon as the events a caller of flush is waiting for have been written, so a
+   * steady stream of events cannot keep them in the buffer. With nothing to write the writer parks
+   * until a producer or a caller of flush wakes it.
+   */
+  private void writeLoop() {
+    StringBuilder line = new StringBuilder(128);
+    BufferedWriter out = null;
+    while (true) {
+      try {
+        if (out == null) {
+          out = new BufferedWriter(new FileWriter(fileName, true));
+        }
+        long seq = written.get();
+        int slot = (int) (seq & (CAPACITY - 1));
+        if (published.get(slot) == seq) {
+          format(records[slot], line);
+          written.lazySet(seq + 1);
+          out.write(line.toString());
+          out.newLine();
+          long wanted = requested.get();
+          if (seq + 1 >= wanted && flushed.get() < wanted) {
+            flushTo(out, seq + 1);
+          }
+        } else if (flushed.get() < seq) {
+          flushTo(out, seq);
+        } else {
+          sleeping = true;
+          if (published.get(slot) != seq && requested.get() <= flushed.get()) {
+            LockSupport.park(this);
+          }
+          sleeping = false;
+        }
+      } catch (IOException e) {
+        e.printStackTrace();
+        out = null;
+        LockSupport.parkNanos(1000000000L);
+      }
+    }
+  }
+
+  /**
+   * Flushes the file and wakes the callers of flush waiting for the events before seq.
+   */
+  private void flushTo(BufferedWriter out, long seq) throws IOException {
+    out.flush();
+    flushed.set(seq);
+    synchronized (flushLock) {
+      flushLock.notifyAll();
+    }
+  }
+
+  /**
+   * Formats a record as a key=value line.
+   */
+  private static void format(Record record, StringBuilder line) {
+    line.setLength(0);
+    line.append(Instant.ofEpochMilli(record.time)).append(" event=").append(record.kind);
+    field(line, "product", record.product);
+    field(line, "worker", record.worker);
+    switch (record.kind) {
+      case ON_SALE:
+      case PROFIT_HISTORY:
+        field(line, "start", record.text);
+        field(line, "end", record.text2);
+        break;
+      case WRITE_CSV:
+        field(line, "file", record.text);
+        field(line, "line", record.text2);
+        break;
+      default:
+        break;
+    }
+    switch (record.kind) {
+      case REORDER:
+      case SHELVED:
+      case RECEIVED:
+      case REGISTERED:
+      case SELL:
+        line.append(" quantity=").append(record.quantity);
+        break;
+      case ON_SALE:
+      case PRICE_CHANGE:
+        Money.append(line.append(" price="), record.amount);
+        break;
+      case RETURN:
+        Money.append(line.append(" loss="), record.amount);
+        break;
+      case PROFIT:
+        Money.append(line.append(" profit="), record.amount);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Appends a quoted text field if it is there.
+   */
+  private static void field(StringBuilder line, String key, String value) {
+    if (value != null) {
+      line.append(' ').append(key).append("=\"");
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '"' || c == '\\') {
+          line.append('\\');
+        }
+        line.append(c);
+      }
+      line.append('"');
+    }
+  }
+}
@@ -3,10 +3,14 @@ package grocerystore;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.channels.ClosedChannelException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -16,21 +20,25 @@ import java.util.Set;
  * mainly for manager to later look up things such as the profits made at when and when something
  * was ordered.When these things are recorded they are recorded to separate csv files so that they
  * can be printed if needed.
+ *
+ * Records are added to events and the profit ledger while holding the monitor of the history, and
+ * their csv lines are appended after letting it go, so a lane whose line makes a csv file write to
+ * the disk never holds up the lanes recording after it.
  */
 public class History implements Serializable {
 
-  //Array list of HistoryObjects
-  private List<HistoryObject> historylist;
-  //Hash map of date and profit made
-  private Map<String, Double> profitmap;
-  //Hash map of product and Hash map of date and new regular price
-  private Map<Product, Map<String, Double>> regmap;
-  //Hash map of product and Hash map of date and new sale price
-  private Map<Product, Map<String, Double>> salemap;
+  //Binary records of the sales, orders, reshelving, price changes and discounts
+  private HistoryEvents events;
+  //Time ordered ledger of the profit made at each checkout and return
+  private ProfitLedger profits;
+  //Name and UPC of the products whose price changes and discounts are in events, by UPC
+  private UpcIndex<String> priced;
   //Logger object that does logging only
   private Logging logging;
 
   //========== Files ===========
+  //the directory the files are kept in, or null for the current working directory
+  private final File directory;
   File salefile;
   File pricefile;
   File orderfile;
@@ -38,103 +46,262 @@ public class History implements Serializable {
   File profitfile;
   File shelvedfile;
 
+  //how hard the csv files try to keep their lines, and the open appender of each file
+  private CsvAppender.Durability durability = CsvAppender.Durability.GROUP_COMMIT;
+  private transient Map<File, CsvAppender> appenders;
+
   /**
    * When history constructor is called, necessary files are created if they don't already exist.
-   * Handler is created and a formatter is added to that handler. Finally, handler is added into the
-   * logger.
+   * Events are logged to the store's EventLog, which is shared by every History.
    *
    * @throws IOException Throws an IOException.
    */
   public History() throws IOException {
-    historylist = new ArrayList<>();
-    profitmap = new HashMap<>();
-    // This should have products inside...
-    regmap = new HashMap<Product, Map<String, Double>>();
-    salemap = new HashMap<Product, Map<String, Double>>();
+    this(null);
+  }
+
+  /**
+   * Creates a history whose files are kept in a directory of their own, such as the directory of
+   * one store of a cluster.
+   *
+   * @param directory the directory of the files, or null for the current working directory
+   * @throws IOException Throws an IOException.
+   */
+  History(File directory) throws IOException {
+    this.directory = directory;
+    events = new HistoryEvents(directory);
+    profits = new ProfitLedger(directory);
+    priced = new UpcIndex<>();
     //create csv files if they aren't there already
-    salefile = IO.createNewCSVFile("salehistory.csv");
-    pricefile = IO.createNewCSVFile("pricehistory.csv");
-    orderfile = IO.createNewCSVFile("orderhistory.csv");
-    sellfile = IO.createNewCSVFile("sellhistory.csv");
-    profitfile = IO.createNewCSVFile("profithistory.csv");
-    shelvedfile = IO.createNewCSVFile("shelvedhistory.csv");
+    salefile = IO.createNewCSVFile(directory, "salehistory.csv");
+    pricefile = IO.createNewCSVFile(directory, "pricehistory.csv");
+    orderfile = IO.createNewCSVFile(directory, "orderhistory.csv");
+    sellfile = IO.createNewCSVFile(directory, "sellhistory.csv");
+    profitfile = IO.createNewCSVFile(directory, "profithistory.csv");
+    shelvedfile = IO.createNewCSVFile(directory, "shelvedhistory.csv");
     logging = new Logging();
   }
 
+  /**
+   * Returns the directory the files of this history are kept in.
+   *
+   * @return the directory, or null for the current working directory
+   */
+  File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Adds a record to the end of events.
+   *
+   * @param type the type of the record
+   * @param worker the id of the worker that did it, or -1
+   * @param start when it happened (or the discount starts)
+   * @param end when the discount ends, otherwise the same as start
+   * @param p the product of the record
+   * @param quantity the number sold, ordered or reshelved, or 0
+   * @param salePrice the sale price of the product in cents, or 0
+   */
+  private void addRecord(HistoryEvents.Type type, int worker, LocalDateTime start,
+      LocalDateTime end, Product p, int quantity, long salePrice) {
+    long upc = UpcIndex.parse(p.getUPC(), false);
+    events.append(type, worker, events.toMillis(start), events.toMillis(end), upc, quantity,
+        p.getStock(), p.getRegPrice(), salePrice);
+    if ((type == HistoryEvents.Type.DISCOUNT || type == HistoryEvents.Type.PRICE_CHANGE)
+        && upc > 0) {
+      priced.put(upc, p.toString());
+    }
+  }
+
+  /**
+   * Returns the id of a worker as an int, or -1 if it is not a number.
+   */
+  private static int workerId(Worker w) {
+    try {
+      return Integer.parseInt(w.id);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the appender of a csv file, opening it the first time it is needed (also after this
+   * history is deserialized). Must be called while holding the monitor of this history.
+   *
+   * @param file the csv file
+   * @return the appender of the file
+   * @throws IOException Throws an IOException.
+   */
+  private CsvAppender appender(File file) throws IOException {
+    if (appenders == null) {
+      appenders = new HashMap<>();
+    }
+    CsvAppender appender = appenders.get(file);
+    if (appender == null) {
+      appender = new CsvAppender(file, durability);
+      appenders.put(file, appender);
+    }
+    return appender;
+  }
+
+  /**
+   * Sets how hard the csv files try to keep the lines written to them. Lines already waiting are
+   * written out first.
+   *
+   * @param durability the durability of the csv files
+   * @throws IOException Throws an IOException.
+   */
+  void setDurability(CsvAppender.Durability durability) throws IOException {
+    synchronized (this) {
+      this.durability = durability;
+    }
+    close();
+  }
+
+  /**
+   * Writes every line still waiting to its csv file.
+   *
+   * @throws IOException Throws an IOException.
+   */
+  void sync() throws IOException {
+    List<CsvAppender> open;
+    synchronized (this) {
+      if (appenders == null) {
+        return;
+      }
+      open = new ArrayList<>(appenders.values());
+    }
+    for (CsvAppender appender : open) {
+      appender.sync();
+    }
+  }
+
+  /**
+   * Writes every line still waiting and closes the csv files. They are opened again if anything
+   * else is recorded.
+   *
+   * @throws IOException Throws an IOException.
+   */
+  void close() throws IOException {
+    Map<File, CsvAppender> open;
+    synchronized (this) {
+      open = appenders;
+      appenders = null;
+    }
+    if (open != null) {
+      for (CsvAppender appender : open.values()) {
+        appender.close();
+      }
+    }
+  }
+
+  /**
+   * Appends lines to a csv file and logs them. Called without holding the monitor of this
+   * history, which is only taken to look the appender up. A line whose appender was closed after
+   * it was looked up goes to the file opened again.
+   *
+   * @param file the csv file
+   * @param lines the columns of each line
+   * @throws IOException Throws an IOException.
+   */
+  private void writeCsv(File file, List<List<String>> lines) throws IOException {
+    for (List<String> columns : lines) {
+      while (true) {
+        CsvAppender appender;
+        synchronized (this) {
+          appender = appender(file);
+        }
+        try {
+          IO.writeToCsv(appender, columns, logging);
+          break;
+        } catch (ClosedChannelException e) {
+          //closed by close or setDurability since it was looked up
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of sales, orders, reshelvings, price changes and discounts recorded.
+   *
+   * @return the number of records in events
+   */
+  synchronized int eventCount() {
+    return events.size();
+  }
+
+  /**
+   * Returns the number of checkouts and returns whose profit was recorded.
+   *
+   * @return the number of entries in the profit ledger
+   */
+  synchronized int profitCount() {
+    return profits.size();
+  }
+
   /**
    * Records the start and end date of sale of products and their sale prices and who this operation
-   * was done by to HistoryObject and salemap. Then, write them down to salehistory.csv. Also,
+   * was done by to events. Then, write them down to salehistory.csv. Also,
    * records what happened to log.txt.
    *
    * @param w the worker that is performing the operation
    * @param start start date of sale
    * @param end end date of sale
-   * @param pricing map of product and the sale price
+   * @param pricing map of product and the sale price, in cents
    * @throws IOException Throws an IOException.
    */
-  void recordOnSale(Worker w, String start, String end, Map<Product, Double> pricing)
-      throws IOException {
+  void recordOnSale(Worker w, String start, String end,
+      Map<Product, Long> pricing) throws IOException {
     Set<Product> products = pricing.keySet();
-    for (Product p : products) {
-      ArrayList<String> csvline = new ArrayList<>(6);
-      if (salemap.containsKey(p)) {
-        salemap.get(p).put(start, pricing.get(p));
-      } else {
-        Map<String, Double> tempmap = new HashMap<String, Double>();
-        tempmap.put(start, pricing.get(p));
-        salemap.put(p, tempmap);
+    List<List<String>> lines = new ArrayList<>(products.size());
+    synchronized (this) {
+      for (Product p : products) {
+        addRecord(HistoryEvents.Type.DISCOUNT, workerId(w), LocalDateTime.parse(start),
+            LocalDateTime.parse(end), p, 0, pricing.get(p));
       }
-      HistoryObject histob = new HistoryObject("discount", start, end, w,
-          p);
-      historylist.add(histob);
-      csvline.add(start);
-      csvline.add(end);
-      csvline.add(pricing.get(p).toString());
-      csvline.add(String.valueOf(p.getRegPrice()));
-      csvline.add(p.getUPC());
-      csvline.add(w.toString());
-      IO.writeToCsv(salefile, csvline, this.logging);
-      logging.logOnSale(p.getName(), start, end, pricing.get(p).toString());
+    }
+    for (Product p : products) {
+      lines.add(Arrays.asList(start, end, Money.format(pricing.get(p)),
+          Money.format(p.getRegPrice()), p.getUPC(), w.toString()));
+    }
+    writeCsv(salefile, lines);
+    for (Product p : products) {
+      logging.logOnSale(p.getName(), start, end, pricing.get(p));
     }
   }
 
   /**
-   * Records the change of a products' regular prices and by who into HistoryObject and regmap.
+   * Records the change of a products' regular prices and by who into events.
    * Writes down those changes into pricehistory.csv and log.txt.
    *
    * @param w the worker that is performing the action
-   * @param pricing map of product and the new regular price
+   * @param pricing map of product and the new regular price, in cents
    * @throws IOException Throws an IOException.
    */
-  void recordChangeRegPrice(Worker w, Map<Product, Double> pricing)
+  void recordChangeRegPrice(Worker w, Map<Product, Long> pricing)
       throws IOException {
     LocalDateTime today = LocalDateTime.now();
     String dateoftoday = today.toString();
     Set<Product> products = pricing.keySet();
-    ArrayList<String> csvline = new ArrayList<>(4);
-    for (Product p : products) {
-      csvline.clear();
-      if (regmap.containsKey(p)) {
-        regmap.get(p).put(dateoftoday, pricing.get(p));
-      } else {
-        Map<String, Double> tempmap = new HashMap<String, Double>();
-        tempmap.put(dateoftoday, pricing.get(p));
-        regmap.put(p, tempmap);
+    List<List<String>> lines = new ArrayList<>(products.size());
+    synchronized (this) {
+      for (Product p : products) {
+        addRecord(HistoryEvents.Type.PRICE_CHANGE, workerId(w), today, today, p, 0,
+            p.getCurrPrice());
       }
-      HistoryObject histob = new HistoryObject("pricechange", dateoftoday, dateoftoday, w,
-          p);
-      historylist.add(histob);
-      csvline.add(dateoftoday);
-      csvline.add(String.valueOf(p.getRegPrice()));
-      csvline.add(p.getUPC());
-      csvline.add(w.toString());
-      IO.writeToCsv(pricefile, csvline, this.logging);
-      logging.logChangePrice(p.getName(), String.valueOf(p.getRegPrice()));
+    }
+    for (Product p : products) {
+      lines.add(Arrays.asList(dateoftoday, Money.format(p.getRegPrice()), p.getUPC(),
+          w.toString()));
+    }
+    writeCsv(pricefile, lines);
+    for (Product p : products) {
+      logging.logChangePrice(p.getName(), p.getRegPrice());
     }
   }
 
   /**
-   * Records the number of orders of a product and by who into HistoryObjects. Writes down those
+   * Records the number of orders of a product into events. Writes down those
    * changes into pricehistory.csv and log.txt.
    *
    * @param product product that is being ordered
@@ -144,22 +311,16 @@ public class History implements Serializable {
   void recordReorder(Product product, Integer quantity) throws IOException {
     LocalDateTime today = LocalDateTime.now();
     String dateoftoday = today.toString();
-    HistoryObject histob = new HistoryObject("order", dateoftoday, dateoftoday,
-        product.getDistributor(), product, quantity);
-    historylist.add(histob);
-    ArrayList<String> csvline = new ArrayList<>(5);
-    csvline.add(dateoftoday);
-    csvline.add(quantity.toString());
-    csvline.add(product.getName());
-    csvline.add(product.getUPC());
-    csvline.add(product.getDistributor());
-    IO.writeToCsv(orderfile, csvline, this.logging);
-    logging.logReorder(product.getName(), quantity.toString());
+    synchronized (this) {
+      addRecord(HistoryEvents.Type.ORDER, -1, today, today, product, quantity, 0);
+    }
+    writeCsv(orderfile, Collections.singletonList(Arrays.asList(dateoftoday,
+        quantity.toString(), product.getName(), product.getUPC(), product.getDistributor())));
+    logging.logReorder(product.getName(), quantity);
   }
 
   /**
-   * Go through each product and integer in map and make a HistoryObject and add it to the
-   * historylist.
+   * Go through each product and integer in map and add a reshelf record of it to events.
    *
    * @param w the worker that is performing this action
    * @param map map of product and integer amount of products being shelved
@@ -169,18 +330,19 @@ public class History implements Serializable {
     Set<Product> products = map.keySet();
     LocalDateTime today = LocalDateTime.now();
     String dateoftoday = today.toString();
-    ArrayList<String> csvline = new ArrayList<>(5);
+    List<List<String>> lines = new ArrayList<>(products.size());
+    synchronized (this) {
+      for (Product p : products) {
+        addRecord(HistoryEvents.Type.RESHELF, workerId(w), today, today, p, map.get(p), 0);
+      }
+    }
     for (Product p : products) {
-      csvline.clear();
-      HistoryObject histob = new HistoryObject("reshelf", dateoftoday, dateoftoday, w, p,
-          map.get(p));
-      csvline.add(dateoftoday);
-      csvline.add(p.getName());
-      csvline.add(p.getUPC());
-      csvline.add(map.get(p).toString());
-      csvline.add(w.toString());
-      IO.writeToCsv(shelvedfile, csvline, this.logging);
-      logging.logShelved(p.getName(), map.get(p).toString());
+      lines.add(Arrays.asList(dateoftoday, p.getName(), p.getUPC(), map.get(p).toString(),
+          w.toString()));
+    }
+    writeCsv(shelvedfile, lines);
+    for (Product p : products) {
+      logging.logShelved(p.getName(), map.get(p));
     }
   }
 
@@ -190,10 +352,10 @@ public class History implements Serializable {
    * @param w the receiver that is receiving
    * @param cart map of products and integer of how many they were received
    */
-  void recordReceived(Worker w, Map<Product, Integer> cart) {
+  synchronized void recordReceived(Worker w, Map<Product, Integer> cart) {
     Set<Product> products = cart.keySet();
     for (Product product : products) {
-      logging.logReceived(product.getName(), w.toString(), cart.get(product).toString());
+      logging.logReceived(product.getName(), w.toString(), cart.get(product));
     }
   }
 
@@ -203,10 +365,10 @@ public class History implements Serializable {
    * @param w the receiver that is registering
    * @param cart map of products and integer of how many they were registered
    */
-  void recordRegistered(Worker w, Map<Product, Integer> cart) {
+  synchronized void recordRegistered(Worker w, Map<Product, Integer> cart) {
     Set<Product> products = cart.keySet();
     for (Product product : products) {
-      logging.logRegistered(product.getName(), w.toString(), cart.get(product).toString());
+      logging.logRegistered(product.getName(), w.toString(), cart.get(product));
     }
   }
 
@@ -217,42 +379,41 @@ public class History implements Serializable {
    *
    * @param w the worker that is performing this action
    * @param sold map of product and integer amount of product being sold
-   * @param profit profit that is made from selling all of the products
+   * @param profit profit that is made from selling all of the products, in cents
    * @throws IOException Throws an IOException.
    */
-  void recordSell(Worker w, Map<Product, Integer> sold, Double profit)
+  void recordSell(Worker w, Map<Product, Integer> sold, long profit)
       throws IOException {
     Set<Product> products = sold.keySet();
-    ArrayList<String> csvline = new ArrayList<>(4);
     LocalDateTime today = LocalDateTime.now();
     String dateoftoday = today.toString();
+    List<List<String>> lines = new ArrayList<>(products.size());
+    synchronized (this) {
+      for (Product p : products) {
+        addRecord(HistoryEvents.Type.SELL, workerId(w), today, today, p, sold.get(p),
+            p.getCurrPrice());
+      }
+    }
     for (Product p : products) {
-      csvline.clear();
-      HistoryObject histob = new HistoryObject("buy", dateoftoday, dateoftoday, w,
-          p, sold.get(p));
-      historylist.add(histob);
-      csvline.add(dateoftoday);
-      csvline.add(String.valueOf(histob.boughtorsold));
-      csvline.add(p.getUPC());
-      csvline.add(w.toString());
-      IO.writeToCsv(sellfile, csvline, this.logging);
-      logging.logSell(p.getName(), String.valueOf(histob.boughtorsold));
-    }
-    recordProfit(w, dateoftoday, profit);
+      lines.add(Arrays.asList(dateoftoday, sold.get(p).toString(), p.getUPC(), w.toString()));
+    }
+    writeCsv(sellfile, lines);
+    for (Product p : products) {
+      logging.logSell(p.getName(), sold.get(p));
+    }
+    recordProfit(w, today, profit);
   }
 
   /**
    * Record how much was returned to profits so it can be viewed when profit is viewed.
    *
    * @param w the worker processing the return
-   * @param loss how much loss this return is responsible for
+   * @param loss how much loss this return is responsible for, in cents
    * @throws IOException Throws an IOException.
    */
-  void recordReturn(Worker w, Double loss) throws IOException {
-    LocalDateTime today = LocalDateTime.now();
-    String when = today.toString();
-    recordProfit(w, when, loss);
-    logging.logReturn(loss.toString());
+  void recordReturn(Worker w, long loss) throws IOException {
+    recordProfit(w, LocalDateTime.now(), loss);
+    logging.logReturn(loss);
   }
 
   /**
@@ -261,112 +422,177 @@ public class History implements Serializable {
    *
    * @param w the worker that is performing this action
    * @param when when the profit was made
-   * @param profit profit made at that time
+   * @param profit profit made at that time, in cents
    * @throws IOException Throws an IOException.
    */
-  void recordProfit(Worker w, String when, Double profit) throws IOException {
-    profitmap.put(when, profit);
-    ArrayList<String> csvline = new ArrayList<>(3);
-    csvline.add(w.toString());
-    csvline.add(profit.toString());
-    csvline.add(when);
-    IO.writeToCsv(profitfile, csvline, this.logging);
+  void recordProfit(Worker w, LocalDateTime when, long profit) throws IOException {
+    synchronized (this) {
+      profits.append(profits.toMillis(when), profit);
+    }
+    writeCsv(profitfile, Collections.singletonList(Arrays.asList(w.toString(),
+        Money.format(profit), when.toString())));
     if (profit > 0) {
-      logging.logProfit(profit.toString());
+      logging.logProfit(profit);
     }
   }
 
-  //Wasn't being used but left it in just in case it might be needed later.
-  /*
   /**
-   * Sorts through historylist and return a map of product and a list of how many were sold at each
-   * checkout.
+   * Return how many of a product were sold at each checkout between start and end. Sealed
+   * segments of the history with no sale in the range are not read.
    *
-   * @param start  date of which to get sell history from
+   * @param start date of which to get sell history from
    * @param end date of which to get sell history until
    * @param item product which sell history is returned
-   * @return map of date and integer amount of products sold
-   * @throws ParseException
-   *
-  Map<String, Integer> getSellHistory(String start,String end, Product item)
-      throws ParseException {
-    LocalDateTime date1 = LocalDateTime.parse(start);
-    LocalDateTime date2 = LocalDateTime.parse(end);
-    Map<String, Integer> soldorbought = new HashMap<String,Integer>();
-    for (HistoryObject history : historylist) {
-      if (history.type.equals("sell") && history.productupc.equals(item.getUPC())) {
-        LocalDateTime date3 = LocalDateTime.parse(history.start);
-        if ((date3.isAfter(date1) || date3.isEqual(date1))
-            && (date2.isAfter(date3) || date2.isEqual(date3))) {
-          soldorbought.put(history.start, history.boughtorsold);
-        }
-      }
+   * @return map of date and integer amount of products sold, in order of date
+   */
+  synchronized Map<String, Integer> getSellHistory(String start, String end, Product item)
+      throws DateTimeParseException {
+    HistoryEvents.Cursor cursor = events.cursor(UpcIndex.parse(item.getUPC(), false),
+        HistoryEvents.Type.SELL, events.toMillis(LocalDateTime.parse(start)),
+        events.toMillis(LocalDateTime.parse(end)));
+    Map<String, Integer> sold = new LinkedHashMap<String, Integer>();
+    while (cursor.next()) {
+      sold.put(keyOf(sold, cursor), cursor.quantity());
     }
-    return soldorbought;
+    return sold;
   }
-*/
 
   /**
-   * Return regmap which contains changes of regular price of products.
+   * Return the changes of regular price of products, read back from events.
    *
-   * @return the map of key products and map values with date key and price value.
+   * @return the map of the name and UPC of products ("Apple : 510000750147") and map values with
+   * date key and price value in cents.
    */
-  Map<Product, Map<String, Double>> getRegPriceHistory() {
+  synchronized Map<String, Map<String, Long>> getRegPriceHistory() {
+    Map<String, Map<String, Long>> regmap = new HashMap<String, Map<String, Long>>();
+    HistoryEvents.Cursor cursor = events.cursor(HistoryEvents.Type.PRICE_CHANGE);
+    while (cursor.next()) {
+      pricesOf(regmap, cursor.upc())
+          .put(events.toLocal(cursor.time()).toString(), cursor.regularPrice());
+    }
     logging.logRegPriceHistory();
     return regmap;
-
   }
 
   /**
-   * Return salemap which contains changes of regular price of products.
+   * Return the sale prices of products, read back from events.
    *
-   * @return the map of key products and map values with start date of sale key and price value.
+   * @return the map of the name and UPC of products and map values with start date of sale key and
+   * price value in cents.
    */
-  Map<Product, Map<String, Double>> getSalePriceHistory() {
+  synchronized Map<String, Map<String, Long>> getSalePriceHistory() {
+    Map<String, Map<String, Long>> salemap = new HashMap<String, Map<String, Long>>();
+    HistoryEvents.Cursor cursor = events.cursor(HistoryEvents.Type.DISCOUNT);
+    while (cursor.next()) {
+      pricesOf(salemap, cursor.upc())
+          .put(events.toLocal(cursor.time()).toString(), cursor.salePrice());
+    }
     logging.logSalePriceHistory();
     return salemap;
   }
 
+  /**
+   * Returns the local time of the current record of cursor as a key of map. Records made at the
+   * same time get their position appended to the key ("2018-03-01T10:15:30.123#42") so none of
+   * them is hidden.
+   */
+  private String keyOf(Map<String, ?> map, HistoryEvents.Cursor cursor) {
+    String key = events.toLocal(cursor.time()).toString();
+    return map.containsKey(key) ? key + "#" + cursor.position() : key;
+  }
+
+  /**
+   * Returns the map of date and price of the product with upc in map, adding it if it is not
+   * there.
+   */
+  private Map<String, Long> pricesOf(Map<String, Map<String, Long>> map, long upc) {
+    String product = priced.get(upc);
+    Map<String, Long> prices = map.get(product);
+    if (prices == null) {
+      prices = new HashMap<String, Long>();
+      map.put(product, prices);
+    }
+    return prices;
+  }
+
   /**
    * Return the history of orders that have been made.
    *
    * @param prod the product of which order history is returned.
    * @return map of date and number of orders
    */
-  Map<String, Integer> getOrderHistory(Product prod) {
-    Map<String, Integer> orders = new HashMap<String, Integer>();
-    for (HistoryObject history : historylist) {
-      if (history.type.equals("order") && history.productupc.equals(prod.getUPC())) {
-        orders.put(history.start, history.boughtorsold);
-      }
+  synchronized Map<String, Integer> getOrderHistory(Product prod) {
+    Map<String, Integer> orders = new LinkedHashMap<String, Integer>();
+    HistoryEvents.Cursor cursor = getProductHistory(prod, HistoryEvents.Type.ORDER);
+    while (cursor.next()) {
+      orders.put(keyOf(orders, cursor), cursor.quantity());
     }
     logging.logOrderHistory(prod.getName());
     return orders;
   }
 
+  /**
+   * Return a cursor over the records of one type (order, sell, reshelf, discount, ...) recorded
+   * for a product, oldest first. Records are only ever appended, so the cursor can be read while
+   * more are being recorded.
+   *
+   * @param prod the product of which history is returned.
+   * @param type the type of the records
+   * @return cursor over the records
+   */
+  synchronized HistoryEvents.Cursor getProductHistory(Product prod, HistoryEvents.Type type) {
+    return events.cursor(UpcIndex.parse(prod.getUPC(), false), type);
+  }
+
   /**
    * Return the history of profits of all the dates between start and end.
    *
    * @param start the start to find profit history from
    * @param end the end to find  profit history until
-   * @return map of date and profit made on that date
+   * @return map of date and profit in cents made on that date, in order of date
    */
-  Map<String, Double> getProfitHistory(String start, String end)
+  synchronized Map<String, Long> getProfitHistory(String start, String end)
       throws DateTimeParseException {
-    LocalDateTime date1 = LocalDateTime.parse(start);
-    LocalDateTime date2 = LocalDateTime.parse(end);
-    Map<String, Double> profits = new HashMap<String, Double>();
-    Set<String> recorddates = profitmap.keySet();
-    for (String recorddate : recorddates) {
-      LocalDateTime date3 = LocalDateTime.parse(recorddate);
-      if ((date3.isAfter(date1) || date3.isEqual(date1))
-          && (date2.isAfter(date3) || date2.isEqual(date3))) {
-
-        profits.put(recorddate, profitmap.get(recorddate));
-      }
+    Map<String, Long> history = profits.entries(profits.toMillis(LocalDateTime.parse(start)),
+        profits.toMillis(LocalDateTime.parse(end)));
+    logging.logProfitHistory(start, end);
+    return history;
+  }
+
+  /**
+   * Return the total profit made between start and end.
+   *
+   * @param start the start to add up profit from
+   * @param end the end to add up profit until
+   * @return the total profit, in cents
+   */
+  synchronized long getTotalProfit(String start, String end) throws DateTimeParseException {
+    long total = profits.total(profits.toMillis(LocalDateTime.parse(start)),
+        profits.toMillis(LocalDateTime.parse(end)));
+    logging.logProfitHistory(start, end);
+    return total;
+  }
+
+  /**
+   * Return the profit made in each minute, hour or day between start and end, keyed by the start
+   * of the minute, hour or day. Those without any profit are left out.
+   *
+   * @param start the start to find profit history from
+   * @param end the end to find profit history until
+   * @param granularity whether to add profit up by minute, hour or day
+   * @return map of the start of each minute, hour or day and the profit in cents made in it, in
+   * order
+   */
+  synchronized Map<String, Long> getProfitRollup(String start, String end,
+      ProfitLedger.Granularity granularity) throws DateTimeParseException {
+    Map<String, Long> rollup = new LinkedHashMap<>();
+    for (Map.Entry<Long, Long> bucket : profits.rollup(granularity,
+        profits.toMillis(LocalDateTime.parse(start)),
+        profits.toMillis(LocalDateTime.parse(end))).entrySet()) {
+      rollup.put(profits.toLocal(bucket.getKey()).toString(), bucket.getValue());
     }
     logging.logProfitHistory(start, end);
-    return profits;
+    return rollup;
   }
 }
 
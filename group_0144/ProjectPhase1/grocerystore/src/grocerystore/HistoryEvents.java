@@ -0,0 +1,703 @@
+package grocerystore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * HistoryEvents holds the events History records (sales, orders, reshelving, price changes and
+ * discounts) as fixed size binary records in direct (off-heap) buffers, instead of one object per
+ * event holding on to the product and worker it was about. Every record takes RECORD_SIZE bytes:
+ *
+ * <pre>
+ *   0  type         byte (ordinal of Type)
+ *   4  worker       int  (id of the worker, -1 if it was not done by a worker)
+ *   8  time         long (epoch milliseconds; the start of a discount)
+ *  16  end          long (epoch milliseconds; the end of a discount, otherwise the same as time)
+ *  24  upc          long
+ *  32  quantity     int  (number sold, ordered or reshelved)
+ *  36  stock        int  (stock of the product when the event was recorded)
+ *  40  regularPrice long (cents)
+ *  48  salePrice    long (cents)
+ * </pre>
+ *
+ * Records are appended to segments of SEGMENT_RECORDS records and never change once written, and
+ * are read back through a Cursor. Only the newest HOT_SEGMENTS segments are kept in memory, each
+ * with a HistoryIndex of its records. Older ones are sealed by the flusher thread of CsvAppender
+ * into a file each under SEGMENT_DIRECTORY, which holds a header, the records, and the positions
+ * of the records sorted by type and by product in place of the HistoryIndex. A sealed segment is
+ * mapped back in when a cursor reaches it, and at most PAGED_SEGMENTS of them stay mapped, the
+ * least recently used one being dropped first. The first and last time of every segment are kept
+ * in a LongTable, so that a cursor over a range of time can skip the segments that miss it, and
+ * the memory taken by a history does not grow with its age.
+ */
+class HistoryEvents implements Serializable {
+
+  /**
+   * The types of events.
+   */
+  enum Type {
+    DISCOUNT,
+    PRICE_CHANGE,
+    ORDER,
+    RESHELF,
+    SELL
+  }
+
+  static final int RECORD_SIZE = 56;
+  static final String SEGMENT_DIRECTORY = "historysegments";
+  private static final int SEGMENT_RECORDS = 1 << 12;
+  private static final int HOT_SEGMENTS = 4;
+  private static final int PAGED_SEGMENTS = 4;
+  private static final Type[] TYPES = Type.values();
+
+  private static final int TYPE = 0;
+  private static final int WORKER = 4;
+  private static final int TIME = 8;
+  private static final int END = 16;
+  private static final int UPC = 24;
+  private static final int QUANTITY = 32;
+  private static final int STOCK = 36;
+  private static final int REGULAR_PRICE = 40;
+  private static final int SALE_PRICE = 48;
+
+  /**
+   * A sealed segment file holds a header (a magic number, the number of records, the first and
+   * last time of the records, and how many of them have a product), the records, the index in
+   * byType of the first record of each type, the positions of the records sorted by type (byType),
+   * and the positions of the records with a product sorted by product and then type (byProduct).
+   */
+  private static final int MAGIC = 0x48535453;
+  private static final int HEADER_SIZE = 32;
+  private static final int PRODUCT_COUNT = 24;
+
+  /**
+   * The columns of bounds.
+   */
+  private static final int MIN_TIME = 0;
+  private static final int MAX_TIME = 1;
+
+  /**
+   * id : the name sealed segments of these events are stored under
+   * segmentDirectory : the directory sealed segments are stored in
+   * segments : the segments records are written to, each holding SEGMENT_RECORDS records; null for
+   * a segment that is sealed
+   * bounds : the first and last time in each segment
+   * size : the number of records written
+   * paged : the sealed segments that are mapped in, least recently used first
+   * zone : the time zone local times are converted in
+   */
+  private final String id = UUID.randomUUID().toString();
+  private final File segmentDirectory;
+  private transient volatile Segment[] segments = new Segment[0];
+  private final LongTable bounds;
+  private transient volatile int size;
+  private transient Map<Integer, Segment> paged = newPaged();
+  private final ZoneId zone = ZoneId.systemDefault();
+
+  /**
+   * Creates empty events whose sealed segments go under SEGMENT_DIRECTORY in a directory.
+   *
+   * @param directory the directory, or null for the current working directory
+   */
+  HistoryEvents(File directory) {
+    segmentDirectory = new File(directory, SEGMENT_DIRECTORY);
+    bounds = new LongTable(new File(segmentDirectory, id + "-bounds.tbl"), 2);
+  }
+
+  /**
+   * Returns a local time as epoch milliseconds.
+   *
+   * @param when the local time
+   * @return the epoch milliseconds of when
+   */
+  long toMillis(LocalDateTime when) {
+    return when.atZone(zone).toInstant().toEpochMilli();
+  }
+
+  /**
+   * Returns epoch milliseconds as a local time.
+   *
+   * @param millis the epoch milliseconds
+   * @return the local time
+   */
+  LocalDateTime toLocal(long millis) {
+    return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone);
+  }
+
+  /**
+   * Appends a record. Only one thread may append at a time. When a new segment is started while
+   * HOT_SEGMENTS are already in memory, the oldest of them is handed to the flusher to be sealed.
+   *
+   * @param type the type of the event
+   * @param worker the id of the worker, or -1
+   * @param time when the event happened (or the discount starts), in epoch milliseconds
+   * @param end when the discount ends, in epoch milliseconds
+   * @param upc the UPC of the product
+   * @param quantity the number sold, ordered or reshelved
+   * @param stock the stock of the product
+   * @param regularPrice the regular price of the product, in cents
+   * @param salePrice the sale price of the product, in cents
+   * @return the position of the record
+   */
+  int append(Type type, int worker, long time, long end, long upc, int quantity, int stock,
+      long regularPrice, long salePrice) {
+    int position = size;
+    int segment = position / SEGMENT_RECORDS;
+    if (segment == segments.length) {
+      startSegment(segment);
+    }
+    Segment current = segments[segment];
+    ByteBuffer buffer = current.records;
+    int offset = position % SEGMENT_RECORDS;
+    int at = offset * RECORD_SIZE;
+    buffer.put(at + TYPE, (byte) type.ordinal());
+    buffer.putInt(at + WORKER, worker);
+    buffer.putLong(at + TIME, time);
+    buffer.putLong(at + END, end);
+    buffer.putLong(at + UPC, upc);
+    buffer.putInt(at + QUANTITY, quantity);
+    buffer.putInt(at + STOCK, stock);
+    buffer.putLong(at + REGULAR_PRICE, regularPrice);
+    buffer.putLong(at + SALE_PRICE, salePrice);
+    current.index.add(offset, type, upc);
+    bounds.set(segment, MIN_TIME, Math.min(bounds.get(segment, MIN_TIME), time));
+    bounds.set(segment, MAX_TIME, Math.max(bounds.get(segment, MAX_TIME), time));
+    //publishing size after the record is written lets readers see whole records only
+    size = position + 1;
+    return position;
+  }
+
+  /**
+   * Starts a new segment, and hands the segment it pushes out of the newest HOT_SEGMENTS to the
+   * flusher to be sealed.
+   */
+  private void startSegment(int segment) {
+    int row = bounds.add();
+    bounds.set(row, MIN_TIME, Long.MAX_VALUE);
+    bounds.set(row, MAX_TIME, Long.MIN_VALUE);
+    Segment started = new Segment(ByteBuffer.allocateDirect(SEGMENT_RECORDS * RECORD_SIZE),
+        new HistoryIndex());
+    synchronized (this) {
+      Segment[] grown = Arrays.copyOf(segments, segment + 1);
+      grown[segment] = started;
+      segments = grown;
+    }
+    if (segment >= HOT_SEGMENTS) {
+      sealLater(segment - HOT_SEGMENTS);
+    }
+  }
+
+  /**
+   * Returns the number of records.
+   *
+   * @return the number of records
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns a cursor over every record, oldest first.
+   *
+   * @return the cursor
+   */
+  Cursor cursor() {
+    return new Cursor(0, null, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns a cursor over the records of a type, oldest first.
+   *
+   * @param type the type of the records
+   * @return the cursor
+   */
+  Cursor cursor(Type type) {
+    return new Cursor(0, type, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns a cursor over the records of a type for one product, oldest first.
+   *
+   * @param upc the UPC of the product
+   * @param type the type of the records
+   * @return the cursor
+   */
+  Cursor cursor(long upc, Type type) {
+    return new Cursor(upc, type, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns a cursor over the records of a type for one product whose time is from start to end,
+   * both included, oldest first. Sealed segments with no record in the range are skipped without
+   * being mapped in.
+   *
+   * @param upc the UPC of the product
+   * @param type the type of the records
+   * @param start the start in epoch milliseconds
+   * @param end the end in epoch milliseconds
+   * @return the cursor
+   */
+  Cursor cursor(long upc, Type type, long start, long end) {
+    return new Cursor(upc, type, start, end);
+  }
+
+  /**
+   * Seals a segment on the flusher thread.
+   */
+  private void sealLater(final int segment) {
+    CsvAppender.flusher.execute(new Runnable() {
+      public void run() {
+        try {
+          seal(segment);
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    });
+  }
+
+  /**
+   * Writes a full segment to its file, with the positions of its records sorted by type and by
+   * product, and drops it from memory. If it cannot be written it stays in memory.
+   */
+  private void seal(int segment) throws IOException {
+    final ByteBuffer records = segments[segment].records.duplicate();
+    records.clear();
+    int[] typeStarts = new int[TYPES.length + 1];
+    Integer[] byProduct = new Integer[SEGMENT_RECORDS];
+    int products = 0;
+    for (int position = 0; position < SEGMENT_RECORDS; position++) {
+      typeStarts[records.get(position * RECORD_SIZE + TYPE) + 1]++;
+      if (records.getLong(position * RECORD_SIZE + UPC) > 0) {
+        byProduct[products++] = position;
+      }
+    }
+    for (int type = 0; type < TYPES.length; type++) {
+      typeStarts[type + 1] += typeStarts[type];
+    }
+    int[] byType = new int[SEGMENT_RECORDS];
+    int[] next = Arrays.copyOf(typeStarts, TYPES.length);
+    for (int position = 0; position < SEGMENT_RECORDS; position++) {
+      byType[next[records.get(position * RECORD_SIZE + TYPE)]++] = position;
+    }
+    //the sort is stable, so the records of a product and type stay in the order they were added
+    Arrays.sort(byProduct, 0, products, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        int at = b * RECORD_SIZE;
+        return HistoryEvents.compare(records, a, records.getLong(at + UPC), records.get(at + TYPE));
+      }
+    });
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(SEGMENT_RECORDS).putLong(bounds.get(segment, MIN_TIME))
+        .putLong(bounds.get(segment, MAX_TIME)).putInt(products).putInt(0);
+    header.flip();
+    ByteBuffer index = ByteBuffer.allocate((typeStarts.length + SEGMENT_RECORDS + products) * 4);
+    for (int start : typeStarts) {
+      index.putInt(start);
+    }
+    for (int position : byType) {
+      index.putInt(position);
+    }
+    for (int i = 0; i < products; i++) {
+      index.putInt(byProduct[i]);
+    }
+    index.flip();
+    File file = segmentFile(segment);
+    file.getParentFile().mkdirs();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer[] parts = {header, records, index};
+      while (index.hasRemaining()) {
+        channel.write(parts);
+      }
+      channel.force(false);
+    }
+    synchronized (this) {
+      Segment[] dropped = segments.clone();
+      dropped[segment] = null;
+      segments = dropped;
+    }
+  }
+
+  /**
+   * Compares the product and then the type of the record at position of records with upc and
+   * type.
+   */
+  private static int compare(ByteBuffer records, int position, long upc, int type) {
+    int at = position * RECORD_SIZE;
+    int byUpc = Long.compare(records.getLong(at + UPC), upc);
+    return byUpc != 0 ? byUpc : Integer.compare(records.get(at + TYPE), type);
+  }
+
+  /**
+   * Returns a segment, mapping it in from its file if it is sealed.
+   */
+  private Segment segment(int segment) {
+    Segment found = segments[segment];
+    if (found != null) {
+      return found;
+    }
+    synchronized (this) {
+      found = paged.get(segment);
+      if (found == null) {
+        found = map(segmentFile(segment));
+        paged.put(segment, found);
+      }
+      return found;
+    }
+  }
+
+  /**
+   * Maps in the file of a sealed segment.
+   */
+  private static Segment map(File file) {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      int at = HEADER_SIZE;
+      ByteBuffer records = slice(mapped, at, SEGMENT_RECORDS * RECORD_SIZE);
+      at += SEGMENT_RECORDS * RECORD_SIZE;
+      int[] typeStarts = new int[TYPES.length + 1];
+      for (int type = 0; type < typeStarts.length; type++) {
+        typeStarts[type] = mapped.getInt(at);
+        at += 4;
+      }
+      IntBuffer byType = slice(mapped, at, SEGMENT_RECORDS * 4).asIntBuffer();
+      at += SEGMENT_RECORDS * 4;
+      IntBuffer byProduct = slice(mapped, at, mapped.getInt(PRODUCT_COUNT) * 4).asIntBuffer();
+      return new Segment(records, null, typeStarts, byType, byProduct);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns length bytes of buffer from at on as a buffer of their own.
+   */
+  private static ByteBuffer slice(ByteBuffer buffer, int at, int length) {
+    ByteBuffer slice = buffer.duplicate();
+    slice.position(at);
+    slice.limit(at + length);
+    return slice.slice();
+  }
+
+  /**
+   * Returns the file a segment is sealed to.
+   */
+  private File segmentFile(int segment) {
+    return new File(segmentDirectory, id + "-" + segment + ".seg");
+  }
+
+  /**
+   * Returns an empty map of mapped segments that drops its least recently used segment when it
+   * holds more than PAGED_SEGMENTS.
+   */
+  private static Map<Integer, Segment> newPaged() {
+    return new LinkedHashMap<Integer, Segment>(PAGED_SEGMENTS * 2, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<Integer, Segment> eldest) {
+        return size() > PAGED_SEGMENTS;
+      }
+    };
+  }
+
+  /**
+   * The records of one segment, and where the records of each type and of each product are among
+   * them: in a HistoryIndex while the segment is in memory, or in the sections after the records
+   * in its file once it is sealed.
+   */
+  private static final class Segment {
+
+    final ByteBuffer records;
+    final HistoryIndex index;
+    final int[] typeStarts;
+    final IntBuffer byType;
+    final IntBuffer byProduct;
+
+    Segment(ByteBuffer records, HistoryIndex index) {
+      this(records, index, null, null, null);
+    }
+
+    Segment(ByteBuffer records, HistoryIndex index, int[] typeStarts, IntBuffer byType,
+        IntBuffer byProduct) {
+      this.records = records;
+      this.index = index;
+      this.typeStarts = typeStarts;
+      this.byType = byType;
+      this.byProduct = byProduct;
+    }
+
+    /**
+     * Returns the positions in this segment of the records of a type, in order.
+     */
+    IntBuffer positions(Type type) {
+      if (index != null) {
+        return index.positions(type).buffer();
+      }
+      return range(byType, typeStarts[type.ordinal()], typeStarts[type.ordinal() + 1]);
+    }
+
+    /**
+     * Returns the positions in this segment of the records of a type for one product, in order.
+     */
+    IntBuffer positions(long upc, Type type) {
+      if (index != null) {
+        return index.positions(upc, type).buffer();
+      }
+      return range(byProduct, lowerBound(upc, type.ordinal()), lowerBound(upc, type.ordinal() + 1));
+    }
+
+    /**
+     * Returns the index in byProduct of the first record whose product and type are at or after
+     * upc and type.
+     */
+    private int lowerBound(long upc, int type) {
+      int lo = 0;
+      int hi = byProduct.limit();
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (compare(records, byProduct.get(mid), upc, type) < 0) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    /**
+     * Returns the positions of positions from index from to index to (left out).
+     */
+    private static IntBuffer range(IntBuffer positions, int from, int to) {
+      IntBuffer range = positions.duplicate();
+      range.limit(to);
+      range.position(from);
+      return range;
+    }
+  }
+
+  /**
+   * A Cursor reads records one at a time without making an object per record. Call next to move
+   * to the next record, then read its fields.
+   */
+  final class Cursor {
+
+    private final long upc;
+    private final Type type;
+    private final long start;
+    private final long end;
+    private final int segmentCount;
+    private final int to;
+    private int segment = -1;
+    private boolean reading;
+    private IntBuffer run;
+    private int next;
+    private int limit;
+    private ByteBuffer buffer;
+    private int at;
+    private int position = -1;
+
+    /**
+     * Creates a cursor over the records there are now.
+     *
+     * @param upc the UPC of the product of the records, or 0 for every product
+     * @param type the type of the records, or null for every type (and every product)
+     * @param start the first time of the records
+     * @param end the last time of the records
+     */
+    private Cursor(long upc, Type type, long start, long end) {
+      this.upc = upc;
+      this.type = type;
+      this.start = start;
+      this.end = end;
+      this.to = size;
+      this.segmentCount = (to + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false if there are no more records
+     */
+    boolean next() {
+      while (reading || nextSegment()) {
+        int offset = run == null ? next++ : run.hasRemaining() ? run.get() : limit;
+        //positions within a segment are in order, so the first one past the limit ends it
+        if (offset >= limit) {
+          reading = false;
+          continue;
+        }
+        position = segment * SEGMENT_RECORDS + offset;
+        at = offset * RECORD_SIZE;
+        long time = time();
+        if (time >= start && time <= end) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Moves to the next segment that may have records in the range of time of this cursor.
+     */
+    private boolean nextSegment() {
+      boolean everyTime = start == Long.MIN_VALUE && end == Long.MAX_VALUE;
+      while (++segment < segmentCount) {
+        if (everyTime || (bounds.get(segment, MAX_TIME) >= start
+            && bounds.get(segment, MIN_TIME) <= end)) {
+          Segment found = segment(segment);
+          buffer = found.records;
+          run = type == null ? null
+              : upc == 0 ? found.positions(type) : found.positions(upc, type);
+          next = 0;
+          limit = Math.min(SEGMENT_RECORDS, to - segment * SEGMENT_RECORDS);
+          reading = true;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * @return the position of the current record in the history
+     */
+    int position() {
+      return position;
+    }
+
+    /**
+     * @return the type of the current record
+     */
+    Type type() {
+      return TYPES[buffer.get(at + TYPE)];
+    }
+
+    /**
+     * @return the id of the worker of the current record, or -1
+     */
+    int worker() {
+      return buffer.getInt(at + WORKER);
+    }
+
+    /**
+     * @return when the event of the current record happened, in epoch milliseconds
+     */
+    long time() {
+      return buffer.getLong(at + TIME);
+    }
+
+    /**
+     * @return when the discount of the current record ends, in epoch milliseconds
+     */
+    long end() {
+      return buffer.getLong(at + END);
+    }
+
+    /**
+     * @return the UPC of the product of the current record
+     */
+    long upc() {
+      return buffer.getLong(at + UPC);
+    }
+
+    /**
+     * @return the quantity sold, ordered or reshelved in the current record
+     */
+    int quantity() {
+      return buffer.getInt(at + QUANTITY);
+    }
+
+    /**
+     * @return the stock of the product when the current record was written
+     */
+    int stock() {
+      return buffer.getInt(at + STOCK);
+    }
+
+    /**
+     * @return the regular price of the product of the current record, in cents
+     */
+    long regularPrice() {
+      return buffer.getLong(at + REGULAR_PRICE);
+    }
+
+    /**
+     * @return the sale price of the product of the current record, in cents
+     */
+    long salePrice() {
+      return buffer.getLong(at + SALE_PRICE);
+    }
+  }
+
+  /**
+   * Writes the records of the segments that are not sealed as raw bytes, since direct buffers
+   * cannot be serialized, while no segment is being dropped from memory. Sealed segments stay in
+   * their files.
+   */
+  private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    int count = size;
+    out.writeInt(count);
+    byte[] bytes = new byte[SEGMENT_RECORDS * RECORD_SIZE];
+    for (int segment = 0; segment * SEGMENT_RECORDS < count; segment++) {
+      Segment written = segments[segment];
+      out.writeBoolean(written != null);
+      if (written != null) {
+        int records = Math.min(SEGMENT_RECORDS, count - segment * SEGMENT_RECORDS);
+        ByteBuffer buffer = written.records.duplicate();
+        buffer.clear();
+        buffer.get(bytes, 0, records * RECORD_SIZE);
+        out.write(bytes, 0, records * RECORD_SIZE);
+      }
+    }
+  }
+
+  /**
+   * Reads the records written by writeObject back into direct buffers and indexes them again, and
+   * hands the segments that were still waiting to be sealed to the flusher again.
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    int count = in.readInt();
+    int segmentCount = (count + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS;
+    Segment[] read = new Segment[segmentCount];
+    byte[] bytes = new byte[SEGMENT_RECORDS * RECORD_SIZE];
+    for (int segment = 0; segment < segmentCount; segment++) {
+      if (in.readBoolean()) {
+        int records = Math.min(SEGMENT_RECORDS, count - segment * SEGMENT_RECORDS);
+        in.readFully(bytes, 0, records * RECORD_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SEGMENT_RECORDS * RECORD_SIZE);
+        buffer.put(bytes, 0, records * RECORD_SIZE);
+        HistoryIndex index = new HistoryIndex();
+        for (int position = 0; position < records; position++) {
+          int at = position * RECORD_SIZE;
+          index.add(position, TYPES[buffer.get(at + TYPE)], buffer.getLong(at + UPC));
+        }
+        read[segment] = new Segment(buffer, index);
+      }
+    }
+    paged = newPaged();
+    segments = read;
+    size = count;
+    for (int segment = 0; segment < segmentCount - HOT_SEGMENTS; segment++) {
+      if (read[segment] != null) {
+        sealLater(segment);
+      }
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package grocerystore;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A HistoryIndex keeps, for one segment of the history that is still in memory, and for every type
+ * of record and for every product and type, the positions in the segment of the records of that
+ * type (of that product), in the order they were added. It is kept up to date as records are
+ * added, so the order history of one product is a lookup and a walk over its own records. When the
+ * segment is sealed the same positions are written to its file and the index is dropped, so the
+ * indexes of a history only ever cover the segments it keeps in memory.
+ */
+class HistoryIndex {
+
+  /**
+   * A growable list of record positions, kept as primitive ints.
+   */
+  static class Positions {
+
+    private int[] positions = new int[4];
+    private int size;
+
+    /**
+     * Adds a position to the end of this list.
+     */
+    private void add(int position) {
+      if (size == positions.length) {
+        positions = Arrays.copyOf(positions, size * 2);
+      }
+      positions[size++] = position;
+    }
+
+    /**
+     * Returns the position at index i.
+     *
+     * @param i the index, from 0 to size - 1
+     * @return the position
+     */
+    int get(int i) {
+      return positions[i];
+    }
+
+    /**
+     * Returns the number of positions in this list.
+     *
+     * @return the number of positions
+     */
+    int size() {
+      return size;
+    }
+
+    /**
+     * Returns the positions in this list so far as a buffer to read them from.
+     *
+     * @return a new buffer over the positions
+     */
+    IntBuffer buffer() {
+      return IntBuffer.wrap(positions, 0, size);
+    }
+  }
+
+  private static final Positions NONE = new Positions();
+
+  /**
+   * byType : the positions of the records of each type
+   * byProduct : for each product (by UPC), the positions of its records of each type
+   */
+  private final Map<HistoryEvents.Type, Positions> byType =
+      new EnumMap<>(HistoryEvents.Type.class);
+  private final UpcIndex<Map<HistoryEvents.Type, Positions>> byProduct = new UpcIndex<>();
+
+  /**
+   * Adds the record at position of the segment.
+   *
+   * @param position the position of the record in the segment
+   * @param type the type of the record
+   * @param upc the UPC of the product of the record
+   */
+  void add(int position, HistoryEvents.Type type, long upc) {
+    positionsOf(byType, type).add(position);
+    if (upc > 0) {
+      Map<HistoryEvents.Type, Positions> types = byProduct.get(upc);
+      if (types == null) {
+        types = new EnumMap<>(HistoryEvents.Type.class);
+        byProduct.put(upc, types);
+      }
+      positionsOf(types, type).add(position);
+    }
+  }
+
+  /**
+   * Returns the positions of the records of a type.
+   *
+   * @param type the type of the records
+   * @return the positions, in the order the records were added
+   */
+  Positions positions(HistoryEvents.Type type) {
+    Positions found = byType.get(type);
+    return found == null ? NONE : found;
+  }
+
+  /**
+   * Returns the positions of the records of a type for one product.
+   *
+   * @param upc the UPC of the product
+   * @param type the type of the records
+   * @return the positions, in the order the records were added
+   */
+  Positions positions(long upc, HistoryEvents.Type type) {
+    Map<HistoryEvents.Type, Positions> types = upc <= 0 ? null : byProduct.get(upc);
+    Positions found = types == null ? null : types.get(type);
+    return found == null ? NONE : found;
+  }
+
+  /**
+   * Returns the positions of type in types, adding an empty list for it if there is none.
+   */
+  private static Positions positionsOf(Map<HistoryEvents.Type, Positions> types,
+      HistoryEvents.Type type) {
+    Positions found = types.get(type);
+    if (found == null) {
+      found = new Positions();
+      types.put(type, found);
+    }
+    return found;
+  }
+}
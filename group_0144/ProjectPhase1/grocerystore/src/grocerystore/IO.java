@@ -4,12 +4,12 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
@@ -77,7 +77,10 @@ public class IO {
       while (scanner.hasNextLine()) {
         workerData = scanner.nextLine().split(",");
 
-        if (!store.isAWorker(workerData[0], workerData[1])) {
+        //the roster names types by class, the workers by simple name
+        String workerType = workerData[0].substring(workerData[0].lastIndexOf('.') + 1);
+        if (store.sessions.worker(workerType, workerData[1]) == null) {
+          currWorker = null;
           switch (workerData[0]) {
             case "grocerystore.Manager":
               currWorker = new Manager(store.storeHis, workerData[1], workerData[2]);
@@ -97,6 +100,9 @@ public class IO {
               store.workers.add(currWorker);
               break;
           }
+          if (currWorker != null) {
+            store.sessions.register(currWorker);
+          }
         }
       }
       scanner.close();
@@ -107,13 +113,14 @@ public class IO {
   // HISTORY CSV METHODS ==========================================================================
 
   /**
-   * Creates a new CSV file given a file name in the current working directory.
+   * Creates a new CSV file given a file name in a directory.
+   * @param directory the directory of the file, or null for the current working directory
    * @param fileName the name of the file
    * @return a file with a filename
    * @throws IOException Throws an IOException.
    */
-  static File createNewCSVFile(String fileName) throws IOException{
-    File newFile = new File(fileName);
+  static File createNewCSVFile(File directory, String fileName) throws IOException{
+    File newFile = new File(directory, fileName);
     try {
       newFile.createNewFile();
     } catch(IOException e) {
@@ -124,21 +131,18 @@ public class IO {
 
   /**
    * Write down information to csv file so that they can be printed out later. Change columns list
-   * to string of csv format and then write that down to the csv of filename.
+   * to string of csv format and then hand it to the appender of the csv file, which writes it out
+   * together with the lines around it.
    *
-   * @param file file to write information on
+   * @param appender the appender of the file to write information on
    * @param columns list of information to be written to csv file of filename
    * @param logging the logging to write
    * @throws IOException Throws an IOException.
    */
-  static void writeToCsv(File file, List<String> columns, Logging logging)
+  static void writeToCsv(CsvAppender appender, List<String> columns, Logging logging)
       throws IOException {
-    String line = String.join(",", columns);
-    FileWriter csvwriter = new FileWriter(file, true);
-    csvwriter.append(line);
-    csvwriter.append("\n");
-    csvwriter.close();
-    logging.logWriteCsv(file.getName(), line);
+    String line = appender.append(columns);
+    logging.logWriteCsv(appender.getFile().getName(), line);
   }
 
   // MANAGER CSV METHODS ==========================================================================
@@ -146,12 +150,14 @@ public class IO {
   /**
    * Creates a txt file for the manager to look at when wanting to check information (the upc and
    * name) of all of the products that are currently at that moment backordered.
+   * @param directory the directory of the file, or null for the current working directory
    * @param backOrder a map of the backorders
    * @throws IOException Throws an IOException.
    */
-  static void createCurrentBackorderedFile(Map<String, Product> backOrder) throws IOException {
+  static void createCurrentBackorderedFile(File directory, Map<String, Product> backOrder)
+      throws IOException {
     try {
-      FileWriter writer = new FileWriter("currentlyBackOrdered.txt");
+      FileWriter writer = new FileWriter(new File(directory, "currentlyBackOrdered.txt"));
       for (String productUPC : backOrder.keySet()) {
         Product currProduct = backOrder.get(productUPC);
         String mainProductInfo = currProduct.getUPC() + " " + currProduct.getName();
@@ -172,46 +178,69 @@ public class IO {
    * @param inventory the inventory to look in
    * @throws IOException Throws an IOException.
    */
-  static void newInventory(String filePath, Inventory inventory) throws IOException {
+  static void newInventory(String filePath, final Inventory inventory) throws IOException {
     File file = new File(filePath);
 
     //set up the inventory for the first time. Everyday onwards this inventory object will just
     //be serialized and deserialized.
     if (file.exists()) {
-      // FileInputStream can be used for reading raw bytes, like an image.
-      Scanner scanner = new Scanner(new FileInputStream(filePath));
-      String[] productData;
-      Product currproduct;
+      new CsvIngester(PRODUCT_COLUMNS).readAndReport(filePath, PRODUCT_ROW,
+          new CsvIngester.RowConsumer<Product>() {
+            public void accept(Product currproduct) {
+              inventory.indexProduct(currproduct);
+              inventory.addToLayout(currproduct);
+            }
+          });
+    }
+  }
 
-      scanner.nextLine();
-      while (scanner.hasNextLine()) {
-        productData = scanner.nextLine().split(",");
-        currproduct = new Product(productData);
-        inventory.getProductMap().put(productData[0], currproduct);
-        inventory.addToLayout(currproduct);
+  /**
+   * The number of columns of a product csv file: UPC number, quantity, section, subsection, name,
+   * threshold, aisle number, price, distributor's name, and cost.
+   */
+  static final int PRODUCT_COLUMNS = 10;
+
+  /**
+   * Makes a Product from a row of a product csv file, rejecting rows whose UPC is not a number.
+   */
+  static final CsvIngester.RowParser<Product> PRODUCT_ROW = new CsvIngester.RowParser<Product>() {
+    public Product parse(String[] productData) {
+      if (UpcIndex.parse(productData[0], false) < 0) {
+        throw new IllegalArgumentException("bad UPC " + productData[0]);
       }
-      scanner.close();
+      return new Product(productData);
     }
-  }
+  };
 
   /**
-   * Saves a java representation of the membership list into the inventory.
+   * Adds the members of a members csv file to the membership directory, then merges them into its
+   * sorted records so the directory opens without reading them next time. Rows whose member id is
+   * not a number are rejected.
    * @param filePath a file path of the members
-   * @param membershipData the membership data
-   * @throws FileNotFoundException Throws an IOException.
+   * @param members the membership directory
+   * @throws IOException Throws an IOException.
    */
-  static void addMembersFile(String filePath, Map<String, String[]> membershipData)
-      throws FileNotFoundException {
+  static void addMembersFile(String filePath, final MembershipDirectory members)
+      throws IOException {
     File file = new File(filePath);
     if (file.exists()) {
-      Scanner scanner = new Scanner(new FileInputStream(filePath));
-      String[] membersData;
-      scanner.nextLine();
-      while (scanner.hasNextLine()) {
-        membersData = scanner.nextLine().split(",");
-        membershipData.put(membersData[0], membersData);
-      }
-      scanner.close();
+      new CsvIngester(4).readAndReport(filePath, new CsvIngester.RowParser<String[]>() {
+        public String[] parse(String[] membersData) {
+          if (MembershipDirectory.parseId(membersData[0]) < 0) {
+            throw new IllegalArgumentException("bad member id " + membersData[0]);
+          }
+          return membersData;
+        }
+      }, new CsvIngester.RowConsumer<String[]>() {
+        public void accept(String[] membersData) {
+          try {
+            members.add(membersData[0], membersData[1], membersData[2], membersData[3]);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+      });
+      members.merge();
     }
   }
 }
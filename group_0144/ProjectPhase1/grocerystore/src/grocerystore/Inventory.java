@@ -3,8 +3,13 @@ package grocerystore;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 /**
@@ -16,31 +21,69 @@ import java.util.Map;
  * of products, and stores the list of products that have automatically created orders to send to
  * the distirbutor but are waiting for the Manager to edit/send them, hence the pending Order
  * Products list.
+ *
+ * An Inventory can be used by many checkout lanes at once. The stock of a product is only changed
+ * while holding the lock of its stripe (products are spread over a fixed number of stripes by
+ * UPC), so lanes selling different products never wait for each other. Taking a snapshot of the
+ * inventory shuts every lane out for as long as it takes to copy it into memory; it is written to
+ * its file after the lanes have been let go, on the compactor thread of the journal.
  */
 public class Inventory implements Serializable {
 
   /**
    * all products in store that aren't backordered
    */
-  Map<String, Product> productMap = new HashMap<>();
+  Map<String, Product> productMap = new ConcurrentHashMap<>();
   /**
-   * a map of the store layout (integer aislnumber to an arraylist of products)
+   * the store layout: the products of each aisle, in walk order
    */
-  Map<Integer, ArrayList<Product>> storeLayout = new HashMap<>();
+  AisleLayout storeLayout = new AisleLayout();
   /**
-   * The list of products that still have pending orders waiting for manager to handle.
+   * The products that still have pending orders waiting for manager to handle, most urgent first.
    */
-  ArrayList<Product> pendingOrderProducts = new ArrayList<>();
-  Map<String, String[]> membershipData = new HashMap<>();
+  PendingOrderQueue pendingOrderProducts = new PendingOrderQueue();
+  /**
+   * the loyalty members of the store, kept in their own files rather than in this inventory.
+   */
+  transient MembershipDirectory members;
+
+  /**
+   * every product in the store, in stock or backordered, by its UPC as a number.
+   */
+  UpcIndex<Product> upcIndex = new UpcIndex<>();
+  /**
+   * whether scanned UPCs must have a valid check digit to be looked up.
+   */
+  boolean requireCheckDigit;
 
   /**
    * all backordered products in store.
    */
-  private Map<String, Product> backOrder = new HashMap<>();
+  Map<String, Product> backOrder = new ConcurrentHashMap<>();
   /**
-   * all carts of products in the storageroom
+   * all carts of products in the storageroom, split by aisle
    */
-  private ArrayList<Map> storageRoom = new ArrayList<>();
+  private StorageRoom storageRoom = new StorageRoom();
+  /**
+   * the write-ahead journal every change to this inventory is appended to, if any.
+   */
+  private transient InventoryJournal journal;
+  /**
+   * the sequence number of the last journal record in this inventory, as of its last snapshot or
+   * replay.
+   */
+  long journalSeq;
+
+  /**
+   * The number of lock stripes products are spread over, a power of two.
+   */
+  private static final int STRIPES = 64;
+  /**
+   * stripes : the locks guarding the stock of the products of each stripe
+   * stateLock : held shared by every change to stock and exclusively while taking a snapshot
+   */
+  private final ReentrantLock[] stripes = newStripes();
+  private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
 
   /**
    * Creates an inventory instance, requires a filepath for initial set up in order to create and
@@ -55,29 +98,78 @@ public class Inventory implements Serializable {
 
   }
 
+  /**
+   * Creates an empty inventory, for inventories that keep their products somewhere else.
+   */
+  Inventory() {
+  }
+
+  /**
+   * Returns a new set of stripe locks.
+   */
+  private static ReentrantLock[] newStripes() {
+    ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      locks[i] = new ReentrantLock();
+    }
+    return locks;
+  }
+
+  /**
+   * Returns the stripe a product belongs to.
+   */
+  private static int stripeOf(Product p) {
+    int h = p.getUPC().hashCode();
+    return (h ^ (h >>> 16)) & (STRIPES - 1);
+  }
+
+  /**
+   * Locks the stripe of a product, for changing its stock.
+   */
+  private void lock(Product p) {
+    stateLock.readLock().lock();
+    stripes[stripeOf(p)].lock();
+  }
+
+  /**
+   * Unlocks the stripe of a product locked by lock.
+   */
+  private void unlock(Product p) {
+    stripes[stripeOf(p)].unlock();
+    stateLock.readLock().unlock();
+  }
+
   /**
    * Remove a Pending product.
    * @param upc The UPC of the product.
    */
   public void removePendingProduct(String upc) {
-    ArrayList<Product> pToRemove = new ArrayList<>();
-    for (Product p : pendingOrderProducts) {
-      if (p.getUPC().equals(upc)) {
-        pToRemove.add(p);
-      }
-    }
-    if (!pToRemove.isEmpty()) {
-      pendingOrderProducts.remove(pToRemove.get(0));
-    }
+    pendingOrderProducts.remove(upc);
+  }
+
+  /**
+   * Attaches the directory of the loyalty members of the store.
+   *
+   * @param members the membership directory
+   */
+  void setMembers(MembershipDirectory members) {
+    this.members = members;
   }
 
   /**
    * Add one member
-   * @param memberId the member id
-   * @param memberInfo the member info in a string array
+   * @param memberId the member id, a number
+   * @param memberInfo the member info in a string array: id, first name, last name, phone number
+   * @return false if the member could not be added because the id is not a number
    */
-  public void addOneMember(String memberId, String[] memberInfo) {
-    membershipData.put(memberId, memberInfo);
+  public boolean addOneMember(String memberId, String[] memberInfo) {
+    try {
+      return members != null
+          && members.add(memberId, memberInfo[1], memberInfo[2], memberInfo[3]);
+    } catch (IOException e) {
+      e.printStackTrace();
+      return false;
+    }
   }
 
   /**
@@ -86,28 +178,138 @@ public class Inventory implements Serializable {
    * @return whether the memberId exists
    */
   public boolean isAMember(String memberId) {
-    return membershipData.containsKey(memberId);
+    return members != null && members.isMember(memberId);
   }
 
   public String getMemberName(String memberId) {
-    if (membershipData.containsKey(memberId)) {
-      String[] memberInfo = membershipData.get(memberId);
-      String memberName = memberInfo[1] + memberInfo[2];
-      return memberName;
-    } else {
-      return null;
-    }
+    return members == null ? null : members.name(memberId);
   }
 
   public String getMemberNumber(String memberId) {
-    if (membershipData.containsKey(memberId)) {
-      String[] memberInfo = membershipData.get(memberId);
-      return memberInfo[3];
-    } else {
-      return null;
+    return members == null ? null : members.phone(memberId);
+  }
+
+  /**
+   * Attaches the journal that every change to this inventory is recorded in.
+   *
+   * @param journal the journal, or null to stop journaling.
+   */
+  void setJournal(InventoryJournal journal) {
+    this.journal = journal;
+    if (journal != null) {
+      journal.startAfter(journalSeq);
     }
   }
 
+  /**
+   * Returns the journal that changes to this inventory are recorded in.
+   *
+   * @return the journal, or null if there is none.
+   */
+  InventoryJournal getJournal() {
+    return journal;
+  }
+
+  /**
+   * Records a change to this inventory in the journal if one is attached.
+   *
+   * @param op the operation that was done
+   * @param args the arguments of the operation
+   */
+  private void journal(String op, String... args) {
+    if (journal != null) {
+      journal.append(op, args);
+    }
+  }
+
+  /**
+   * Hands out the journal sequence number of a stock change, while the stripe of its product is
+   * locked.
+   *
+   * @return the sequence number, or 0 if no journal is attached
+   */
+  private long reserveRecord() {
+    InventoryJournal current = journal;
+    return current == null ? 0 : current.reserve();
+  }
+
+  /**
+   * Records a stock change in the journal once the stripe of its product is unlocked, under the
+   * sequence number reserved for it.
+   *
+   * @param seq the sequence number from reserveRecord, or 0 if there is no journal
+   * @param op the operation that was done
+   * @param upc the UPC of the product
+   * @param stock the stock the product was left with
+   */
+  private void journalStock(long seq, String op, String upc, int stock) {
+    InventoryJournal current = journal;
+    if (seq != 0 && current != null) {
+      current.append(seq, op, upc, String.valueOf(stock));
+    }
+  }
+
+  /**
+   * Hands a snapshot to the compactor thread of the journal if the journal has grown enough since
+   * the last one and no snapshot is on its way already. The lane that made the change only ever
+   * appends its record.
+   */
+  private void compactIfDue() {
+    final InventoryJournal current = journal;
+    if (current != null && current.isCompactionDue() && current.startCompaction()) {
+      InventoryJournal.compactor.execute(new Runnable() {
+        public void run() {
+          try {
+            checkpoint(current, true);
+          } catch (IOException e) {
+            e.printStackTrace();
+          } finally {
+            current.compactionDone();
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Writes a snapshot of this inventory through its journal and empties the journal. No stock
+   * changes while the inventory is copied; the copy is written to the file after that.
+   *
+   * @throws IOException Throws an IOException.
+   */
+  void checkpoint() throws IOException {
+    checkpoint(journal, false);
+  }
+
+  /**
+   * Copies this inventory while no stock changes and has the journal write the copy.
+   *
+   * @param current the journal to write the snapshot through
+   * @param onlyIfDue whether to leave it if the journal no longer needs compacting once every lane
+   * is shut out
+   */
+  private void checkpoint(InventoryJournal current, boolean onlyIfDue) throws IOException {
+    InventoryJournal.Snapshot snapshot;
+    stateLock.writeLock().lock();
+    try {
+      if (onlyIfDue && !current.isCompactionDue()) {
+        return;
+      }
+      snapshot = current.cut(this);
+    } finally {
+      stateLock.writeLock().unlock();
+    }
+    current.save(snapshot);
+  }
+
+  /**
+   * Called whenever the stock of a product has changed, while its stripe is still locked.
+   *
+   * @param currProduct the product whose stock changed.
+   */
+  void stockChanged(Product currProduct) {
+  }
+
   /**
    * Returns the product when given the UPC
    *
@@ -115,11 +317,43 @@ public class Inventory implements Serializable {
    * @return the product object requested by its UPC.
    */
   Product getProduct(String productUPC) {
-    if (productMap.containsKey(productUPC)) {
-      return productMap.get(productUPC);
+    long upc = UpcIndex.parse(productUPC, requireCheckDigit);
+    return upc < 0 ? null : upcIndex.get(upc);
+  }
+
+  /**
+   * Returns the product when given the UPC as a number.
+   *
+   * @param productUPC the UPC of the product that will be returned.
+   * @return the product object requested by its UPC, or null if there is none.
+   */
+  Product getProduct(long productUPC) {
+    return upcIndex.get(productUPC);
+  }
+
+  /**
+   * Sets whether scanned UPCs must have a valid check digit. When set, a mistyped UPC is turned
+   * away before it is even looked up.
+   *
+   * @param requireCheckDigit true if UPCs must have a valid check digit
+   */
+  void setRequireCheckDigit(boolean requireCheckDigit) {
+    this.requireCheckDigit = requireCheckDigit;
+  }
+
+  /**
+   * Adds a product to the map of products in stock (or backordered, if it has none) and the UPC
+   * index, without adding it to the layout or the journal.
+   *
+   * @param currProduct the product to keep.
+   */
+  void indexProduct(Product currProduct) {
+    if (currProduct.backOrderStatus) {
+      backOrder.put(currProduct.getUPC(), currProduct);
     } else {
-      return backOrder.get(productUPC);
+      productMap.put(currProduct.getUPC(), currProduct);
     }
+    upcIndex.put(UpcIndex.parse(currProduct.getUPC(), false), currProduct);
   }
 
   /**
@@ -129,15 +363,33 @@ public class Inventory implements Serializable {
     return productMap;
   }
 
+  /**
+   * Returns the UPC of every product in the store, in stock or backordered.
+   *
+   * @return a new list of the UPCs
+   */
+  List<String> getUpcs() {
+    List<String> upcs = new ArrayList<>(productMap.size() + backOrder.size());
+    upcs.addAll(productMap.keySet());
+    upcs.addAll(backOrder.keySet());
+    return upcs;
+  }
+
   /**
    * Adds a new product to the inventory.
    *
    * @param newProduct the product object to be added to this inventory.
    */
   void addNewProduct(Product newProduct) {
-
-    productMap.put(newProduct.getUPC(), newProduct);
-    addToLayout(newProduct);
+    lock(newProduct);
+    try {
+      indexProduct(newProduct);
+      addToLayout(newProduct);
+      journal(InventoryJournal.ADD, newProduct.toRecord());
+    } finally {
+      unlock(newProduct);
+    }
+    compactIfDue();
   }
 
   /**
@@ -148,17 +400,42 @@ public class Inventory implements Serializable {
    * @param productUPC the unique UPC of the product being receiver.
    */
   void receivedProduct(String productUPC) {
-    Product currProduct = this.getProduct(productUPC);
-    currProduct.addOne();
+    receivedProduct(productUPC, 1);
+  }
 
-    //if the status of the product is no long quantity 0 becuase we've just added a product,
-    //and if that product was on the backorder list map than remove it from there.
-    if (!currProduct.backOrderStatus) {
-      if (backOrder.containsKey(productUPC)) {
-        backOrder.remove(productUPC);
-        productMap.put(productUPC, currProduct);
+  /**
+   * Increases the quantity of a product by a whole line of a shipment (or a return) at once, and
+   * moves it off the backorder list if it was on it.
+   *
+   * @param productUPC the unique UPC of the product being received.
+   * @param quantity the number of units received.
+   */
+  void receivedProduct(String productUPC, int quantity) {
+    Product currProduct = this.getProduct(productUPC);
+    String upc = currProduct.getUPC();
+    long seq;
+    int stock;
+    lock(currProduct);
+    try {
+      currProduct.added(quantity);
+
+      //if the status of the product is no long quantity 0 becuase we've just added a product,
+      //and if that product was on the backorder list map than remove it from there.
+      if (!currProduct.backOrderStatus) {
+        if (backOrder.containsKey(upc)) {
+          backOrder.remove(upc);
+          productMap.put(upc, currProduct);
+        }
       }
+      pendingOrderProducts.update(currProduct);
+      stockChanged(currProduct);
+      seq = reserveRecord();
+      stock = currProduct.getStock();
+    } finally {
+      unlock(currProduct);
     }
+    journalStock(seq, InventoryJournal.RECEIVE, upc, stock);
+    compactIfDue();
   }
 
   /**
@@ -168,35 +445,163 @@ public class Inventory implements Serializable {
    * @param currProduct the product being sold once.
    */
   void sellProduct(Product currProduct) {
-    currProduct.soldOne();
+    sellProduct(currProduct, 1);
+  }
+
+  /**
+   * Sells a number of units of a product at once. The backorder and reorder checks are made once,
+   * on the stock the product is left with.
+   *
+   * @param currProduct the product being sold.
+   * @param quantity the number of units sold.
+   */
+  void sellProduct(Product currProduct, int quantity) {
+    long seq;
+    int stock;
+    lock(currProduct);
+    try {
+      sellLocked(currProduct, quantity);
+      seq = reserveRecord();
+      stock = currProduct.getStock();
+    } finally {
+      unlock(currProduct);
+    }
+    journalStock(seq, InventoryJournal.SELL, currProduct.getUPC(), stock);
+    compactIfDue();
+  }
+
+  /**
+   * Sells a number of units of a product whose stripe is already locked. The caller journals the
+   * sale once the stripe is unlocked.
+   *
+   * @param currProduct the product being sold.
+   * @param quantity the number of units sold.
+   */
+  private void sellLocked(Product currProduct, int quantity) {
+    boolean crossed = currProduct.sold(quantity);
     String productUPC = currProduct.getUPC();
     if (currProduct.backOrderStatus) {
       productMap.remove(productUPC);
       backOrder.put(productUPC, currProduct);
     }
+    if (crossed) {
+      belowThreshold(currProduct);
+    } else {
+      pendingOrderProducts.update(currProduct);
+    }
+    stockChanged(currProduct);
+  }
+
+  /**
+   * Sells a whole cart as one step: either every product in the cart has enough stock and all of
+   * it is sold, or nothing is sold at all. The stripes of all the products are locked (in stripe
+   * order, so two lanes can never wait on each other) before any stock is looked at.
+   *
+   * @param cart the products to sell mapped to the quantity of each.
+   * @return true if the cart was sold, false if some product did not have enough stock.
+   */
+  boolean sellCart(Map<Product, Integer> cart) {
+    int[] cartStripes = new int[cart.size()];
+    int n = 0;
+    for (Product p : cart.keySet()) {
+      cartStripes[n++] = stripeOf(p);
+    }
+    Arrays.sort(cartStripes);
+
+    boolean sold = false;
+    long[] seqs = new long[n];
+    int[] stocks = new int[n];
+    stateLock.readLock().lock();
+    int locked = 0;
+    try {
+      for (int i = 0; i < n; i++) {
+        if (i == 0 || cartStripes[i] != cartStripes[i - 1]) {
+          stripes[cartStripes[i]].lock();
+        }
+        locked = i + 1;
+      }
+      for (Map.Entry<Product, Integer> item : cart.entrySet()) {
+        if (item.getKey().getStock() < item.getValue()) {
+          return false;
+        }
+      }
+      int k = 0;
+      for (Map.Entry<Product, Integer> item : cart.entrySet()) {
+        sellLocked(item.getKey(), item.getValue());
+        seqs[k] = reserveRecord();
+        stocks[k++] = item.getKey().getStock();
+      }
+      sold = true;
+    } finally {
+      for (int i = locked - 1; i >= 0; i--) {
+        if (i == 0 || cartStripes[i] != cartStripes[i - 1]) {
+          stripes[cartStripes[i]].unlock();
+        }
+      }
+      stateLock.readLock().unlock();
+    }
+    if (sold) {
+      int k = 0;
+      for (Product p : cart.keySet()) {
+        journalStock(seqs[k], InventoryJournal.SELL, p.getUPC(), stocks[k++]);
+      }
+    }
+    compactIfDue();
+    return sold;
+  }
+
+  /**
+   * Creates a pending order for a product that has just gone below its threshold, unless it already
+   * has one. Called once per crossing, with the product's stripe locked.
+   *
+   * @param currProduct the product that went below its threshold.
+   */
+  private void belowThreshold(Product currProduct) {
+    if (!currProduct.getPendingOrder().isPending()) {
+      PendingOrder order = currProduct.getPendingOrder();
+      order.addPendingOrder();
+      order.setPendingTrue();
+      addPendingOrder(currProduct);
+    }
   }
 
 
+  /**
+   * Sets the stock of a product to a value recorded in the journal and moves it between the
+   * products in stock and the backordered products to match.
+   *
+   * @param currProduct the product whose stock was recorded.
+   * @param recordedStock the stock the product had.
+   */
+  void restoreStock(Product currProduct, int recordedStock) {
+    lock(currProduct);
+    try {
+      boolean crossed = currProduct.restoreStock(recordedStock);
+      String productUPC = currProduct.getUPC();
+      if (currProduct.backOrderStatus) {
+        productMap.remove(productUPC);
+        backOrder.put(productUPC, currProduct);
+      } else {
+        backOrder.remove(productUPC);
+        productMap.put(productUPC, currProduct);
+      }
+      if (crossed) {
+        belowThreshold(currProduct);
+      } else {
+        pendingOrderProducts.update(currProduct);
+      }
+      stockChanged(currProduct);
+    } finally {
+      unlock(currProduct);
+    }
+  }
+
   /**
    * Takes a product, checks information on its location, then places it within the class variable
    * storeLayout depending on its aisle number value.
    */
   void addToLayout(Product currproduct) {
-    Integer aisleNum = currproduct.getAisleNo();
-
-    //if the aisle number already exists in the store.
-    if (storeLayout.containsKey(aisleNum)) {
-      ArrayList<Product> currAisleProducts = storeLayout.get(aisleNum);
-      currAisleProducts.add(currproduct);
-      storeLayout.put(aisleNum, currAisleProducts);
-      //if the asile number does not exist in the store, create it and add this product to it's
-      // corresponding arraylist.
-    } else {
-      ArrayList<Product> newAisleArray = new ArrayList<>();
-      newAisleArray.add(currproduct);
-      storeLayout.put(aisleNum, newAisleArray);
-    }
-
+    storeLayout.place(currproduct);
   }
 
   /**
@@ -208,20 +613,40 @@ public class Inventory implements Serializable {
    * @param aisleNum the old aisle number this product has as its location aisle number in store.
    */
   void updateLayout(Product currProduct, Integer aisleNum) {
-    if (storeLayout.containsKey(aisleNum)) {
-      (storeLayout.get(aisleNum)).remove(currProduct);
+    stateLock.readLock().lock();
+    try {
+      synchronized (this) {
+        addToLayout(currProduct);
+        journal(InventoryJournal.LAYOUT, currProduct.getUPC(),
+            String.valueOf(currProduct.getAisleNo()), String.valueOf(aisleNum));
+      }
+    } finally {
+      stateLock.readLock().unlock();
     }
-    addToLayout(currProduct);
+    compactIfDue();
   }
 
   /**
-   * Returns arraylist of all the products within an aisle when given the aisle number integer
+   * Returns all the products within an aisle when given the aisle number integer, in the order
+   * they are walked past (by section and subsection).
    *
    * @param aisleNum the aisle number of the products that will be returned.
-   * @return an arraylist of products from the aisle requested.
+   * @return an unmodifiable list of products from the aisle requested, empty if there are none.
    */
-  ArrayList<Product> getProductsFromAisle(Integer aisleNum) {
-    return storeLayout.get(aisleNum);
+  List<Product> getProductsFromAisle(Integer aisleNum) {
+    return getProductsFromAisles(aisleNum, aisleNum);
+  }
+
+  /**
+   * Returns all the products within the aisles from first to last, aisle by aisle in the order
+   * they are walked past.
+   *
+   * @param first the first aisle number
+   * @param last the last aisle number
+   * @return an unmodifiable list of products from the aisles requested.
+   */
+  List<Product> getProductsFromAisles(int first, int last) {
+    return first == last ? storeLayout.aisle(first) : storeLayout.aisles(first, last);
   }
 
   /**
@@ -235,9 +660,7 @@ public class Inventory implements Serializable {
    * @param currproduct the product that has a pending order.
    */
   void addPendingOrder(Product currproduct) {
-    if (!pendingOrderProducts.contains(currproduct)) {
-      pendingOrderProducts.add(currproduct);
-    }
+    pendingOrderProducts.offer(currproduct);
   }
 
   /**
@@ -248,6 +671,30 @@ public class Inventory implements Serializable {
     return this.backOrder;
   }
 
+  /**
+   * Returns the number of products in the store, in stock or backordered.
+   * @return the number of products
+   */
+  int size() {
+    return productMap.size() + backOrder.size();
+  }
+
+  /**
+   * Returns the number of backordered products.
+   * @return the number of backordered products
+   */
+  int backOrderCount() {
+    return backOrder.size();
+  }
+
+  /**
+   * Returns the number of products with a pending order waiting for the manager.
+   * @return the number of products with a pending order
+   */
+  int pendingOrderCount() {
+    return pendingOrderProducts.size();
+  }
+
   /**
    * Checks if this product is recorded as something the store sells and recieves (so if its in
    * inventory or backorder it still counts as an item beloning in this store).
@@ -256,21 +703,11 @@ public class Inventory implements Serializable {
    * @return boolean true if the product is in the store, false otherwise.
    */
   boolean isInStore(String productUPC) {
-    return (isBackOrdered(productUPC) || productMap.containsKey(productUPC));
+    return getProduct(productUPC) != null;
   }
 
   /**
-   * Checks if this product is backordered (has quantity = 0).
-   *
-   * @param productUPC the unique UPC string of this product
-   * @return true if the product is backordered, false otherwise.
-   */
-  private boolean isBackOrdered(String productUPC) {
-    return backOrder.containsKey(productUPC);
-  }
-
-  /**
-   * Adds a cart full of products to the storage room.
+   * Adds a cart full of products to the storage room, where it is split into one load per aisle.
    *
    * @param currCart the cart being added to the storage room.
    */
@@ -285,24 +722,75 @@ public class Inventory implements Serializable {
       Integer theNumTimesScanned = (Integer) (currCart.get(p));
       cartToStore.put(cartProduct, theNumTimesScanned);
     }
-    storageRoom.add(cartToStore);
+    stateLock.readLock().lock();
+    try {
+      //the loads must get their ids in the order the carts are journaled, so a replayed take
+      //removes the same load
+      synchronized (storageRoom) {
+        storageRoom.store(cartToStore);
+        journal(InventoryJournal.STORE, InventoryJournal.encodeCart(cartToStore));
+      }
+    } finally {
+      stateLock.readLock().unlock();
+    }
+    compactIfDue();
+  }
+
+  /**
+   * Returns a load of products of one aisle from the storage room that needs to be put on shelves.
+   * The load is hence removed from the storage room. Loads of the given aisle are taken first,
+   * oldest first; if it has none and steal is set, a load of the aisle with the most loads waiting
+   * is taken.
+   *
+   * If there is no load to take it returns null.
+   *
+   * @param aisle the aisle the reshelver is working in, or -1 for none.
+   * @param steal whether to take a load of another aisle if the given aisle has none.
+   * @return the load taken, or null.
+   */
+  StorageRoom.Load getStoredLoad(int aisle, boolean steal) {
+    StorageRoom.Load load;
+    stateLock.readLock().lock();
+    try {
+      load = storageRoom.take(aisle, steal);
+      if (load != null) {
+        journal(InventoryJournal.TAKE, String.valueOf(load.id));
+      }
+    } finally {
+      stateLock.readLock().unlock();
+    }
+    compactIfDue();
+    return load;
+  }
 
+  /**
+   * Returns the number of loads waiting in the storage room to be put on shelves.
+   *
+   * @return the number of loads
+   */
+  public int storedLoadCount() {
+    return storageRoom.size();
   }
 
   /**
-   * Returns a cart full of products from the storage room that needs to be put on shelves. The cart
-   * is hence removed from the storage room.
+   * Removes the load with the given id from the storage room, as when a recorded take is replayed.
    *
-   * If there are no carts in the storage room it returns null.
+   * @param id the id of the load.
+   * @return the load, or null if it is not in the storage room.
    */
-  Map getStoredCart() {
-    if (storageRoom.size() > 0) {
-      Map currCart = storageRoom.get(0);
-      storageRoom.remove(0);
-      return currCart;
-    } else {
-      return null;
+  StorageRoom.Load removeStoredLoad(long id) {
+    StorageRoom.Load load;
+    stateLock.readLock().lock();
+    try {
+      load = storageRoom.remove(id);
+      if (load != null) {
+        journal(InventoryJournal.TAKE, String.valueOf(id));
+      }
+    } finally {
+      stateLock.readLock().unlock();
     }
+    compactIfDue();
+    return load;
   }
 
 }
@@ -0,0 +1,510 @@
+package grocerystore;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The InventoryJournal is an append-only write-ahead log of every change made to an Inventory. Each
+ * mutation is written as one tab separated line (sequence number, operation, arguments). Lanes only
+ * put their lines on a queue, without taking a lock; the lines are written to the file together
+ * (group commit) every few milliseconds by the thread that commits the history csv files, or when
+ * sync is called, so a sale reaches the file shortly after it is made without the lane waiting for
+ * it. Stock changes record the stock the product was left with rather than the change itself, so
+ * replaying a record twice leaves the product in the same state, and lines may reach the file out
+ * of order: replay sorts them by sequence number.
+ * Every so often the whole Inventory is written out as a snapshot and the records it holds are
+ * dropped from the journal (compaction). This is done by the compactor thread: the inventory is
+ * copied into memory while its lanes are held off, and the copy is then written to the snapshot
+ * file and the journal cut down while the lanes go on. On start up the snapshot is read back and
+ * the tail of the journal is replayed on top of it.
+ */
+class InventoryJournal {
+
+  /**
+   * The operations that can be recorded in the journal.
+   */
+  static final String SELL = "SELL";
+  static final String RECEIVE = "RECEIVE";
+  static final String ADD = "ADD";
+  static final String LAYOUT = "LAYOUT";
+  static final String STORE = "STORE";
+  static final String TAKE = "TAKE";
+
+  /**
+   * The default number of records written before the inventory is compacted into a new snapshot.
+   */
+  static final int DEFAULT_COMPACT_EVERY = 1000;
+
+  /**
+   * The default number of milliseconds between two group commits of the journal.
+   */
+  static final long DEFAULT_COMMIT_MILLIS = 5;
+
+  private static final String SEPARATOR = "\t";
+
+  /**
+   * The thread that takes the snapshots every journal asks for, so no lane ever writes one.
+   */
+  static final ExecutorService compactor =
+      Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "inventory-compactor");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+
+  /**
+   * A copy of an inventory, serialized while no stock changed, and the last sequence number it
+   * holds.
+   */
+  static final class Snapshot {
+
+    final long seq;
+    final byte[] bytes;
+
+    Snapshot(long seq, byte[] bytes) {
+      this.seq = seq;
+      this.bytes = bytes;
+    }
+  }
+
+  /**
+   * journalFile : the file the records are appended to
+   * snapshotFile : the file holding the last compacted (serialized) inventory
+   * compactEvery : number of records written between two snapshots
+   * pending : the lines appended but not written to the file yet
+   * lastSeq : the last sequence number handed out
+   * snapshotSeq : the last sequence number included in the snapshot
+   * writer : the open writer of the journal file, used only while holding this journal's monitor
+   * timer : the task that writes the pending lines every few milliseconds
+   * compacting : whether a snapshot has been handed to the compactor and not finished yet
+   * saveLock : held while a snapshot is written, so snapshots are written one at a time
+   * savedSeq : the last sequence number of the snapshot in the snapshot file, guarded by saveLock
+   * closed : whether the journal has been closed, guarded by saveLock
+   */
+  private final File journalFile;
+  private final String snapshotFile;
+  private final int compactEvery;
+  private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicLong lastSeq = new AtomicLong();
+  private volatile long snapshotSeq;
+  private BufferedWriter writer;
+  private ScheduledFuture<?> timer;
+  private final AtomicBoolean compacting = new AtomicBoolean();
+  private final Object saveLock = new Object();
+  private long savedSeq = -1;
+  private boolean closed;
+
+  /**
+   * Creates a journal for the inventory snapshot stored at snapshotFile.
+   *
+   * @param journalFile the file path the journal records are appended to
+   * @param snapshotFile the file path of the serialized inventory snapshot
+   * @param compactEvery how many records are written before a new snapshot is taken
+   * @param commitMillis how many milliseconds pending lines can wait before they are written
+   */
+  InventoryJournal(String journalFile, String snapshotFile, int compactEvery, long commitMillis) {
+    this.journalFile = new File(journalFile);
+    this.snapshotFile = snapshotFile;
+    this.compactEvery = compactEvery;
+    timer = CsvAppender.flusher.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        try {
+          sync();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }, commitMillis, commitMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates a journal that commits every DEFAULT_COMMIT_MILLIS.
+   *
+   * @param journalFile the file path the journal records are appended to
+   * @param snapshotFile the file path of the serialized inventory snapshot
+   * @param compactEvery how many records are written before a new snapshot is taken
+   */
+  InventoryJournal(String journalFile, String snapshotFile, int compactEvery) {
+    this(journalFile, snapshotFile, compactEvery, DEFAULT_COMMIT_MILLIS);
+  }
+
+  /**
+   * Continues the sequence numbers after those of the snapshot an inventory was read from, or of
+   * the last record replayed on top of it.
+   *
+   * @param seq the last sequence number already in the inventory
+   */
+  void startAfter(long seq) {
+    lastSeq.set(seq);
+    snapshotSeq = seq;
+  }
+
+  /**
+   * Hands out the sequence number of a record. A stock change takes its number while the stripe of
+   * its product is still locked, so the records of one product are numbered in the order they were
+   * made, and appends the record once the stripe is unlocked.
+   *
+   * @return the sequence number
+   */
+  long reserve() {
+    return lastSeq.incrementAndGet();
+  }
+
+  /**
+   * Puts one record on the queue of lines to be written, under the next sequence number.
+   *
+   * @param op the operation (one of the constants of this class)
+   * @param args the arguments of the operation
+   */
+  void append(String op, String... args) {
+    append(reserve(), op, args);
+  }
+
+  /**
+   * Puts one record on the queue of lines to be written under a sequence number handed out by
+   * reserve. Never blocks: the line is written by the next group commit. Once enough records have
+   * been made since the last snapshot, isCompactionDue starts returning true; the snapshot itself
+   * is left to the inventory, which hands it to the compactor.
+   *
+   * @param seq the sequence number of the record
+   * @param op the operation (one of the constants of this class)
+   * @param args the arguments of the operation
+   */
+  void append(long seq, String op, String... args) {
+    StringBuilder line = new StringBuilder(64);
+    line.append(seq).append(SEPARATOR).append(op);
+    for (String arg : args) {
+      line.append(SEPARATOR).append(arg);
+    }
+    pending.offer(line.toString());
+  }
+
+  /**
+   * Returns whether enough records have been made since the last snapshot to take a new one.
+   *
+   * @return true if a snapshot should be taken
+   */
+  boolean isCompactionDue() {
+    return lastSeq.get() - snapshotSeq >= compactEvery;
+  }
+
+  /**
+   * Writes every pending line to the journal file.
+   *
+   * @throws IOException Throws an IOException.
+   */
+  synchronized void sync() throws IOException {
+    if (pending.isEmpty()) {
+      return;
+    }
+    if (writer == null) {
+      writer = new BufferedWriter(new FileWriter(journalFile, true));
+    }
+    String line;
+    while ((line = pending.poll()) != null) {
+      writer.write(line);
+      writer.newLine();
+    }
+    writer.flush();
+  }
+
+  /**
+   * Claims the next snapshot, so that of all the lanes that see one is due only one hands it to
+   * the compactor.
+   *
+   * @return true if the caller should take the snapshot, false if one is on its way already
+   */
+  boolean startCompaction() {
+    return compacting.compareAndSet(false, true);
+  }
+
+  /**
+   * Lets the next snapshot be claimed, once the one claimed by startCompaction is done.
+   */
+  void compactionDone() {
+    compacting.set(false);
+  }
+
+  /**
+   * Copies the whole inventory into memory, as of the last sequence number handed out. The
+   * inventory must not change while this runs (see Inventory.checkpoint), which is why it only
+   * serializes into memory; save writes the copy to the file.
+   *
+   * @param inventory the inventory to snapshot
+   * @return the copy
+   * @throws IOException Throws an IOException.
+   */
+  Snapshot cut(Inventory inventory) throws IOException {
+    long seq = lastSeq.get();
+    inventory.journalSeq = seq;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(inventory);
+    out.close();
+    snapshotSeq = seq;
+    return new Snapshot(seq, bytes.toByteArray());
+  }
+
+  /**
+   * Writes a copy made by cut to the snapshot file and drops the records it holds from the
+   * journal. The snapshot is first written to a temporary file and forced, and then moved over the
+   * old one, so a crash while saving never leaves a half written snapshot behind. A copy older than
+   * the snapshot already in the file is left out.
+   *
+   * @param snapshot the copy of the inventory
+   * @throws IOException Throws an IOException.
+   */
+  void save(Snapshot snapshot) throws IOException {
+    synchronized (saveLock) {
+      if (closed || snapshot.seq < savedSeq) {
+        return;
+      }
+      File tmp = new File(snapshotFile + ".tmp");
+      try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer bytes = ByteBuffer.wrap(snapshot.bytes);
+        while (bytes.hasRemaining()) {
+          channel.write(bytes);
+        }
+        channel.force(false);
+      }
+      Files.move(tmp.toPath(), new File(snapshotFile).toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      savedSeq = snapshot.seq;
+      truncate(snapshot.seq);
+    }
+  }
+
+  /**
+   * Drops the records up to seq, which are all in the snapshot now, from the journal file. The
+   * pending lines are written first, and the records after seq are copied to a new journal file
+   * that is moved over the old one. If we die before the move, replay skips the old records
+   * because of their sequence numbers, as it does those of lanes that unlocked their stripe before
+   * the snapshot but had not appended their record yet.
+   *
+   * @param seq the last sequence number of the snapshot
+   */
+  private synchronized void truncate(long seq) throws IOException {
+    sync();
+    closeWriter();
+    if (!journalFile.exists()) {
+      return;
+    }
+    File tmp = new File(journalFile.getPath() + ".tmp");
+    BufferedReader reader = new BufferedReader(new FileReader(journalFile));
+    BufferedWriter kept = new BufferedWriter(new FileWriter(tmp, false));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        int tab = line.indexOf(SEPARATOR);
+        String number = tab < 0 ? "" : line.substring(0, tab);
+        if (isNumber(number) && Long.parseLong(number) > seq) {
+          kept.write(line);
+          kept.newLine();
+        }
+      }
+    } finally {
+      reader.close();
+      kept.close();
+    }
+    Files.move(tmp.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Replays every record of the journal that is newer than the snapshot the inventory was read
+   * from, in the order of their sequence numbers. A torn last line (the program died while writing
+   * it) ends the records read.
+   *
+   * @param inventory the inventory read back from the snapshot file
+   * @return the number of records that were replayed
+   * @throws IOException Throws an IOException.
+   */
+  int replay(Inventory inventory) throws IOException {
+    if (!journalFile.exists()) {
+      return 0;
+    }
+    //the journal must not record the changes it is replaying
+    InventoryJournal attached = inventory.getJournal();
+    inventory.setJournal(null);
+    int replayed = 0;
+    BufferedReader reader = new BufferedReader(new FileReader(journalFile));
+    try {
+      List<String[]> records = new ArrayList<>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] record = line.split(SEPARATOR, -1);
+        if (record.length < 3 || !isNumber(record[0])) {
+          System.err.println("Stopped reading " + journalFile + " at: " + line);
+          break;
+        }
+        records.add(record);
+      }
+      Collections.sort(records, new Comparator<String[]>() {
+        public int compare(String[] a, String[] b) {
+          return Long.compare(Long.parseLong(a[0]), Long.parseLong(b[0]));
+        }
+      });
+      long snapshot = inventory.journalSeq;
+      for (String[] record : records) {
+        long seq = Long.parseLong(record[0]);
+        if (seq > snapshot) {
+          try {
+            apply(inventory, record);
+          } catch (RuntimeException e) {
+            System.err.println("Stopped replaying " + journalFile + " at record " + seq);
+            break;
+          }
+          inventory.journalSeq = seq;
+          replayed += 1;
+        }
+      }
+    } finally {
+      reader.close();
+      inventory.setJournal(attached);
+    }
+    return replayed;
+  }
+
+  /**
+   * Returns whether a field is a whole number.
+   */
+  private static boolean isNumber(String field) {
+    if (field.isEmpty() || field.length() > 18) {
+      return false;
+    }
+    for (int i = 0; i < field.length(); i++) {
+      if (!Character.isDigit(field.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Applies one journal record to the inventory.
+   *
+   * @param inventory the inventory to change
+   * @param record the record split into sequence number, operation and arguments
+   * @throws IOException Throws an IOException.
+   */
+  private void apply(Inventory inventory, String[] record) throws IOException {
+    switch (record[1]) {
+      case SELL:
+      case RECEIVE:
+        inventory.restoreStock(inventory.getProduct(record[2]), Integer.parseInt(record[3]));
+        break;
+      case ADD:
+        String[] productInfo = new String[record.length - 2];
+        System.arraycopy(record, 2, productInfo, 0, productInfo.length);
+        inventory.addNewProduct(new Product(productInfo));
+        break;
+      case LAYOUT:
+        Product p = inventory.getProduct(record[2]);
+        p.setAisleNo(Integer.parseInt(record[3]));
+        inventory.updateLayout(p, Integer.parseInt(record[4]));
+        break;
+      case STORE:
+        inventory.cartToStorage(decodeCart(inventory, record[2]));
+        break;
+      case TAKE:
+        inventory.removeStoredLoad(Long.parseLong(record[2]));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown journal operation " + record[1]);
+    }
+  }
+
+  /**
+   * Encodes a cart as upc:quantity pairs separated by semicolons.
+   *
+   * @param cart the cart to encode
+   * @return the encoded cart
+   */
+  static String encodeCart(Map<Product, Integer> cart) {
+    StringBuilder encoded = new StringBuilder();
+    for (Map.Entry<Product, Integer> item : cart.entrySet()) {
+      if (encoded.length() > 0) {
+        encoded.append(';');
+      }
+      encoded.append(item.getKey().getUPC()).append(':').append(item.getValue());
+    }
+    return encoded.toString();
+  }
+
+  /**
+   * Decodes a cart written by encodeCart.
+   *
+   * @param inventory the inventory to look the products up in
+   * @param encoded the encoded cart
+   * @return the cart as a map of product to quantity
+   */
+  private static Map<Product, Integer> decodeCart(Inventory inventory, String encoded) {
+    Map<Product, Integer> cart = new LinkedHashMap<>();
+    if (!encoded.isEmpty()) {
+      for (String item : encoded.split(";")) {
+        int colon = item.indexOf(':');
+        cart.put(inventory.getProduct(item.substring(0, colon)),
+            Integer.parseInt(item.substring(colon + 1)));
+      }
+    }
+    return cart;
+  }
+
+  /**
+   * Writes the pending lines and closes the journal file.
+   *
+   * @throws IOException Throws an IOException.
+   */
+  void close() throws IOException {
+    //wait for a snapshot being written, and keep the compactor from writing any after this
+    synchronized (saveLock) {
+      closed = true;
+      synchronized (this) {
+        if (timer != null) {
+          timer.cancel(false);
+          timer = null;
+        }
+        sync();
+        closeWriter();
+      }
+    }
+  }
+
+  /**
+   * Closes the writer of the journal file, if it is open.
+   */
+  private void closeWriter() throws IOException {
+    if (writer != null) {
+      writer.close();
+      writer = null;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package grocerystore;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A LatencyHistogram counts how long an operation took, in nanoseconds, without keeping every
+ * time. Times are counted in buckets that are exact up to 64 ns and after that split every power of
+ * two into 32 buckets, so a percentile read back is within about 3% of the time that was recorded,
+ * however long it was. Recording a time is a few atomic adds and never allocates, so many threads
+ * can record into one histogram at once.
+ */
+final class LatencyHistogram {
+
+  private static final int SUB_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+  /**
+   * counts : the number of times recorded in each bucket
+   * total : the number of times recorded
+   * sum : the sum of the times recorded
+   * max : the longest time recorded
+   */
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records one time.
+   *
+   * @param nanos the time in nanoseconds; negative times are counted as 0
+   */
+  void record(long nanos) {
+    long value = Math.max(nanos, 0);
+    counts.incrementAndGet(bucketOf(value));
+    total.incrementAndGet();
+    sum.addAndGet(value);
+    long longest = max.get();
+    while (value > longest && !max.compareAndSet(longest, value)) {
+      longest = max.get();
+    }
+  }
+
+  /**
+   * Adds every time recorded in another histogram to this one.
+   *
+   * @param other the other histogram
+   */
+  void add(LatencyHistogram other) {
+    for (int b = 0; b < BUCKETS; b++) {
+      long c = other.counts.get(b);
+      if (c != 0) {
+        counts.addAndGet(b, c);
+      }
+    }
+    total.addAndGet(other.total.get());
+    sum.addAndGet(other.sum.get());
+    long longest = max.get();
+    long otherMax = other.max.get();
+    while (otherMax > longest && !max.compareAndSet(longest, otherMax)) {
+      longest = max.get();
+    }
+  }
+
+  /**
+   * Returns the number of times recorded.
+   *
+   * @return the count
+   */
+  long count() {
+    return total.get();
+  }
+
+  /**
+   * Returns the mean of the times recorded.
+   *
+   * @return the mean in nanoseconds, 0 if nothing was recorded
+   */
+  double mean() {
+    long n = total.get();
+    return n == 0 ? 0 : (double) sum.get() / n;
+  }
+
+  /**
+   * Returns the longest time recorded.
+   *
+   * @return the longest time in nanoseconds
+   */
+  long max() {
+    return max.get();
+  }
+
+  /**
+   * Returns the time that a part of the times recorded are no longer than, such as 0.99 for the
+   * 99th percentile.
+   *
+   * @param fraction the part of the times, from 0 to 1
+   * @return the time in nanoseconds, 0 if nothing was recorded
+   */
+  long percentile(double fraction) {
+    long n = total.get();
+    if (n == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(fraction * n));
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += counts.get(b);
+      if (seen >= rank) {
+        return Math.min(highestIn(b), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Returns the bucket a time is counted in.
+   */
+  private static int bucketOf(long value) {
+    if (value < 2 * SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+    return shift * SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  /**
+   * Returns the longest time counted in a bucket.
+   */
+  private static long highestIn(int bucket) {
+    if (bucket < 2 * SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long mantissa = bucket % SUB_BUCKETS + SUB_BUCKETS;
+    return ((mantissa + 1) << shift) - 1;
+  }
+}
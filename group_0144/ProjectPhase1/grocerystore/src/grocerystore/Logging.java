@@ -1,30 +1,20 @@
 package grocerystore;
 
-import java.io.File;
-import java.io.IOException;
 import java.io.Serializable;
-import java.util.logging.FileHandler;
-import java.util.logging.SimpleFormatter;
 
+/**
+ * Logging turns what History records into events of the store's EventLog (log.txt). The events
+ * keep their fields typed; formatting and writing them is left to the log's writer thread.
+ */
 class Logging implements Serializable {
 
-  //Instantiate a logger
-  private static final java.util.logging.Logger logger =
-      java.util.logging.Logger.getLogger(History.class.getName());
+  //The log every Logging sends its events to
+  private static final EventLog log = EventLog.get();
 
   /**
    * Creates Logging Object
-   * @throws IOException Throws an IOException.
    */
-  Logging() throws IOException {
-    File log = new File("log.txt");
-    // Associate the handler with the logger.
-    FileHandler logfile = new FileHandler("log.txt", true);
-    logger.addHandler(logfile);
-    //Add formatter to the handler
-    SimpleFormatter formatter = new SimpleFormatter();
-    logfile.setFormatter(formatter);
-    logger.setUseParentHandlers(false); //disables from printing to the console
+  Logging() {
   }
 
   /**
@@ -32,20 +22,19 @@ class Logging implements Serializable {
    * @param product the product on sale
    * @param start start date of the sale
    * @param end end date of the sale
-   * @param price sale price during the duration
+   * @param price sale price during the duration, in cents
    */
-  void logOnSale(String product, String start, String end, String price) {
-    logger.info(product + " on sale from " + start + " to " + end + ". Price: " +
-        price);
+  void logOnSale(String product, String start, String end, long price) {
+    log.log(EventLog.Kind.ON_SALE, product, null, start, end, 0, price);
   }
 
   /**
    * Log price change a product
    * @param product the product that's price is being changed
-   * @param newprice the new price that is assigned to the product
+   * @param newprice the new price that is assigned to the product, in cents
    */
-  void logChangePrice(String product, String newprice) {
-    logger.info(product + " price changed to " + newprice);
+  void logChangePrice(String product, long newprice) {
+    log.log(EventLog.Kind.PRICE_CHANGE, product, null, null, null, 0, newprice);
   }
 
   /**
@@ -53,8 +42,8 @@ class Logging implements Serializable {
    * @param product the product being ordered
    * @param orderquant the quantity of order
    */
-  void logReorder(String product, String orderquant) {
-    logger.info(orderquant + " of " + product + " were reordered");
+  void logReorder(String product, int orderquant) {
+    log.log(EventLog.Kind.REORDER, product, null, null, null, orderquant, 0);
   }
 
   /**
@@ -62,8 +51,8 @@ class Logging implements Serializable {
    * @param product the product being shelved
    * @param shelvedquant the quantity shelved
    */
-  void logShelved(String product, String shelvedquant) {
-    logger.info(shelvedquant + " of " + product + " were shelved");
+  void logShelved(String product, int shelvedquant) {
+    log.log(EventLog.Kind.SHELVED, product, null, null, null, shelvedquant, 0);
   }
 
   /**
@@ -72,8 +61,8 @@ class Logging implements Serializable {
    * @param worker the worker receiving the product
    * @param amount amount of product received
    */
-  void logReceived(String product, String worker, String amount) {
-    logger.info(amount + " " + product + " received to storage room by " + worker);
+  void logReceived(String product, String worker, int amount) {
+    log.log(EventLog.Kind.RECEIVED, product, worker, null, null, amount, 0);
   }
 
   /**
@@ -82,8 +71,8 @@ class Logging implements Serializable {
    * @param worker the worker that registered
    * @param amount amount of product that was registered
    */
-  void logRegistered(String product, String worker, String amount) {
-    logger.info(amount + " " + product + " registered by " + worker);
+  void logRegistered(String product, String worker, int amount) {
+    log.log(EventLog.Kind.REGISTERED, product, worker, null, null, amount, 0);
   }
 
   /**
@@ -91,38 +80,38 @@ class Logging implements Serializable {
    * @param product the product that was sold
    * @param sold amount of product that was sold
    */
-  void logSell(String product, String sold) {
-    logger.info(sold + " " + product + " sold.");
+  void logSell(String product, int sold) {
+    log.log(EventLog.Kind.SELL, product, null, null, null, sold, 0);
   }
 
   /**
    * Log how much loss there was because a customer made a return
-   * @param loss the amount of money lost
+   * @param loss the amount of money lost, in cents
    */
-  void logReturn(String loss) {
-    logger.info(loss + " loss from customer return");
+  void logReturn(long loss) {
+    log.log(EventLog.Kind.RETURN, null, null, null, null, 0, loss);
   }
 
   /**
    * Log how much profit was made
-   * @param profit the amount of profit made
+   * @param profit the amount of profit made, in cents
    */
-  void logProfit(String profit) {
-    logger.info(profit + " earned.");
+  void logProfit(long profit) {
+    log.log(EventLog.Kind.PROFIT, null, null, null, null, 0, profit);
   }
 
   /**
    * Log when regular price history was called
    */
   void logRegPriceHistory() {
-    logger.info("Returned history of products and changes of their regular prices at when");
+    log.log(EventLog.Kind.REG_PRICE_HISTORY, null, null, null, null, 0, 0);
   }
 
   /**
    * log when sale price history was called
    */
   void logSalePriceHistory() {
-    logger.info("Returned history of products and changes of their sale prices at when");
+    log.log(EventLog.Kind.SALE_PRICE_HISTORY, null, null, null, null, 0, 0);
   }
 
   /**
@@ -130,7 +119,7 @@ class Logging implements Serializable {
    * @param product the product the manager wants order hitory of
    */
   void logOrderHistory(String product) {
-    logger.info("Returned order history of " + product);
+    log.log(EventLog.Kind.ORDER_HISTORY, product, null, null, null, 0, 0);
   }
 
   /**
@@ -139,7 +128,7 @@ class Logging implements Serializable {
    * @param end end date of search profit history
    */
   void logProfitHistory(String start, String end) {
-    logger.info("Returned profit earned from " + start + " to " + end);
+    log.log(EventLog.Kind.PROFIT_HISTORY, null, null, start, end, 0, 0);
   }
 
   /**
@@ -148,7 +137,7 @@ class Logging implements Serializable {
    * @param line the line that written
    */
   void logWriteCsv(String file, String line) {
-    logger.info(line + " written to file " + file);
+    log.log(EventLog.Kind.WRITE_CSV, null, null, file, line, 0, 0);
   }
 
   /**
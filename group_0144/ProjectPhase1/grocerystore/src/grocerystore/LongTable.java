@@ -0,0 +1,252 @@
+package grocerystore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A LongTable is an append-only table of rows of longs, all with the same number of columns, for
+ * the parts of a history that grow for as long as the store is open. Rows are kept in chunks of
+ * CHUNK_ROWS rows. Only the newest HOT_CHUNKS chunks are kept on the heap, and only their rows can
+ * be changed; every older chunk is written to the file of the table by the flusher thread of
+ * CsvAppender and then dropped from the heap. Chunks are only handed to the flusher when a row is
+ * added, before it is added, so the rows a caller was told it can change stay on the heap until
+ * it adds the next row. A chunk in the file is mapped back in when one of its rows is read, and at
+ * most PAGED_CHUNKS of them stay mapped, the least recently used one being dropped first.
+ */
+class LongTable implements Serializable {
+
+  private static final int CHUNK_SHIFT = 12;
+  private static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+  private static final int HOT_CHUNKS = 4;
+  private static final int PAGED_CHUNKS = 4;
+
+  /**
+   * file : the file chunks are written to, each at its own place in it
+   * columns : the number of columns of every row
+   * chunks : the chunks of rows, each holding CHUNK_ROWS rows one after the other; null for a chunk
+   * that has been written to the file
+   * size : the number of rows
+   * spilling : the number of chunks, from the oldest, that have been handed to the flusher
+   * paged : the chunks in the file that are mapped in, least recently used first
+   */
+  private final File file;
+  private final int columns;
+  private volatile long[][] chunks = new long[0][];
+  private volatile int size;
+  private int spilling;
+  private transient Map<Integer, LongBuffer> paged = newPaged();
+
+  /**
+   * Creates an empty table.
+   *
+   * @param file the file old rows are written to
+   * @param columns the number of columns of every row
+   */
+  LongTable(File file, int columns) {
+    this.file = file;
+    this.columns = columns;
+  }
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return the number of rows
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the first row that can still be changed, handing the chunks before the newest
+   * HOT_CHUNKS to the flusher. The rows from it on stay on the heap until the next row is added.
+   *
+   * @return the first row that can be changed
+   */
+  int firstMutable() {
+    while (chunks.length - spilling > HOT_CHUNKS) {
+      spillLater(spilling++);
+    }
+    return spilling << CHUNK_SHIFT;
+  }
+
+  /**
+   * Returns a value of a row.
+   *
+   * @param row the row, from 0 to size - 1
+   * @param column the column
+   * @return the value
+   */
+  long get(int row, int column) {
+    int chunk = row >>> CHUNK_SHIFT;
+    int at = (row & (CHUNK_ROWS - 1)) * columns + column;
+    long[] rows = chunks[chunk];
+    return rows != null ? rows[at] : paged(chunk).get(at);
+  }
+
+  /**
+   * Sets a value of a row. Only one thread may change the table at a time.
+   *
+   * @param row the row, from firstMutable() to size - 1
+   * @param column the column
+   * @param value the value
+   */
+  void set(int row, int column, long value) {
+    if (row < spilling << CHUNK_SHIFT) {
+      throw new IllegalStateException("row " + row + " has been written to " + file);
+    }
+    chunks[row >>> CHUNK_SHIFT][(row & (CHUNK_ROWS - 1)) * columns + column] = value;
+  }
+
+  /**
+   * Adds a row of zeros to the end of the table. Only one thread may change the table at a time.
+   *
+   * @return the new row
+   */
+  int add() {
+    firstMutable();
+    return grow();
+  }
+
+  /**
+   * Adds a row of zeros at row at, moving the rows from it on down by one. A row cannot be put
+   * among rows that can no longer be changed, so it is put at firstMutable() instead if at is
+   * before it.
+   *
+   * @param at the row the new row should be at, from 0 to size
+   * @return the row the new row was put at
+   */
+  int insert(int at) {
+    at = Math.max(at, firstMutable());
+    int row = grow();
+    for (; row > at; row--) {
+      for (int column = 0; column < columns; column++) {
+        set(row, column, get(row - 1, column));
+      }
+    }
+    for (int column = 0; column < columns; column++) {
+      set(at, column, 0);
+    }
+    return at;
+  }
+
+  /**
+   * Adds a row of zeros to the end of the table, starting a new chunk if the last one is full.
+   */
+  private int grow() {
+    int row = size;
+    int chunk = row >>> CHUNK_SHIFT;
+    if (chunk == chunks.length) {
+      synchronized (this) {
+        long[][] grown = Arrays.copyOf(chunks, chunk + 1);
+        grown[chunk] = new long[CHUNK_ROWS * columns];
+        chunks = grown;
+      }
+    }
+    size = row + 1;
+    return row;
+  }
+
+  /**
+   * Writes a chunk to the file on the flusher thread.
+   */
+  private void spillLater(final int chunk) {
+    CsvAppender.flusher.execute(new Runnable() {
+      public void run() {
+        try {
+          spill(chunk);
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    });
+  }
+
+  /**
+   * Writes a chunk to its place in the file and drops it from the heap. If it cannot be written it
+   * stays on the heap.
+   */
+  private void spill(int chunk) throws IOException {
+    long[] rows = chunks[chunk];
+    ByteBuffer bytes = ByteBuffer.allocate(rows.length * 8);
+    bytes.asLongBuffer().put(rows);
+    File parent = file.getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE)) {
+      long at = (long) chunk * rows.length * 8;
+      while (bytes.hasRemaining()) {
+        at += channel.write(bytes, at);
+      }
+      channel.force(false);
+    }
+    synchronized (this) {
+      long[][] dropped = chunks.clone();
+      dropped[chunk] = null;
+      chunks = dropped;
+    }
+  }
+
+  /**
+   * Returns a chunk in the file, mapping it in if it is not mapped.
+   */
+  private synchronized LongBuffer paged(int chunk) {
+    LongBuffer rows = paged.get(chunk);
+    if (rows == null) {
+      long length = (long) CHUNK_ROWS * columns * 8;
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        rows = channel.map(FileChannel.MapMode.READ_ONLY, chunk * length, length).asLongBuffer();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      paged.put(chunk, rows);
+    }
+    return rows;
+  }
+
+  /**
+   * Returns an empty map of mapped chunks that drops its least recently used chunk when it holds
+   * more than PAGED_CHUNKS.
+   */
+  private static Map<Integer, LongBuffer> newPaged() {
+    return new LinkedHashMap<Integer, LongBuffer>(PAGED_CHUNKS * 2, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<Integer, LongBuffer> eldest) {
+        return size() > PAGED_CHUNKS;
+      }
+    };
+  }
+
+  /**
+   * Writes the chunks on the heap, while no chunk is being dropped from it. Chunks in the file stay
+   * there.
+   */
+  private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+  }
+
+  /**
+   * Reads the chunks on the heap back, and hands those that were still waiting to be written to
+   * the file to the flusher again.
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    paged = newPaged();
+    for (int chunk = 0; chunk < spilling; chunk++) {
+      if (chunks[chunk] != null) {
+        spillLater(chunk);
+      }
+    }
+  }
+}
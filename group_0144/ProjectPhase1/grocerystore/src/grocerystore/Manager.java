@@ -1,6 +1,5 @@
 package grocerystore;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.text.ParseException;
 import java.time.LocalDateTime;
@@ -8,6 +7,8 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -26,24 +27,23 @@ import java.util.Set;
 public class Manager extends Worker {
 
   /**
-   * OnSale : A list of products that are on sale mapped to their end date
-   *
-   * pendingOnSale : A list of product upc that will be on sale in the future mapped to a date array
-   * that consists of its start and end dates and price
+   * The most pending orders a manager is shown at a time.
+   */
+  static final int PENDING_ORDERS_SHOWN = 50;
+
+  /**
+   * sales : The sale windows of products, which put them on sale and take them off sale on time
    *
-   * pendingOrders : A list of product upc mapped to a quantity for reordering
+   * pendingOrders : The most urgent pending orders, product upc mapped to a quantity for
+   * reordering, most urgent first
    *
    * saleCart : A list of products mapped to a price
    *
-   * currDate : The current time on the computer
-   *
    * workerList : A list of workers under this manager
    */
-  Map<Product, LocalDateTime> onSale;
-  private Map<String, Map<LocalDateTime[], Double>> pendingOnSale;
+  private SaleScheduler sales;
   private Map<String, Integer> pendingOrders;
-  private LocalDateTime currDate;
-  private Map<Product, Double> saleCart = new HashMap<>();
+  private Map<Product, Long> saleCart = new HashMap<>();
   private ArrayList<Worker> workerlist;
   private LocalDateTime openingDay;
 
@@ -55,10 +55,8 @@ public class Manager extends Worker {
    */
   public Manager(History h, String id, String name) {
     super(h, id, name);
-    pendingOnSale = new HashMap<>();
-    onSale = new HashMap<>();
-    pendingOrders = new HashMap<>();
-    currDate = LocalDateTime.now();
+    sales = new SaleScheduler();
+    pendingOrders = new LinkedHashMap<>();
     this.setWorkerType("Manager");
     this.openingDay = LocalDateTime.now();
   }
@@ -68,11 +66,11 @@ public class Manager extends Worker {
     workerlist = workers;
   }
   /**
-   * Manager sets up the store before opening sales.
+   * Manager sets up the store before opening sales, and starts putting products on sale and taking
+   * them off sale on time.
    */
   public void updateStore(Inventory inventory) throws ParseException {
-    updateOnSale(inventory);
-    currDate = LocalDateTime.now();
+    sales.start(inventory);
   }
 
   // PROFIT =======================================================================================
@@ -80,43 +78,55 @@ public class Manager extends Worker {
   /**
    * Returns the profit for each day specified from start to end date.
    *
-   * @return A map of the profit from start to end
+   * @return A map of the profit in cents from start to end
    */
-  public Map<String, Double> checkProfitHistory(String start, String end) throws DateTimeParseException {
+  public Map<String, Long> checkProfitHistory(String start, String end)
+      throws DateTimeParseException {
     return history.getProfitHistory(start, end);
   }
 
   /**
-   * Returns the total profit from the start and end date of a profitHistory map.
+   * Returns the total profit from the start to the end date, without going through every profit in
+   * between.
    *
-   * @param profitHistory a map of the profits from a start day to end day
+   * @param start the start date
+   * @param end the end date
+   * @return the total profit from start to end, in cents
    */
-  public Double checkTotalProfit(Map<String, Double> profitHistory) {
-    Set<String> keys = profitHistory.keySet();
-    Double total = 0.0;
-    for (String key : keys) {
-      total = total + profitHistory.get(key);
-    }
-    return total;
+  public long checkTotalProfit(String start, String end) throws DateTimeParseException {
+    return history.getTotalProfit(start, end);
+  }
+
+  /**
+   * Returns the profit made on each day from the start to the end date.
+   *
+   * @param start the start date
+   * @param end the end date
+   * @return A map of the start of each day and the profit in cents made that day
+   */
+  public Map<String, Long> checkDailyProfit(String start, String end)
+      throws DateTimeParseException {
+    return history.getProfitRollup(start, end, ProfitLedger.Granularity.DAY);
   }
 
   // SALE =========================================================================================
 
   /**
-   * Adds an item with its discounted price to a temporary list.
+   * Adds an item with its discounted price, in dollars, to a temporary list.
    */
   public void addToSaleCart(String upc, Double price, Inventory inventory) {
-    if (price > 0.0) {
+    long cents = Money.of(price);
+    if (cents > 0) {
       Product p = inventory.getProduct(upc);
-      saleCart.put(p, price);
+      saleCart.put(p, cents);
     }
   }
 
   /**
    * Return the sale cart
-   * @return the sale cart
+   * @return the sale cart, with prices in cents
    */
-  public Map<Product, Double> getSaleCart() {
+  public Map<Product, Long> getSaleCart() {
     return saleCart;
   }
 
@@ -147,9 +157,9 @@ public class Manager extends Worker {
   /**
    * Check the regular price history of all products and the duration of that price.
    *
-   * @return a map of the product and its value as another map of date and price
+   * @return a map of the name and UPC of the product and its value as another map of date and price
    */
-  public Map<Product, Map<String, Double>> checkRegPriceHistory() {
+  public Map<String, Map<String, Long>> checkRegPriceHistory() {
     return history.getRegPriceHistory();
   }
 
@@ -157,106 +167,40 @@ public class Manager extends Worker {
    * Check the on sale price history of all products that have been on sale and the duration of that
    * price.
    *
-   * @return a map of the product and its value as another map of date and price
+   * @return a map of the name and UPC of the product and its value as another map of date and price
    */
-  public Map<Product, Map<String, Double>> checkSalePriceHistory() {
+  public Map<String, Map<String, Long>> checkSalePriceHistory() {
     return history.getSalePriceHistory();
   }
 
   /**
-   * Accepts start and end strings of i.e. 2007-12-03T10:15:30 Adds products to a list of items that
-   * are pending to be on sale. If the date of the on sale pricing is the current date, then add it
-   * to the current on sale list.
+   * Accepts start and end strings of i.e. 2007-12-03T10:15:30 Schedules the products of the sale
+   * cart to be on sale from start to end. A product goes on sale at once if start has passed. A
+   * product that already has a sale scheduled overlapping start to end is left out.
    *
    * @param start the start date in format i.e. 2007-12-03T10:15:30
    * @param end the end date in format i.e. 2007-12-03T10:15:30
+   * @return the products that were left out because their sales would overlap
    * @throws DateTimeParseException Throws a DateTimeParseException.
    * @throws IOException Throws an IOException.
    */
-  public void putOnSale(String start, String end) throws DateTimeParseException,
+  public List<Product> putOnSale(String start, String end) throws DateTimeParseException,
       IOException {
-    Set<Product> products = saleCart.keySet();
-    for (Product p : products) {
-
-      LocalDateTime startDate = LocalDateTime.parse(start);
-      LocalDateTime endDate = LocalDateTime.parse(end);
-
-      if (currDate.isEqual(startDate) ||
-          (currDate.isAfter(startDate) && currDate.isBefore(endDate)) ||
-          currDate.isEqual(endDate)) {
-        OnSaleInfo info = p.getOnSaleInfo();
-        info.setSalePrice(false, 0, saleCart.get(p),
-            startDate, endDate);
-        onSale.put(p, endDate);
+    LocalDateTime startDate = LocalDateTime.parse(start);
+    LocalDateTime endDate = LocalDateTime.parse(end);
+    Map<Product, Long> scheduled = new HashMap<>();
+    List<Product> overlapping = new ArrayList<>();
+    for (Product p : saleCart.keySet()) {
+      if (sales.schedule(p.getUPC(), startDate, endDate, saleCart.get(p))) {
+        scheduled.put(p, saleCart.get(p));
       } else {
-
-        LocalDateTime[] startEnd = new LocalDateTime[2];
-        startEnd[0] = startDate;
-        startEnd[1] = endDate;
-
-        if (pendingOnSale.containsKey(p.getUPC())) {
-          pendingOnSale.get(p.getUPC()).put(startEnd, saleCart.get(p));
-        } else {
-          pendingOnSale.put(p.getUPC(), new HashMap<>());
-          pendingOnSale.get(p.getUPC()).put(startEnd, saleCart.get(p));
-        }
+        overlapping.add(p);
       }
     }
 
     //send info to history
-    history.recordOnSale(this, start, end, saleCart);
-  }
-
-  /**
-   * Checks whether items are to be on sale starting today and whether items are off sale. Updates
-   * the pendingSale list and onSale list.
-   *
-   * @throws ParseException Throws a ParseException.
-   */
-  private void updateOnSale(Inventory inventory) throws ParseException {
-    // check if items in the onSale list have passed the end
-    Set<Product> products = onSale.keySet();
-    for (Product p : products) {
-      // the current date has passed the sale date and update the price of the product
-      if (currDate.isAfter(onSale.get(p))) {
-        OnSaleInfo info = p.getOnSaleInfo();
-        info.priceUpdate();
-        onSale.remove(p);
-      }
-    }
-    updatePendingOnSale(inventory);
-
-  }
-
-  /**
-   * Helper method for updateOnSale.
-   */
-  private void updatePendingOnSale(Inventory inventory) {
-    // check if there are any items whose start date is today or has passed
-    Set<String> pendingProducts = pendingOnSale.keySet();
-    for (String item : pendingProducts) {
-      Product p = inventory.getProduct(item);
-      // check if items are to be on sale
-      Set<LocalDateTime[]> dates = pendingOnSale.get(p.getUPC()).keySet();
-      // add to a pending removal list if finished
-      ArrayList<LocalDateTime[]> clear = new ArrayList<>();
-
-      // check if the start date is today
-      for (LocalDateTime[] date : dates) {
-        if ((currDate.isAfter(date[0]) || currDate.equals(date[0])) &&
-            currDate.isBefore(date[1])) {
-          onSale.put(p, date[1]);
-          OnSaleInfo info = p.getOnSaleInfo();
-          info.setSalePrice(false, 0, pendingOnSale.get(p.getUPC()).get(date),
-              date[0], date[1]);
-          clear.add(date);
-        }
-      }
-      // safely remove from pendingOnSale
-      for (LocalDateTime[] date : clear) {
-        pendingOnSale.get(p.getUPC()).remove(date);
-      }
-    }
+    history.recordOnSale(this, start, end, scheduled);
+    return overlapping;
   }
 
   /**
@@ -266,7 +210,7 @@ public class Manager extends Worker {
    */
   public ArrayList<String> checkOnSale() {
     ArrayList<String> saleList = new ArrayList<>();
-    for (Product p : onSale.keySet()) {
+    for (Product p : sales.onSale()) {
       saleList.add(p.getName() + " : " + p.getUPC());
     }
     return saleList;
@@ -280,12 +224,8 @@ public class Manager extends Worker {
    * @param aisle the aisle number
    * @return A list of products in a certain aisle
    */
-  public ArrayList<Product> checkAisleProducts(int aisle, Inventory inventory) {
-    if (inventory.storeLayout.containsKey(aisle)) {
-      return inventory.getProductsFromAisle(aisle);
-    } else {
-      return new ArrayList<>();
-    }
+  public List<Product> checkAisleProducts(int aisle, Inventory inventory) {
+    return inventory.getProductsFromAisle(aisle);
   }
 
   /**
@@ -303,17 +243,15 @@ public class Manager extends Worker {
   // ORDERS =======================================================================================
 
   /**
-   * Checks if there are any orders that need to be approved.
+   * Checks if there are any orders that need to be approved, and takes the PENDING_ORDERS_SHOWN
+   * most urgent of them as the pending orders of this manager.
    *
-   * @return true if such order exists
+   * @return true if there are no such orders
    */
   public boolean checkPendingOrders(Inventory inventory) {
-    if (!inventory.pendingOrderProducts.isEmpty()) {
-      for (Product p : inventory.pendingOrderProducts) {
-        if (!pendingOrders.containsKey(p.getUPC())) {
-          pendingOrders.put(p.getUPC(), p.getPendingOrder().getPendingOrderQuantity());
-        }
-      }
+    pendingOrders.clear();
+    for (Product p : inventory.pendingOrderProducts.top(PENDING_ORDERS_SHOWN)) {
+      pendingOrders.put(p.getUPC(), p.getPendingOrder().getPendingOrderQuantity());
     }
     return (pendingOrders.isEmpty());
   }
@@ -355,17 +293,20 @@ public class Manager extends Worker {
   }
 
   /**
-   * Sends the orders to the distributor and clears all pending orders.
+   * Sends every pending order to the distributor, not only the ones shown, and clears all pending
+   * orders. The queue is drained PENDING_ORDERS_SHOWN products at a time, most urgent first, so the
+   * orders a manager was shown go out first.
    */
   public void sendOrders(Inventory inventory) throws IOException {
     // sends orders to distributor
-    Set<String> allOrders = pendingOrders.keySet();
-    for (String item : allOrders) {
-      Product p = inventory.getProduct(item);
-      history.recordReorder(p, pendingOrders.get(item));
-      PendingOrder pendingOrder = p.getPendingOrder();
-      pendingOrder.setPendingTrue();
-      inventory.removePendingProduct(p.getUPC());
+    List<Product> batch;
+    while (!(batch = inventory.pendingOrderProducts.top(PENDING_ORDERS_SHOWN)).isEmpty()) {
+      for (Product p : batch) {
+        PendingOrder pendingOrder = p.getPendingOrder();
+        history.recordReorder(p, pendingOrder.getPendingOrderQuantity());
+        pendingOrder.setPendingTrue();
+        inventory.removePendingProduct(p.getUPC());
+      }
     }
     // updates orders
     pendingOrders.clear();
@@ -375,7 +316,7 @@ public class Manager extends Worker {
    * Creates the current backorder file.
    */
   public void createBackOrderFile(Inventory inventory) throws IOException {
-    IO.createCurrentBackorderedFile(inventory.getBackOrder());
+    IO.createCurrentBackorderedFile(history.getDirectory(), inventory.getBackOrder());
   }
 
   // PRODUCT PROPERTIES ===========================================================================
@@ -418,13 +359,9 @@ public class Manager extends Worker {
     String openingTime = (openingDay).format(formatter);
     LocalDateTime currentDateTime = LocalDateTime.now();
     String currentTime = currentDateTime.format(formatter);
-    Map<String, Double> profitsCum = this.checkProfitHistory(openingTime, currentTime);
-    double managerPerMea = 0.0;
-    for (double value : profitsCum.values()) {
-      managerPerMea += value;
-    }
+    long managerPerMea = this.checkTotalProfit(openingTime, currentTime);
     Map<String, String> PerformReport = new HashMap<>();
-    PerformReport.put(this.toString(), Double.toString(managerPerMea));
+    PerformReport.put(this.toString(), Money.format(managerPerMea));
     for (Worker w : workerlist) {
       if (!(w instanceof Manager))
       {
@@ -438,10 +375,10 @@ public class Manager extends Worker {
    * Takes in a file with new members and their info and add them to the inventory
    * @param filepath file path to the file with information of new members in it
    * @param inventory The inventory to be added to
-   * @throws FileNotFoundException Throws a FileNotFoundException.
+   * @throws IOException Throws an IOException.
    */
-  public void addNewMembers(String filepath, Inventory inventory) throws FileNotFoundException {
-    IO.addMembersFile(filepath, inventory.membershipData);
+  public void addNewMembers(String filepath, Inventory inventory) throws IOException {
+    IO.addMembersFile(filepath, inventory.members);
   }
 
   /**
@@ -0,0 +1,719 @@
+package grocerystore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The MappedCatalog keeps the attributes of every product of a store in memory-mapped column
+ * files, one file per attribute, outside of the garbage collected heap. Rows are sorted by UPC so a
+ * product is found with a binary search over the UPC column. The section, subsection, distributor
+ * and name of a product are stored as ids into a dictionary file, so each distinct string is only
+ * stored once.
+ *
+ * A catalog is built once from a csv file (the same format as InitialItems.csv) and after that can
+ * be opened straight away no matter how many products it holds, since nothing is read until it is
+ * asked for.
+ *
+ * A catalog can also be opened shared, read only, by every store of a StoreCluster. There is one
+ * shared catalog per directory in the process; its strings are decoded at most once for all the
+ * stores, and its columns are never written, so each store keeps its own stock and prices on the
+ * products it has made from it.
+ *
+ * The rows of each aisle and the rows that are out of stock are indexed on the heap, in plain int
+ * arrays and a bit set, the first time they are asked for. setStock and setAisle keep the index up
+ * to date from then on, so listing an aisle or the backorders never reads the whole catalog again.
+ */
+class MappedCatalog {
+
+  /**
+   * The number of digits a UPC is padded to when a row is turned back into a Product.
+   */
+  static final int UPC_DIGITS = 12;
+
+  //the price columns hold cents; a catalog from when they held doubles is not found, so it is
+  //built again from the csv file
+  private static final String META = "catalog-cents.meta";
+  private static final String UPC = "upc.col";
+  private static final String STOCK = "stock.col";
+  private static final String THRESHOLD = "threshold.col";
+  private static final String AISLE = "aisle.col";
+  private static final String REG_PRICE = "regprice.col";
+  private static final String CURR_PRICE = "currprice.col";
+  private static final String COST = "cost.col";
+  private static final String SECTION = "section";
+  private static final String SUBSECTION = "subsection";
+  private static final String DISTRIBUTOR = "distributor";
+  private static final String NAME = "name";
+
+  /**
+   * The shared catalogs that have been opened, by the canonical path of their directory.
+   */
+  private static final Map<String, MappedCatalog> shared = new ConcurrentHashMap<>();
+
+  /**
+   * directory : the directory holding the column files
+   * readOnly : whether the catalog is shared and so may not be written
+   * rows : the number of products in the catalog
+   * the buffers : one mapped column per product attribute
+   * the dictionaries : the distinct strings the string columns point into
+   */
+  private final String directory;
+  private final boolean readOnly;
+  private final int rows;
+  private final MappedByteBuffer upcs;
+  private final MappedByteBuffer stocks;
+  private final MappedByteBuffer thresholds;
+  private final MappedByteBuffer aisles;
+  private final MappedByteBuffer regPrices;
+  private final MappedByteBuffer currPrices;
+  private final MappedByteBuffer costs;
+  private final MappedByteBuffer sectionIds;
+  private final MappedByteBuffer subSectionIds;
+  private final MappedByteBuffer distributorIds;
+  private final MappedByteBuffer nameIds;
+  private final Dictionary sections;
+  private final Dictionary subSections;
+  private final Dictionary distributors;
+  private final Dictionary names;
+  /**
+   * index : the rows of each aisle and the rows out of stock, or null until it is first asked for
+   * indexLock : guards the index, and is held while it is built so no change made meanwhile is lost
+   */
+  private RowIndex index;
+  private final Object indexLock = new Object();
+
+  /**
+   * Opens the catalog stored in directory.
+   *
+   * @param directory the directory the catalog was built in
+   * @param readOnly true to open the catalog shared, read only
+   * @throws IOException Throws an IOException.
+   */
+  private MappedCatalog(String directory, boolean readOnly) throws IOException {
+    this.directory = directory;
+    this.readOnly = readOnly;
+    DataInputStream meta = new DataInputStream(new FileInputStream(new File(directory, META)));
+    try {
+      rows = meta.readInt();
+    } finally {
+      meta.close();
+    }
+    upcs = map(UPC, 8);
+    stocks = map(STOCK, 4);
+    thresholds = map(THRESHOLD, 4);
+    aisles = map(AISLE, 4);
+    regPrices = map(REG_PRICE, 8);
+    currPrices = map(CURR_PRICE, 8);
+    costs = map(COST, 8);
+    sectionIds = map(SECTION + ".col", 4);
+    subSectionIds = map(SUBSECTION + ".col", 4);
+    distributorIds = map(DISTRIBUTOR + ".col", 4);
+    nameIds = map(NAME + ".col", 4);
+    sections = new Dictionary(map(SECTION + ".dict", 0), readOnly);
+    subSections = new Dictionary(map(SUBSECTION + ".dict", 0), readOnly);
+    distributors = new Dictionary(map(DISTRIBUTOR + ".dict", 0), readOnly);
+    names = new Dictionary(map(NAME + ".dict", 0), readOnly);
+  }
+
+  /**
+   * Opens a catalog that was built before.
+   *
+   * @param directory the directory the catalog was built in
+   * @return the opened catalog
+   * @throws IOException Throws an IOException.
+   */
+  static MappedCatalog open(String directory) throws IOException {
+    return new MappedCatalog(directory, false);
+  }
+
+  /**
+   * Returns the shared, read only catalog in directory, opening it the first time it is asked for.
+   * Every caller in the process gets the same catalog for the same directory.
+   *
+   * @param directory the directory the catalog was built in
+   * @return the shared catalog
+   * @throws IOException Throws an IOException.
+   */
+  static MappedCatalog shared(String directory) throws IOException {
+    String key = new File(directory).getCanonicalPath();
+    MappedCatalog catalog = shared.get(key);
+    if (catalog == null) {
+      synchronized (shared) {
+        catalog = shared.get(key);
+        if (catalog == null) {
+          catalog = new MappedCatalog(directory, true);
+          shared.put(key, catalog);
+        }
+      }
+    }
+    return catalog;
+  }
+
+  /**
+   * Returns whether a catalog has been built in directory.
+   *
+   * @param directory the directory to check
+   * @return true if there is a catalog in the directory
+   */
+  static boolean exists(String directory) {
+    return new File(directory, META).exists();
+  }
+
+  /**
+   * Maps one column file of the catalog.
+   *
+   * @param fileName the name of the column file
+   * @param width the number of bytes per row, or 0 to map the whole file
+   * @return the mapped column
+   * @throws IOException Throws an IOException.
+   */
+  private MappedByteBuffer map(String fileName, int width) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(new File(directory, fileName),
+        readOnly ? "r" : "rw");
+    try {
+      long size = width == 0 ? file.length() : (long) rows * width;
+      return file.getChannel().map(
+          readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0, size);
+    } finally {
+      file.close();
+    }
+  }
+
+  /**
+   * Builds a catalog in directory from a csv file with columns of UPC number, quantity, section,
+   * subsection, name, threshold, aisle number, price, distributor's name, and cost. Rows that cannot
+   * be read (a UPC that is not a number, a missing column, ...) are left out and reported.
+   *
+   * @param directory the directory the column files are written to
+   * @param csvFile the csv file with the products
+   * @return the built catalog, opened
+   * @throws IOException Throws an IOException.
+   */
+  static MappedCatalog build(String directory, String csvFile) throws IOException {
+    final List<Row> products = new ArrayList<>();
+    new CsvIngester(IO.PRODUCT_COLUMNS).readAndReport(csvFile, new CsvIngester.RowParser<Row>() {
+      public Row parse(String[] productData) {
+        return new Row(productData);
+      }
+    }, new CsvIngester.RowConsumer<Row>() {
+      public void accept(Row row) {
+        products.add(row);
+      }
+    });
+
+    Collections.sort(products, new Comparator<Row>() {
+      public int compare(Row a, Row b) {
+        return Long.compare(a.upc, b.upc);
+      }
+    });
+
+    new File(directory).mkdirs();
+    int rows = products.size();
+    ByteBuffer upcs = ByteBuffer.allocate(rows * 8);
+    ByteBuffer stocks = ByteBuffer.allocate(rows * 4);
+    ByteBuffer thresholds = ByteBuffer.allocate(rows * 4);
+    ByteBuffer aisles = ByteBuffer.allocate(rows * 4);
+    ByteBuffer regPrices = ByteBuffer.allocate(rows * 8);
+    ByteBuffer costs = ByteBuffer.allocate(rows * 8);
+    ByteBuffer sectionIds = ByteBuffer.allocate(rows * 4);
+    ByteBuffer subSectionIds = ByteBuffer.allocate(rows * 4);
+    ByteBuffer distributorIds = ByteBuffer.allocate(rows * 4);
+    ByteBuffer nameIds = ByteBuffer.allocate(rows * 4);
+    Map<String, Integer> sectionDict = new LinkedHashMap<>();
+    Map<String, Integer> subSectionDict = new LinkedHashMap<>();
+    Map<String, Integer> distributorDict = new LinkedHashMap<>();
+    Map<String, Integer> nameDict = new LinkedHashMap<>();
+
+    for (Row row : products) {
+      upcs.putLong(row.upc);
+      stocks.putInt(row.stock);
+      sectionIds.putInt(idOf(sectionDict, row.section));
+      subSectionIds.putInt(idOf(subSectionDict, row.subSection));
+      nameIds.putInt(idOf(nameDict, row.name));
+      thresholds.putInt(row.threshold);
+      aisles.putInt(row.aisle);
+      regPrices.putLong(row.regPrice);
+      distributorIds.putInt(idOf(distributorDict, row.distributor));
+      costs.putLong(row.cost);
+    }
+
+    write(directory, UPC, upcs);
+    write(directory, STOCK, stocks);
+    write(directory, THRESHOLD, thresholds);
+    write(directory, AISLE, aisles);
+    write(directory, REG_PRICE, regPrices);
+    //every product starts at its regular price
+    write(directory, CURR_PRICE, regPrices);
+    write(directory, COST, costs);
+    write(directory, SECTION + ".col", sectionIds);
+    write(directory, SUBSECTION + ".col", subSectionIds);
+    write(directory, DISTRIBUTOR + ".col", distributorIds);
+    write(directory, NAME + ".col", nameIds);
+    Dictionary.write(new File(directory, SECTION + ".dict"), sectionDict);
+    Dictionary.write(new File(directory, SUBSECTION + ".dict"), subSectionDict);
+    Dictionary.write(new File(directory, DISTRIBUTOR + ".dict"), distributorDict);
+    Dictionary.write(new File(directory, NAME + ".dict"), nameDict);
+
+    //the meta file goes last, a catalog without it has not finished building.
+    DataOutputStream meta = new DataOutputStream(
+        new FileOutputStream(new File(directory, META)));
+    meta.writeInt(rows);
+    meta.close();
+    return open(directory);
+  }
+
+  /**
+   * Returns the id of value in dict, giving it the next id if it is not in there yet.
+   */
+  private static int idOf(Map<String, Integer> dict, String value) {
+    Integer id = dict.get(value);
+    if (id == null) {
+      id = dict.size();
+      dict.put(value, id);
+    }
+    return id;
+  }
+
+  /**
+   * Writes a filled column to a file.
+   */
+  private static void write(String directory, String fileName, ByteBuffer column)
+      throws IOException {
+    FileOutputStream out = new FileOutputStream(new File(directory, fileName));
+    try {
+      out.write(column.array(), 0, column.position());
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Returns the number of products in this catalog.
+   *
+   * @return the number of products
+   */
+  int size() {
+    return rows;
+  }
+
+  /**
+   * Returns the directory this catalog is stored in.
+   *
+   * @return the directory
+   */
+  String getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Returns whether this catalog is shared by several stores, and so may not be written.
+   *
+   * @return true if the catalog is read only
+   */
+  boolean isReadOnly() {
+    return readOnly;
+  }
+
+  /**
+   * Finds the row of a product.
+   *
+   * @param upc the UPC of the product
+   * @return the row of the product, or -1 if it is not in this catalog
+   */
+  int find(String upc) {
+    long key = UpcIndex.parse(upc, false);
+    return key < 0 ? -1 : find(key);
+  }
+
+  /**
+   * Finds the row of a product.
+   *
+   * @param key the UPC of the product as a number
+   * @return the row of the product, or -1 if it is not in this catalog
+   */
+  int find(long key) {
+    int low = 0;
+    int high = rows - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midKey = upcs.getLong(mid * 8);
+      if (midKey < key) {
+        low = mid + 1;
+      } else if (midKey > key) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  // The accessors below read or write one attribute of the product in a row.
+
+  long upcNumber(int row) {
+    return upcs.getLong(row * 8);
+  }
+
+  String upc(int row) {
+    String digits = Long.toString(upcNumber(row));
+    StringBuilder padded = new StringBuilder(UPC_DIGITS);
+    for (int i = digits.length(); i < UPC_DIGITS; i++) {
+      padded.append('0');
+    }
+    return padded.append(digits).toString();
+  }
+
+  int stock(int row) {
+    return stocks.getInt(row * 4);
+  }
+
+  void setStock(int row, int stock) {
+    int old = stocks.getInt(row * 4);
+    stocks.putInt(row * 4, stock);
+    //the index only changes when the row runs out of stock or comes back in, so only then is the
+    //lock taken
+    if ((old <= 0) != (stock <= 0)) {
+      synchronized (indexLock) {
+        if (index != null) {
+          index.setOutOfStock(row, stock <= 0);
+        }
+      }
+    }
+  }
+
+  int threshold(int row) {
+    return thresholds.getInt(row * 4);
+  }
+
+  void setThreshold(int row, int threshold) {
+    thresholds.putInt(row * 4, threshold);
+  }
+
+  int aisle(int row) {
+    return aisles.getInt(row * 4);
+  }
+
+  void setAisle(int row, int aisle) {
+    synchronized (indexLock) {
+      int old = aisles.getInt(row * 4);
+      aisles.putInt(row * 4, aisle);
+      if (index != null && old != aisle) {
+        index.move(row, old, aisle);
+      }
+    }
+  }
+
+  long regPrice(int row) {
+    return regPrices.getLong(row * 8);
+  }
+
+  void setRegPrice(int row, long price) {
+    regPrices.putLong(row * 8, price);
+  }
+
+  long currPrice(int row) {
+    return currPrices.getLong(row * 8);
+  }
+
+  void setCurrPrice(int row, long price) {
+    currPrices.putLong(row * 8, price);
+  }
+
+  long cost(int row) {
+    return costs.getLong(row * 8);
+  }
+
+  String section(int row) {
+    return sections.get(sectionIds.getInt(row * 4));
+  }
+
+  String subSection(int row) {
+    return subSections.get(subSectionIds.getInt(row * 4));
+  }
+
+  String distributor(int row) {
+    return distributors.get(distributorIds.getInt(row * 4));
+  }
+
+  String name(int row) {
+    return names.get(nameIds.getInt(row * 4));
+  }
+
+  /**
+   * Returns the index, building it from the aisle and stock columns if it has not been built yet.
+   * Must be called holding indexLock.
+   */
+  private RowIndex index() {
+    if (index == null) {
+      index = new RowIndex(this);
+    }
+    return index;
+  }
+
+  /**
+   * Returns the rows whose aisle is from first to last, aisle by aisle and in order of UPC within
+   * an aisle.
+   *
+   * @param first the first aisle number
+   * @param last the last aisle number
+   * @return a new array of the rows
+   */
+  int[] rowsInAisles(int first, int last) {
+    synchronized (indexLock) {
+      return index().rowsInAisles(first, last);
+    }
+  }
+
+  /**
+   * Returns the rows that are out of stock, in order of UPC.
+   *
+   * @return a new array of the rows
+   */
+  int[] outOfStockRows() {
+    synchronized (indexLock) {
+      return index().outOfStockRows();
+    }
+  }
+
+  /**
+   * Returns the number of rows that are out of stock.
+   *
+   * @return the number of rows
+   */
+  int outOfStockCount() {
+    synchronized (indexLock) {
+      return index().outOfStock.cardinality();
+    }
+  }
+
+  /**
+   * Writes every changed column back to its file. Does nothing for a read only catalog.
+   */
+  void force() {
+    if (readOnly) {
+      return;
+    }
+    stocks.force();
+    thresholds.force();
+    aisles.force();
+    regPrices.force();
+    currPrices.force();
+  }
+
+  /**
+   * The rows of each aisle, kept sorted, and a bit per row that is set while the row is out of
+   * stock.
+   */
+  private static class RowIndex {
+
+    private final TreeMap<Integer, Rows> aisles = new TreeMap<>();
+    private final BitSet outOfStock;
+
+    RowIndex(MappedCatalog catalog) {
+      outOfStock = new BitSet(catalog.rows);
+      for (int row = 0; row < catalog.rows; row++) {
+        aisle(catalog.aisle(row)).add(row);
+        if (catalog.stock(row) <= 0) {
+          outOfStock.set(row);
+        }
+      }
+    }
+
+    private Rows aisle(int aisle) {
+      Rows rows = aisles.get(aisle);
+      if (rows == null) {
+        rows = new Rows();
+        aisles.put(aisle, rows);
+      }
+      return rows;
+    }
+
+    void setOutOfStock(int row, boolean out) {
+      outOfStock.set(row, out);
+    }
+
+    void move(int row, int from, int to) {
+      Rows old = aisles.get(from);
+      if (old != null) {
+        old.remove(row);
+      }
+      aisle(to).add(row);
+    }
+
+    int[] rowsInAisles(int first, int last) {
+      if (first > last) {
+        return new int[0];
+      }
+      Map<Integer, Rows> range = aisles.subMap(first, true, last, true);
+      int total = 0;
+      for (Rows rows : range.values()) {
+        total += rows.size;
+      }
+      int[] result = new int[total];
+      int n = 0;
+      for (Rows rows : range.values()) {
+        System.arraycopy(rows.rows, 0, result, n, rows.size);
+        n += rows.size;
+      }
+      return result;
+    }
+
+    int[] outOfStockRows() {
+      int[] result = new int[outOfStock.cardinality()];
+      int n = 0;
+      for (int row = outOfStock.nextSetBit(0); row >= 0; row = outOfStock.nextSetBit(row + 1)) {
+        result[n++] = row;
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The rows of one aisle, sorted. Rows are added in order while the index is built, so only a row
+   * that moves aisle has to be put in its place.
+   */
+  private static class Rows {
+
+    int[] rows = new int[16];
+    int size;
+
+    void add(int row) {
+      int at = size == 0 || rows[size - 1] < row ? size : Arrays.binarySearch(rows, 0, size, row);
+      if (at >= 0 && at < size) {
+        return;
+      }
+      at = at < 0 ? -at - 1 : at;
+      if (size == rows.length) {
+        rows = Arrays.copyOf(rows, size * 2);
+      }
+      System.arraycopy(rows, at, rows, at + 1, size - at);
+      rows[at] = row;
+      size++;
+    }
+
+    void remove(int row) {
+      int at = Arrays.binarySearch(rows, 0, size, row);
+      if (at >= 0) {
+        System.arraycopy(rows, at + 1, rows, at, size - at - 1);
+        size--;
+      }
+    }
+  }
+
+  /**
+   * A row of the csv file a catalog is built from, with its numbers already parsed (on the thread
+   * that read the row).
+   */
+  private static class Row {
+
+    final long upc;
+    final int stock;
+    final String section;
+    final String subSection;
+    final String name;
+    final int threshold;
+    final int aisle;
+    final long regPrice;
+    final String distributor;
+    final long cost;
+
+    Row(String[] productData) {
+      upc = UpcIndex.parse(productData[0], false);
+      if (upc < 0) {
+        throw new IllegalArgumentException("bad UPC " + productData[0]);
+      }
+      stock = Integer.parseInt(productData[1]);
+      section = productData[2];
+      subSection = productData[3];
+      name = productData[4];
+      threshold = Integer.parseInt(productData[5]);
+      aisle = Integer.parseInt(productData[6]);
+      regPrice = Money.parse(productData[7]);
+      distributor = productData[8];
+      cost = Money.parse(productData[9]);
+    }
+  }
+
+  /**
+   * A Dictionary holds the distinct strings of one string column. The file starts with the number
+   * of strings, followed by the byte offset of every string (and the end of the last one) and
+   * then the UTF-8 bytes of all the strings. Small dictionaries (such as sections) are decoded
+   * once and kept; large ones (such as names) are decoded each time a string is asked for, unless
+   * the dictionary is shared by several stores, in which case every string is kept once decoded so
+   * the stores share one copy of it.
+   */
+  private static class Dictionary {
+
+    private static final int CACHE_LIMIT = 1 << 16;
+
+    private final ByteBuffer data;
+    private final int count;
+    private final String[] cache;
+
+    Dictionary(ByteBuffer data, boolean keepAll) {
+      this.data = data;
+      this.count = data.getInt(0);
+      this.cache = keepAll || count <= CACHE_LIMIT ? new String[count] : null;
+    }
+
+    String get(int id) {
+      if (cache != null && cache[id] != null) {
+        return cache[id];
+      }
+      int start = data.getInt(4 + id * 4);
+      int end = data.getInt(4 + (id + 1) * 4);
+      byte[] bytes = new byte[end - start];
+      ByteBuffer view = data.duplicate();
+      view.position(4 + (count + 1) * 4 + start);
+      view.get(bytes);
+      String value = new String(bytes, StandardCharsets.UTF_8);
+      if (cache != null) {
+        cache[id] = value;
+      }
+      return value;
+    }
+
+    static void write(File file, Map<String, Integer> dict) throws IOException {
+      DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(file)));
+      try {
+        List<byte[]> encoded = new ArrayList<>(dict.size());
+        for (String value : dict.keySet()) {
+          encoded.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        out.writeInt(encoded.size());
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] bytes : encoded) {
+          offset += bytes.length;
+          out.writeInt(offset);
+        }
+        for (byte[] bytes : encoded) {
+          out.write(bytes);
+        }
+      } finally {
+        out.close();
+      }
+    }
+  }
+}
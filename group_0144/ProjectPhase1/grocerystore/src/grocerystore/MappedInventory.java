@@ -0,0 +1,491 @@
+package grocerystore;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A MappedInventory is an Inventory whose products live in a MappedCatalog, outside of the heap,
+ * instead of one Product object per UPC. A Product object is only made for a UPC when it is first
+ * asked for (for example when it is scanned), and from then on it is kept in the inventory like any
+ * other product. Changes in stock and aisle are written through to the catalog straight away; the
+ * rest of a product's attributes (prices, threshold) are written back whenever the inventory is
+ * saved.
+ *
+ * Products that are added later on (new shipments) are not in the catalog and are kept on the heap
+ * exactly as a normal Inventory would.
+ *
+ * Listing an aisle or the backorders does not make Product objects for the rows it goes over: rows
+ * that were never asked for are listed as copies that are not kept, found through the index of the
+ * catalog rather than by reading every row.
+ *
+ * When the catalog is shared by the stores of a StoreCluster it is read only: nothing is written
+ * through, and the stock, aisle and prices of this store live only on the products it has made,
+ * which are saved with the inventory. A product this store never asked for still has the stock
+ * and aisle the catalog was built with.
+ */
+class MappedInventory extends Inventory {
+
+  /**
+   * catalog : the catalog that holds the products of this inventory
+   * catalogDirectory : the directory of the catalog, used to open it again after deserializing
+   * shared : whether the catalog is shared with other stores, read only
+   * madeCount : the number of products of the catalog that have been made and are kept on the heap
+   * unmadeOutOfStock : the number of rows of the catalog that are out of stock and have not been
+   * made, or -1 if they have not been counted yet
+   */
+  private transient MappedCatalog catalog;
+  private final String catalogDirectory;
+  private final boolean shared;
+  private transient int madeCount;
+  private transient int unmadeOutOfStock = -1;
+
+  /**
+   * Creates an inventory backed by catalog.
+   *
+   * @param catalog the catalog holding the products of this inventory
+   */
+  MappedInventory(MappedCatalog catalog) {
+    this.catalog = catalog;
+    this.catalogDirectory = catalog.getDirectory();
+    this.shared = catalog.isReadOnly();
+  }
+
+  /**
+   * Opens the catalog in catalogDirectory, building it from csvFile first if it has not been built
+   * yet, and returns an inventory backed by it.
+   *
+   * @param catalogDirectory the directory of the catalog
+   * @param csvFile a csv file in the same format as InitialItems.csv
+   * @return the inventory backed by the catalog
+   * @throws IOException Throws an IOException.
+   */
+  static MappedInventory open(String catalogDirectory, String csvFile) throws IOException {
+    MappedCatalog catalog;
+    if (MappedCatalog.exists(catalogDirectory)) {
+      catalog = MappedCatalog.open(catalogDirectory);
+    } else {
+      catalog = MappedCatalog.build(catalogDirectory, csvFile);
+    }
+    return new MappedInventory(catalog);
+  }
+
+  /**
+   * Returns the product when given the UPC, making a Product object from the catalog the first time
+   * it is asked for.
+   *
+   * @param productUPC the unique String UPC of the product that will be returned.
+   * @return the product object requested by its UPC, or null if there is none.
+   */
+  @Override
+  Product getProduct(String productUPC) {
+    long upc = UpcIndex.parse(productUPC, requireCheckDigit);
+    if (upc < 0) {
+      return null;
+    }
+    Product p = super.getProduct(upc);
+    if (p == null) {
+      int row = catalog.find(upc);
+      if (row >= 0) {
+        p = materialize(row);
+      }
+    }
+    return p;
+  }
+
+  /**
+   * Makes the Product object of a row of the catalog and keeps it in this inventory.
+   *
+   * @param row the row of the catalog
+   * @return the Product of the row
+   */
+  private synchronized Product materialize(int row) {
+    Product p = super.getProduct(catalog.upcNumber(row));
+    if (p != null) {
+      return p;
+    }
+    p = productOf(row);
+    indexProduct(p);
+    return p;
+  }
+
+  /**
+   * Keeps a product on the heap, counting it among the products made from the catalog if it is
+   * one of them. The stock of a row is only changed by the product made from it, so a row that is
+   * out of stock when it is made stops counting as one that was not made.
+   *
+   * @param currProduct the product to keep.
+   */
+  @Override
+  synchronized void indexProduct(Product currProduct) {
+    long upc = UpcIndex.parse(currProduct.getUPC(), false);
+    int row = super.getProduct(upc) == null ? catalog.find(upc) : -1;
+    super.indexProduct(currProduct);
+    if (row >= 0) {
+      madeCount++;
+      if (unmadeOutOfStock > 0 && catalog.stock(row) <= 0) {
+        unmadeOutOfStock--;
+      }
+    }
+  }
+
+  /**
+   * Makes a Product object from a row of the catalog without keeping it in this inventory.
+   *
+   * @param row the row of the catalog
+   * @return a new Product with the attributes of the row
+   */
+  private Product productOf(int row) {
+    Product p = new Product(catalog.upc(row), catalog.stock(row), catalog.section(row),
+        catalog.subSection(row), catalog.name(row), catalog.threshold(row), catalog.aisle(row),
+        catalog.regPrice(row), catalog.distributor(row), catalog.cost(row));
+    p.setCurrPrice(catalog.currPrice(row));
+    p.backOrderStatus = p.getStock() <= 0;
+    return p;
+  }
+
+  /**
+   * Returns the product made from a row of the catalog, or null if it has not been made.
+   */
+  private Product made(int row) {
+    return super.getProduct(catalog.upcNumber(row));
+  }
+
+  /**
+   * Writes the new stock of a product to the catalog, while its stripe is still locked so that two
+   * lanes cannot write the same row out of order.
+   *
+   * @param currProduct the product whose stock changed.
+   */
+  @Override
+  void stockChanged(Product currProduct) {
+    if (!shared) {
+      writeStock(currProduct);
+    }
+  }
+
+  /**
+   * Writes the stock of a product to the catalog if it is in there.
+   */
+  private void writeStock(Product p) {
+    int row = catalog.find(p.getUPC());
+    if (row >= 0) {
+      catalog.setStock(row, p.getStock());
+    }
+  }
+
+  /**
+   * Adds a product to the layout, unless it is in the catalog (the catalog already knows the aisle
+   * of its products).
+   */
+  @Override
+  void addToLayout(Product currproduct) {
+    if (catalog.find(currproduct.getUPC()) < 0) {
+      super.addToLayout(currproduct);
+    }
+  }
+
+  /**
+   * Updates the location of this product and writes the new aisle to the catalog.
+   *
+   * @param currProduct the current product to be have its location updated in the layout
+   * @param aisleNum the old aisle number this product has as its location aisle number in store.
+   */
+  @Override
+  void updateLayout(Product currProduct, Integer aisleNum) {
+    int row = shared ? -1 : catalog.find(currProduct.getUPC());
+    if (row >= 0) {
+      catalog.setAisle(row, currProduct.getAisleNo());
+    }
+    super.updateLayout(currProduct, aisleNum);
+  }
+
+  /**
+   * Returns all the products in the aisles from first to last, from both the catalog and the
+   * products added later on, aisle by aisle in the order they are walked past. Products of the
+   * catalog that have not been made are listed as copies that are not kept; look a product up by
+   * its UPC to change it.
+   *
+   * @param first the first aisle number
+   * @param last the last aisle number
+   * @return an unmodifiable list of products from the aisles requested.
+   */
+  @Override
+  List<Product> getProductsFromAisles(int first, int last) {
+    List<Product> aisleProducts = new ArrayList<>(super.getProductsFromAisles(first, last));
+    for (int row : catalog.rowsInAisles(first, last)) {
+      Product made = made(row);
+      if (made == null) {
+        aisleProducts.add(productOf(row));
+      } else if (made.getAisleNo() >= first && made.getAisleNo() <= last) {
+        aisleProducts.add(made);
+      }
+    }
+    if (shared) {
+      //a shared catalog still has the aisle a product was built with, so the products this store
+      //moved into these aisles are not among the rows above
+      addMovedInto(aisleProducts, productMap, first, last);
+      addMovedInto(aisleProducts, backOrder, first, last);
+    }
+    Collections.sort(aisleProducts, new Comparator<Product>() {
+      public int compare(Product p1, Product p2) {
+        int c = Integer.compare(p1.getAisleNo(), p2.getAisleNo());
+        return c != 0 ? c : AisleLayout.WALK_ORDER.compare(p1, p2);
+      }
+    });
+    return Collections.unmodifiableList(aisleProducts);
+  }
+
+  /**
+   * Adds the products made from a shared catalog that this store moved into the aisles from first
+   * to last.
+   */
+  private void addMovedInto(List<Product> aisleProducts, Map<String, Product> products,
+      int first, int last) {
+    for (Product p : products.values()) {
+      int aisle = p.getAisleNo();
+      if (aisle >= first && aisle <= last) {
+        int row = catalog.find(p.getUPC());
+        if (row >= 0 && (catalog.aisle(row) < first || catalog.aisle(row) > last)) {
+          aisleProducts.add(p);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the UPC of every product in the store, including those of the catalog that were never
+   * asked for, without making their Product objects.
+   *
+   * @return a new list of the UPCs
+   */
+  @Override
+  List<String> getUpcs() {
+    List<String> upcs = super.getUpcs();
+    for (int row = 0; row < catalog.size(); row++) {
+      if (super.getProduct(catalog.upcNumber(row)) == null) {
+        upcs.add(catalog.upc(row));
+      }
+    }
+    return upcs;
+  }
+
+  /**
+   * Returns a map of backordered items, including those of the catalog that were never asked for.
+   * The map is a view: the rows of the catalog that are out of stock are found through its index
+   * and listed as copies that are not kept, so asking for the backorders of a large catalog does
+   * not fill the heap with its products.
+   *
+   * @return an unmodifiable map of the backordered items
+   */
+  @Override
+  Map<String, Product> getBackOrder() {
+    return new BackOrderView(super.getBackOrder(), catalog.outOfStockRows());
+  }
+
+  /**
+   * The backordered products of the heap, followed by the rows of the catalog that were out of
+   * stock when the view was made and have not been made into products.
+   */
+  private class BackOrderView extends AbstractMap<String, Product> {
+
+    private final Map<String, Product> onHeap;
+    private final int[] rows;
+
+    BackOrderView(Map<String, Product> onHeap, int[] rows) {
+      this.onHeap = onHeap;
+      this.rows = rows;
+    }
+
+    @Override
+    public Product get(Object upc) {
+      Product p = onHeap.get(upc);
+      if (p == null && upc instanceof String) {
+        int row = catalog.find((String) upc);
+        if (row >= 0 && made(row) == null && catalog.stock(row) <= 0) {
+          p = productOf(row);
+        }
+      }
+      return p;
+    }
+
+    @Override
+    public boolean containsKey(Object upc) {
+      return get(upc) != null;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Product>> entrySet() {
+      return new AbstractSet<Map.Entry<String, Product>>() {
+        @Override
+        public Iterator<Map.Entry<String, Product>> iterator() {
+          return new BackOrderIterator(onHeap.entrySet().iterator(), rows);
+        }
+
+        @Override
+        public int size() {
+          return onHeap.size() + unmadeOutOfStock();
+        }
+      };
+    }
+  }
+
+  /**
+   * Goes over the backordered products of the heap and then over the rows of the catalog, skipping
+   * the rows that have been made into products since they are among those of the heap.
+   */
+  private class BackOrderIterator implements Iterator<Map.Entry<String, Product>> {
+
+    private final Iterator<Map.Entry<String, Product>> onHeap;
+    private final int[] rows;
+    private int next;
+
+    BackOrderIterator(Iterator<Map.Entry<String, Product>> onHeap, int[] rows) {
+      this.onHeap = onHeap;
+      this.rows = rows;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (onHeap.hasNext()) {
+        return true;
+      }
+      while (next < rows.length && made(rows[next]) != null) {
+        next++;
+      }
+      return next < rows.length;
+    }
+
+    @Override
+    public Map.Entry<String, Product> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (onHeap.hasNext()) {
+        return onHeap.next();
+      }
+      Product p = productOf(rows[next++]);
+      return new AbstractMap.SimpleImmutableEntry<>(p.getUPC(), p);
+    }
+  }
+
+  /**
+   * Returns the number of products in the store, including those of the catalog that were never
+   * asked for, from the number of products made rather than by going over the catalog.
+   *
+   * @return the number of products
+   */
+  @Override
+  synchronized int size() {
+    return super.size() + catalog.size() - madeCount;
+  }
+
+  /**
+   * Returns the number of backordered products, including those of the catalog that were never
+   * asked for, without making their Product objects or going over the catalog.
+   *
+   * @return the number of backordered products
+   */
+  @Override
+  synchronized int backOrderCount() {
+    return super.backOrderCount() + unmadeOutOfStock();
+  }
+
+  /**
+   * Returns the number of rows of the catalog that are out of stock and have not been made,
+   * counting them the first time it is asked for.
+   */
+  private synchronized int unmadeOutOfStock() {
+    if (unmadeOutOfStock < 0) {
+      int count = catalog.outOfStockCount();
+      for (int row : catalog.outOfStockRows()) {
+        if (super.getProduct(catalog.upcNumber(row)) != null) {
+          count--;
+        }
+      }
+      unmadeOutOfStock = count;
+    }
+    return unmadeOutOfStock;
+  }
+
+  /**
+   * Counts the products of the heap that were made from the catalog.
+   */
+  private void countMade() {
+    madeCount = 0;
+    for (String upc : super.getUpcs()) {
+      if (catalog.find(upc) >= 0) {
+        madeCount++;
+      }
+    }
+  }
+
+  /**
+   * Checks if this product is recorded as something the store sells and recieves.
+   *
+   * @param productUPC the unique UPC of the product being checked
+   * @return boolean true if the product is in the store, false otherwise.
+   */
+  @Override
+  boolean isInStore(String productUPC) {
+    return super.isInStore(productUPC) || catalog.find(productUPC) >= 0;
+  }
+
+  /**
+   * Writes every product that was made from the catalog back to it and forces the catalog to disk.
+   * A shared catalog is left as it is.
+   */
+  void flush() {
+    if (shared) {
+      return;
+    }
+    writeBack(productMap);
+    writeBack(backOrder);
+    catalog.force();
+  }
+
+  /**
+   * Writes the attributes of the products in products back to the catalog.
+   */
+  private void writeBack(Map<String, Product> products) {
+    for (Product p : products.values()) {
+      int row = catalog.find(p.getUPC());
+      if (row >= 0) {
+        catalog.setStock(row, p.getStock());
+        catalog.setThreshold(row, p.getThreshold());
+        catalog.setAisle(row, p.getAisleNo());
+        catalog.setRegPrice(row, p.getRegPrice());
+        catalog.setCurrPrice(row, p.getCurrPrice());
+      }
+    }
+  }
+
+  /**
+   * Writes the catalog back before the products on the heap are serialized.
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    flush();
+    out.defaultWriteObject();
+  }
+
+  /**
+   * Opens the catalog again after the products on the heap are deserialized.
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    catalog = shared
+        ? MappedCatalog.shared(catalogDirectory) : MappedCatalog.open(catalogDirectory);
+    countMade();
+    unmadeOutOfStock = -1;
+  }
+}
@@ -0,0 +1,546 @@
+package grocerystore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * The MembershipDirectory holds the loyalty members of a store in memory-mapped files in its own
+ * directory, apart from the inventory, so a store with millions of members opens without reading
+ * them and does not write them out with every inventory snapshot. Members are keyed by their id as
+ * a number. Every member is a fixed size record:
+ *
+ * <pre>
+ *   0  id            long
+ *   8  phone         long  (the digits of the phone number, if it has 1 to 18 of them)
+ *  16  name          int   (offset of the first name in the names file)
+ *  20  firstLength   short (bytes of UTF-8)
+ *  22  lastLength    short (bytes of UTF-8)
+ *  24  phoneLength   short (bytes of UTF-8 of the phone number when it is kept as text)
+ *  26  phoneDigits   byte  (number of digits in phone, 0 when the phone number is kept as text)
+ * </pre>
+ *
+ * The first records are sorted by id and found by binary search; members added since then are
+ * appended after them and found through a small hash table, and are merged into the sorted part
+ * once there are enough of them. A Bloom filter, kept in a file of its own, answers most lookups of
+ * ids that are not members without touching the records at all.
+ */
+class MembershipDirectory {
+
+  /**
+   * The directory members are kept in unless the store says otherwise.
+   */
+  static final String DEFAULT_DIRECTORY = "members";
+
+  private static final String RECORDS = "members.rec";
+  private static final String NAMES = "members.names";
+  private static final String BLOOM = "members.bloom";
+
+  /**
+   * The header of the records file: a magic number, the number of sorted records, the number of
+   * records, and the number of bytes used in the names file.
+   */
+  private static final int MAGIC = 0x4d454d42;
+  private static final int HEADER_SIZE = 16;
+  private static final int SORTED_AT = 4;
+  private static final int COUNT_AT = 8;
+  private static final int NAME_BYTES_AT = 12;
+
+  private static final int RECORD_SIZE = 32;
+  private static final int ID = 0;
+  private static final int PHONE = 8;
+  private static final int NAME = 16;
+  private static final int FIRST_LENGTH = 20;
+  private static final int LAST_LENGTH = 22;
+  private static final int PHONE_LENGTH = 24;
+  private static final int PHONE_DIGITS = 26;
+  private static final int MAX_PHONE_DIGITS = 18;
+  private static final int MAX_TEXT_BYTES = 0xFFFF;
+
+  private static final int INITIAL_RECORDS = 1 << 10;
+  private static final int INITIAL_NAME_BYTES = 1 << 16;
+
+  /**
+   * Appended records are merged into the sorted ones once there are more than MIN_MERGE of them
+   * and more than a quarter as many as sorted ones, so merging costs a few copies of the directory
+   * however it grew.
+   */
+  private static final int MIN_MERGE = 1 << 12;
+
+  private static final int BLOOM_BITS_PER_MEMBER = 10;
+  private static final int BLOOM_HASHES = 7;
+  private static final int MIN_BLOOM_BITS = 1 << 16;
+
+  /**
+   * directory : the directory of the files
+   * records, names, bloom : the mapped files
+   * sorted : the number of records sorted by id at the front of records
+   * count : the number of records
+   * nameBytes : the number of bytes used in names
+   * appendedIds, appendedRows : open-addressing table of the id and newest record of every member
+   * appended since the last merge (an id of 0 is an empty bucket)
+   * appended : the number of members in the table
+   */
+  private final String directory;
+  private MappedByteBuffer records;
+  private MappedByteBuffer names;
+  private volatile MappedByteBuffer bloom;
+  private int sorted;
+  private int count;
+  private int nameBytes;
+  private long[] appendedIds = new long[64];
+  private int[] appendedRows = new int[64];
+  private int appended;
+
+  /**
+   * Opens the directory, making empty files the first time.
+   *
+   * @param directory the directory of the files
+   * @throws IOException Throws an IOException.
+   */
+  private MembershipDirectory(String directory) throws IOException {
+    this.directory = directory;
+    new File(directory).mkdirs();
+    File recordsFile = new File(directory, RECORDS);
+    if (!recordsFile.exists()) {
+      records = map(RECORDS, HEADER_SIZE + (long) INITIAL_RECORDS * RECORD_SIZE);
+      records.putInt(0, MAGIC);
+      names = map(NAMES, INITIAL_NAME_BYTES);
+      bloom = map(BLOOM, MIN_BLOOM_BITS / 8);
+      writeHeader();
+      return;
+    }
+    records = map(RECORDS, 0);
+    if (records.getInt(0) != MAGIC) {
+      throw new IOException(recordsFile + " is not a membership directory");
+    }
+    sorted = records.getInt(SORTED_AT);
+    count = records.getInt(COUNT_AT);
+    nameBytes = records.getInt(NAME_BYTES_AT);
+    names = map(NAMES, 0);
+    bloom = map(BLOOM, 0);
+    for (int row = sorted; row < count; row++) {
+      index(idAt(row), row);
+    }
+  }
+
+  /**
+   * Opens the membership directory kept in directory, making it if there is none.
+   *
+   * @param directory the directory of the files
+   * @return the opened directory
+   * @throws IOException Throws an IOException.
+   */
+  static MembershipDirectory open(String directory) throws IOException {
+    return new MembershipDirectory(directory);
+  }
+
+  /**
+   * Returns a member id as a number.
+   *
+   * @param memberId the member id
+   * @return the id, or -1 if it is not a number
+   */
+  static long parseId(String memberId) {
+    return memberId == null ? -1 : UpcIndex.parse(memberId.trim(), false);
+  }
+
+  /**
+   * Adds a member, or replaces the member with the same id.
+   *
+   * @param memberId the member id, a number
+   * @param firstName the first name
+   * @param lastName the last name
+   * @param phoneNum the phone number
+   * @return false if the member id is not a number or a field is too long to keep
+   * @throws IOException if the files could not be grown
+   */
+  synchronized boolean add(String memberId, String firstName, String lastName, String phoneNum)
+      throws IOException {
+    long id = parseId(memberId);
+    byte[] first = firstName.getBytes(StandardCharsets.UTF_8);
+    byte[] last = lastName.getBytes(StandardCharsets.UTF_8);
+    int digits = 0;
+    long phone = 0;
+    for (int i = 0; i < phoneNum.length(); i++) {
+      char c = phoneNum.charAt(i);
+      if (c >= '0' && c <= '9') {
+        phone = phone * 10 + (c - '0');
+        digits++;
+      }
+    }
+    byte[] phoneText = new byte[0];
+    if (digits == 0 || digits > MAX_PHONE_DIGITS) {
+      digits = 0;
+      phone = 0;
+      phoneText = phoneNum.getBytes(StandardCharsets.UTF_8);
+    }
+    if (id < 0 || first.length > MAX_TEXT_BYTES || last.length > MAX_TEXT_BYTES
+        || phoneText.length > MAX_TEXT_BYTES) {
+      return false;
+    }
+
+    int text = first.length + last.length + phoneText.length;
+    if (HEADER_SIZE + (long) (count + 1) * RECORD_SIZE > records.capacity()) {
+      records = grow(RECORDS, records, HEADER_SIZE + 2L * records.capacity());
+    }
+    if ((long) nameBytes + text > names.capacity()) {
+      names = grow(NAMES, names, Math.max(2L * names.capacity(), (long) nameBytes + text));
+    }
+    int row = count;
+    int at = HEADER_SIZE + row * RECORD_SIZE;
+    records.putLong(at + ID, id);
+    records.putLong(at + PHONE, phone);
+    records.putInt(at + NAME, nameBytes);
+    records.putShort(at + FIRST_LENGTH, (short) first.length);
+    records.putShort(at + LAST_LENGTH, (short) last.length);
+    records.putShort(at + PHONE_LENGTH, (short) phoneText.length);
+    records.put(at + PHONE_DIGITS, (byte) digits);
+    putBytes(first);
+    putBytes(last);
+    putBytes(phoneText);
+    count = row + 1;
+    writeHeader();
+    index(id, row);
+    addToBloom(bloom, id);
+
+    if (appended > MIN_MERGE && appended > sorted / 4) {
+      merge();
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether memberId is the id of a member. Most ids that are not are turned away by the
+   * Bloom filter without taking the lock of the directory.
+   *
+   * @param memberId the member id
+   * @return true if there is a member with the id
+   */
+  boolean isMember(String memberId) {
+    long id = parseId(memberId);
+    if (id < 0 || !mightContain(bloom, id)) {
+      return false;
+    }
+    synchronized (this) {
+      return find(id) >= 0;
+    }
+  }
+
+  /**
+   * Returns the first and last name of a member, one after the other.
+   *
+   * @param memberId the member id
+   * @return the name, or null if there is no such member
+   */
+  synchronized String name(String memberId) {
+    int row = find(parseId(memberId));
+    if (row < 0) {
+      return null;
+    }
+    int at = HEADER_SIZE + row * RECORD_SIZE;
+    int offset = records.getInt(at + NAME);
+    int firstLength = records.getShort(at + FIRST_LENGTH) & MAX_TEXT_BYTES;
+    int lastLength = records.getShort(at + LAST_LENGTH) & MAX_TEXT_BYTES;
+    return text(offset, firstLength) + text(offset + firstLength, lastLength);
+  }
+
+  /**
+   * Returns the phone number of a member. A ten digit number is written as (416) 555-0123, other
+   * numbers as their digits.
+   *
+   * @param memberId the member id
+   * @return the phone number, or null if there is no such member
+   */
+  synchronized String phone(String memberId) {
+    int row = find(parseId(memberId));
+    if (row < 0) {
+      return null;
+    }
+    int at = HEADER_SIZE + row * RECORD_SIZE;
+    int digits = records.get(at + PHONE_DIGITS);
+    if (digits == 0) {
+      int offset = records.getInt(at + NAME)
+          + (records.getShort(at + FIRST_LENGTH) & MAX_TEXT_BYTES)
+          + (records.getShort(at + LAST_LENGTH) & MAX_TEXT_BYTES);
+      return text(offset, records.getShort(at + PHONE_LENGTH) & MAX_TEXT_BYTES);
+    }
+    StringBuilder number = new StringBuilder(String.valueOf(records.getLong(at + PHONE)));
+    while (number.length() < digits) {
+      number.insert(0, '0');
+    }
+    if (digits == 10) {
+      number.insert(0, '(').insert(4, ") ").insert(9, '-');
+    }
+    return number.toString();
+  }
+
+  /**
+   * Returns the number of members.
+   *
+   * @return the number of members
+   */
+  synchronized int size() {
+    int size = sorted;
+    for (int b = 0; b < appendedIds.length; b++) {
+      if (appendedIds[b] != 0 && findSorted(appendedIds[b]) < 0) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Merges the members appended since the last merge into the sorted records, dropping the
+   * records they replace, and builds the Bloom filter again for the new number of members.
+   *
+   * @throws IOException Throws an IOException.
+   */
+  synchronized void merge() throws IOException {
+    if (appended == 0) {
+      return;
+    }
+    long[] ids = new long[appended];
+    int n = 0;
+    for (long id : appendedIds) {
+      if (id != 0) {
+        ids[n++] = id;
+      }
+    }
+    Arrays.sort(ids);
+
+    int capacity = Math.max(INITIAL_RECORDS, sorted + appended);
+    MappedByteBuffer merged = map(RECORDS + ".tmp", HEADER_SIZE + (long) capacity * RECORD_SIZE);
+    int bits = MIN_BLOOM_BITS;
+    while (bits < (long) capacity * BLOOM_BITS_PER_MEMBER && bits < (1 << 30)) {
+      bits <<= 1;
+    }
+    MappedByteBuffer filter = map(BLOOM + ".tmp", bits / 8);
+    int row = 0;
+    int i = 0;
+    int j = 0;
+    while (i < sorted || j < ids.length) {
+      long sortedId = i < sorted ? idAt(i) : Long.MAX_VALUE;
+      long appendedId = j < ids.length ? ids[j] : Long.MAX_VALUE;
+      int from;
+      if (sortedId < appendedId) {
+        from = i++;
+      } else {
+        from = appendedRows[bucket(appendedId)];
+        if (sortedId == appendedId) {
+          i++;
+        }
+        j++;
+      }
+      copyRecord(records, from, merged, row++);
+      addToBloom(filter, idAt(merged, row - 1));
+    }
+    merged.putInt(0, MAGIC);
+    merged.putInt(SORTED_AT, row);
+    merged.putInt(COUNT_AT, row);
+    merged.putInt(NAME_BYTES_AT, nameBytes);
+    merged.force();
+    filter.force();
+    Files.move(new File(directory, RECORDS + ".tmp").toPath(),
+        new File(directory, RECORDS).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    Files.move(new File(directory, BLOOM + ".tmp").toPath(),
+        new File(directory, BLOOM).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    records = merged;
+    bloom = filter;
+    sorted = row;
+    count = row;
+    Arrays.fill(appendedIds, 0);
+    appended = 0;
+  }
+
+  /**
+   * Writes the mapped files out to disk.
+   */
+  synchronized void flush() {
+    records.force();
+    names.force();
+    bloom.force();
+  }
+
+  /**
+   * Returns the row of the newest record of a member, or -1 if there is none.
+   */
+  private int find(long id) {
+    if (id <= 0) {
+      return -1;
+    }
+    int b = bucket(id);
+    return appendedIds[b] == id ? appendedRows[b] : findSorted(id);
+  }
+
+  /**
+   * Returns the row of a member among the sorted records, or -1 if it is not there.
+   */
+  private int findSorted(long id) {
+    int lo = 0;
+    int hi = sorted - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      long midId = idAt(mid);
+      if (midId < id) {
+        lo = mid + 1;
+      } else if (midId > id) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Puts the newest row of an appended member in the table, growing it when it is half full.
+   */
+  private void index(long id, int row) {
+    int b = bucket(id);
+    if (appendedIds[b] == 0) {
+      if (2 * (appended + 1) > appendedIds.length) {
+        long[] oldIds = appendedIds;
+        int[] oldRows = appendedRows;
+        appendedIds = new long[2 * oldIds.length];
+        appendedRows = new int[2 * oldIds.length];
+        for (int old = 0; old < oldIds.length; old++) {
+          if (oldIds[old] != 0) {
+            int nb = bucket(oldIds[old]);
+            appendedIds[nb] = oldIds[old];
+            appendedRows[nb] = oldRows[old];
+          }
+        }
+        b = bucket(id);
+      }
+      appended++;
+    }
+    appendedIds[b] = id;
+    appendedRows[b] = row;
+  }
+
+  /**
+   * Returns the bucket of the table that holds id, or the empty bucket it would go in.
+   */
+  private int bucket(long id) {
+    int mask = appendedIds.length - 1;
+    int b = (int) mix(id) & mask;
+    while (appendedIds[b] != 0 && appendedIds[b] != id) {
+      b = (b + 1) & mask;
+    }
+    return b;
+  }
+
+  private long idAt(int row) {
+    return idAt(records, row);
+  }
+
+  private static long idAt(MappedByteBuffer buffer, int row) {
+    return buffer.getLong(HEADER_SIZE + row * RECORD_SIZE + ID);
+  }
+
+  private static void copyRecord(MappedByteBuffer from, int fromRow, MappedByteBuffer to,
+      int toRow) {
+    int src = HEADER_SIZE + fromRow * RECORD_SIZE;
+    int dst = HEADER_SIZE + toRow * RECORD_SIZE;
+    for (int i = 0; i < RECORD_SIZE; i += 8) {
+      to.putLong(dst + i, from.getLong(src + i));
+    }
+  }
+
+  private void putBytes(byte[] bytes) {
+    for (byte b : bytes) {
+      names.put(nameBytes++, b);
+    }
+  }
+
+  private String text(int offset, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = names.get(offset + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private void writeHeader() {
+    records.putInt(SORTED_AT, sorted);
+    records.putInt(COUNT_AT, count);
+    records.putInt(NAME_BYTES_AT, nameBytes);
+  }
+
+  /**
+   * Sets the bits of id in a Bloom filter.
+   */
+  private static void addToBloom(MappedByteBuffer filter, long id) {
+    long bits = (long) filter.capacity() * 8;
+    long h = mix(id);
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32) | 1;
+    for (int i = 0; i < BLOOM_HASHES; i++) {
+      long bit = (h1 + i * h2) & (bits - 1);
+      int at = (int) (bit >>> 3);
+      filter.put(at, (byte) (filter.get(at) | (1 << (bit & 7))));
+    }
+  }
+
+  /**
+   * Returns false if id was never added to a Bloom filter.
+   */
+  private static boolean mightContain(MappedByteBuffer filter, long id) {
+    long bits = (long) filter.capacity() * 8;
+    long h = mix(id);
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32) | 1;
+    for (int i = 0; i < BLOOM_HASHES; i++) {
+      long bit = (h1 + i * h2) & (bits - 1);
+      if ((filter.get((int) (bit >>> 3)) & (1 << (bit & 7))) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Scrambles the bits of an id, so ids handed out one after another spread over the table and the
+   * filter.
+   */
+  private static long mix(long id) {
+    long z = id + 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Maps a file of the directory, making it size bytes long if it is shorter, or its whole length
+   * if size is 0.
+   */
+  private MappedByteBuffer map(String fileName, long size) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(new File(directory, fileName), "rw");
+    try {
+      if (size == 0) {
+        size = file.length();
+      } else if (file.length() != size) {
+        file.setLength(size);
+      }
+      return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    } finally {
+      file.close();
+    }
+  }
+
+  /**
+   * Makes a mapped file larger and maps it again.
+   */
+  private MappedByteBuffer grow(String fileName, MappedByteBuffer buffer, long size)
+      throws IOException {
+    buffer.force();
+    return map(fileName, size);
+  }
+}
@@ -0,0 +1,81 @@
+package grocerystore;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money is kept as a whole number of cents in a long everywhere in the store: prices, costs, cart
+ * totals and profits. Adding up cents is exact and needs no objects, where adding up doubles drifts
+ * by fractions of a cent and boxing them makes garbage. Money is read from and written to text as
+ * dollars with two decimals ("12.34"), and a rate such as a discount is applied by rounding to the
+ * nearest cent.
+ */
+final class Money {
+
+  private Money() {
+  }
+
+  /**
+   * Reads an amount of dollars written as text, such as "12.34", rounding it to the nearest cent.
+   *
+   * @param dollars the amount in dollars
+   * @return the amount in cents
+   * @throws NumberFormatException if the text is not a number
+   */
+  static long parse(String dollars) {
+    return new BigDecimal(dollars.trim()).movePointRight(2).setScale(0, RoundingMode.HALF_UP)
+        .longValueExact();
+  }
+
+  /**
+   * Returns an amount of dollars given as a double, such as one typed into a form, in cents.
+   *
+   * @param dollars the amount in dollars
+   * @return the amount in cents, rounded to the nearest cent
+   */
+  static long of(double dollars) {
+    return Math.round(dollars * 100);
+  }
+
+  /**
+   * Returns a part of an amount, rounded to the nearest cent.
+   *
+   * @param cents the amount in cents
+   * @param rate the part of it to take, such as 0.1 for ten percent
+   * @return the part in cents
+   */
+  static long times(long cents, double rate) {
+    return Math.round(cents * rate);
+  }
+
+  /**
+   * Writes an amount as dollars with two decimals, such as "12.34" or "-0.05".
+   *
+   * @param cents the amount in cents
+   * @return the amount as text
+   */
+  static String format(long cents) {
+    return append(new StringBuilder(12), cents).toString();
+  }
+
+  /**
+   * Appends an amount as dollars with two decimals, without making any objects.
+   *
+   * @param text the text to append to
+   * @param cents the amount in cents
+   * @return text
+   */
+  static StringBuilder append(StringBuilder text, long cents) {
+    if (cents < 0) {
+      text.append('-');
+    }
+    //the magnitude of Long.MIN_VALUE does not fit in a long, so work on the negative amount
+    long negative = cents < 0 ? cents : -cents;
+    text.append(-(negative / 100)).append('.');
+    long rest = -(negative % 100);
+    if (rest < 10) {
+      text.append('0');
+    }
+    return text.append(rest);
+  }
+}
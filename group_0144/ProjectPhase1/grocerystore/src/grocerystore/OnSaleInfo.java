@@ -1,7 +1,6 @@
 package grocerystore;
 
 import java.io.Serializable;
-import java.text.ParseException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
 
@@ -11,7 +10,7 @@ public class OnSaleInfo implements Serializable {
   private boolean onSale; //True if product is currently on sale.
   private LocalDateTime saleStartDate; //Format: MM/dd/yyyy
   private LocalDateTime saleEndDate;
-  private double salePricePerQ;
+  private long salePricePerQ; //in cents
 
   /**
    * Creates an OnSaleInfo object by associating it with the related Product.
@@ -25,9 +24,9 @@ public class OnSaleInfo implements Serializable {
   /**
    * Gets the sale price of product.
    *
-   * @return The sale price of product.
+   * @return The sale price of product, in cents.
    */
-  double getSalePrice() {
+  long getSalePrice() {
     return salePricePerQ;
   }
 
@@ -39,16 +38,17 @@ public class OnSaleInfo implements Serializable {
    * direct on-sale price will be input.
    * @param percentOff 0 if ifPercent is false, otherwise percentOff is a decimal number between 0
    * and 1, inclusive.
-   * @param salePrice 0 if ifPercent is true, otherwise a direct on-sale price is specified here.
+   * @param salePrice 0 if ifPercent is true, otherwise a direct on-sale price in cents is
+   * specified here.
    * @param startDate The on-sale start date.
    * @param endDate The on-sale end date.
    */
   void setSalePrice(boolean ifPercent, double percentOff,
-      double salePrice, LocalDateTime startDate, LocalDateTime endDate) throws
+      long salePrice, LocalDateTime startDate, LocalDateTime endDate) throws
       DateTimeParseException {
     if (ifPercent) {
-      double regP = product.getRegPrice();
-      salePricePerQ = (1 - percentOff) * regP;
+      long regP = product.getRegPrice();
+      salePricePerQ = regP - Money.times(regP, percentOff);
     } else {
       salePricePerQ = salePrice;
     }
@@ -62,6 +62,29 @@ public class OnSaleInfo implements Serializable {
     }
   }
 
+  /**
+   * Puts product on sale now, at a direct on-sale price.
+   *
+   * @param salePrice The on-sale price, in cents.
+   * @param startDate The on-sale start date.
+   * @param endDate The on-sale end date.
+   */
+  void startSale(long salePrice, LocalDateTime startDate, LocalDateTime endDate) {
+    salePricePerQ = salePrice;
+    saleStartDate = startDate;
+    saleEndDate = endDate;
+    onSale = true;
+    product.setCurrPrice(salePricePerQ);
+  }
+
+  /**
+   * Takes product off sale now and puts it back at its regular price.
+   */
+  void endSale() {
+    this.setOffSale();
+    product.setCurrPrice(product.getRegPrice());
+  }
+
   /**
    * Cancels the on-sale status for product.
    */
@@ -71,22 +94,4 @@ public class OnSaleInfo implements Serializable {
     saleEndDate = null;
     onSale = false;
   }
-
-  /**
-   * Updates the current price of product based on today's datetime. It will also check if today is
-   * the starting/ending date of product's on-sale period.
-   */
-  void priceUpdate() throws ParseException {
-    LocalDateTime today = LocalDateTime.now();
-    if (today.isEqual(saleStartDate) || (today.isAfter(saleStartDate) &&
-        today.isBefore(saleEndDate))) {
-      product.setCurrPrice(salePricePerQ);
-      onSale = true;
-    }
-    if (today.isAfter(saleEndDate)) {
-      this.setOffSale();
-      product.setCurrPrice(product.getRegPrice());
-      onSale = false;
-    }
-  }
 }
@@ -0,0 +1,103 @@
+package grocerystore;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * OperationMetrics times the operations workers start from their panels, such as a checkout or
+ * sending the pending orders, into one LatencyHistogram per operation. Every operation is shown
+ * over JMX as grocerystore:type=Operation,name=&lt;operation&gt; the first time it is timed, so its
+ * count and percentiles can be read with jconsole or any other JMX client while the store runs.
+ */
+public final class OperationMetrics {
+
+  /**
+   * The stats of every operation timed so far, by its name.
+   */
+  private static final ConcurrentHashMap<String, OperationStats> operations =
+      new ConcurrentHashMap<>();
+
+  private OperationMetrics() {
+  }
+
+  /**
+   * Records how long an operation took, from when it started until now.
+   *
+   * @param operation the name of the operation, such as CashierButtonManager.callCheckOut
+   * @param start System.nanoTime() when the operation started
+   */
+  public static void record(String operation, long start) {
+    long nanos = System.nanoTime() - start;
+    OperationStats stats = operations.get(operation);
+    if (stats == null) {
+      stats = register(operation);
+    }
+    stats.histogram.record(nanos);
+  }
+
+  /**
+   * Returns the stats of an operation, adding them and showing them over JMX if it has not been
+   * timed yet.
+   */
+  private static OperationStats register(String operation) {
+    OperationStats stats = new OperationStats(new LatencyHistogram());
+    OperationStats earlier = operations.putIfAbsent(operation, stats);
+    if (earlier != null) {
+      return earlier;
+    }
+    register(stats, "grocerystore:type=Operation,name=" + ObjectName.quote(operation));
+    return stats;
+  }
+
+  /**
+   * Returns the stats of every operation timed so far, by name.
+   *
+   * @return a new map of the stats, sorted by name
+   */
+  static Map<String, OperationStats> operations() {
+    return new TreeMap<String, OperationStats>(operations);
+  }
+
+  /**
+   * Shows an MBean over JMX under a name, in place of any MBean shown under that name before.
+   *
+   * @param mbean the MBean
+   * @param name the object name
+   * @return the object name, or null if it could not be shown
+   */
+  static ObjectName register(Object mbean, String name) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName objectName = new ObjectName(name);
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+      server.registerMBean(mbean, objectName);
+      return objectName;
+    } catch (JMException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Stops showing an MBean over JMX.
+   *
+   * @param name the object name of the MBean, or null
+   */
+  static void unregister(ObjectName name) {
+    if (name == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    } catch (JMException e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package grocerystore;
+
+/**
+ * The times of one operation, read from its LatencyHistogram in microseconds.
+ */
+public final class OperationStats implements OperationStatsMBean {
+
+  final LatencyHistogram histogram;
+
+  OperationStats(LatencyHistogram histogram) {
+    this.histogram = histogram;
+  }
+
+  @Override
+  public long getCount() {
+    return histogram.count();
+  }
+
+  @Override
+  public double getMeanMicros() {
+    return histogram.mean() / 1000.0;
+  }
+
+  @Override
+  public double getP50Micros() {
+    return histogram.percentile(0.50) / 1000.0;
+  }
+
+  @Override
+  public double getP99Micros() {
+    return histogram.percentile(0.99) / 1000.0;
+  }
+
+  @Override
+  public double getP999Micros() {
+    return histogram.percentile(0.999) / 1000.0;
+  }
+
+  @Override
+  public double getMaxMicros() {
+    return histogram.max() / 1000.0;
+  }
+}
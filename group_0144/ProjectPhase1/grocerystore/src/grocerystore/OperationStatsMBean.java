@@ -0,0 +1,37 @@
+package grocerystore;
+
+/**
+ * The JMX view of how long one operation has taken. Times are in microseconds.
+ */
+public interface OperationStatsMBean {
+
+  /**
+   * @return the number of times the operation was done
+   */
+  long getCount();
+
+  /**
+   * @return the mean time of the operation
+   */
+  double getMeanMicros();
+
+  /**
+   * @return the median time of the operation
+   */
+  double getP50Micros();
+
+  /**
+   * @return the time 99% of the operations took no longer than
+   */
+  double getP99Micros();
+
+  /**
+   * @return the time 99.9% of the operations took no longer than
+   */
+  double getP999Micros();
+
+  /**
+   * @return the longest time the operation took
+   */
+  double getMaxMicros();
+}
@@ -0,0 +1,132 @@
+package grocerystore;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A PendingOrderQueue holds the products that have a pending order waiting for a manager, looked up
+ * by UPC and kept in order of how urgent they are. A product is more urgent the less of its
+ * threshold its stock still covers (stock / threshold); products that cover the same part of their
+ * threshold are ordered by how many units they are short, most first. The order is kept up to date
+ * as the stock of queued products changes, so the most urgent orders are read off the front without
+ * looking at the rest.
+ */
+class PendingOrderQueue implements Serializable {
+
+  /**
+   * A queued product and how urgent it was when its stock last changed.
+   */
+  private static class Entry implements Comparable<Entry>, Serializable {
+
+    final Product product;
+    final double cover;
+    final int shortfall;
+
+    Entry(Product product) {
+      this.product = product;
+      int stock = product.getStock();
+      int threshold = product.getThreshold();
+      this.cover = threshold > 0 ? (double) stock / threshold : stock;
+      this.shortfall = threshold - stock;
+    }
+
+    public int compareTo(Entry other) {
+      int c = Double.compare(cover, other.cover);
+      if (c == 0) {
+        c = Integer.compare(other.shortfall, shortfall);
+      }
+      return c != 0 ? c : product.getUPC().compareTo(other.product.getUPC());
+    }
+  }
+
+  /**
+   * byUpc : the entry of every queued product, by UPC
+   * byUrgency : the entries, most urgent first
+   */
+  private final Map<String, Entry> byUpc = new HashMap<>();
+  private final TreeSet<Entry> byUrgency = new TreeSet<>();
+
+  /**
+   * Adds a product to the queue if it is not already in it.
+   *
+   * @param p the product with a pending order
+   * @return false if the product was already queued
+   */
+  synchronized boolean offer(Product p) {
+    if (byUpc.containsKey(p.getUPC())) {
+      return false;
+    }
+    Entry entry = new Entry(p);
+    byUpc.put(p.getUPC(), entry);
+    byUrgency.add(entry);
+    return true;
+  }
+
+  /**
+   * Moves a product to its place for its current stock, if it is queued.
+   *
+   * @param p the product whose stock changed
+   */
+  synchronized void update(Product p) {
+    Entry old = byUpc.get(p.getUPC());
+    if (old != null) {
+      byUrgency.remove(old);
+      Entry entry = new Entry(p);
+      byUpc.put(p.getUPC(), entry);
+      byUrgency.add(entry);
+    }
+  }
+
+  /**
+   * Takes a product out of the queue.
+   *
+   * @param upc the UPC of the product
+   * @return false if the product was not queued
+   */
+  synchronized boolean remove(String upc) {
+    Entry entry = byUpc.remove(upc);
+    if (entry == null) {
+      return false;
+    }
+    byUrgency.remove(entry);
+    return true;
+  }
+
+  /**
+   * Returns whether there are no pending orders.
+   *
+   * @return true if the queue is empty
+   */
+  synchronized boolean isEmpty() {
+    return byUpc.isEmpty();
+  }
+
+  /**
+   * Returns the number of products with a pending order.
+   *
+   * @return the number of queued products
+   */
+  synchronized int size() {
+    return byUpc.size();
+  }
+
+  /**
+   * Returns the k most urgent products, most urgent first.
+   *
+   * @param k the most products to return
+   * @return the products
+   */
+  synchronized List<Product> top(int k) {
+    List<Product> top = new ArrayList<>(Math.min(k, byUpc.size()));
+    Iterator<Entry> entries = byUrgency.iterator();
+    while (top.size() < k && entries.hasNext()) {
+      top.add(entries.next().product);
+    }
+    return top;
+  }
+}
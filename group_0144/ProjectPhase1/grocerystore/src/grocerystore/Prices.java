@@ -0,0 +1,42 @@
+package grocerystore;
+
+import java.io.Serializable;
+
+/**
+ * Prices is an unchangeable snapshot of the prices of a Product: its regular price, the price it
+ * sells at now (its sale price while on sale), the price members pay, and the least it may be sold
+ * at. A Product publishes a new snapshot whenever one of its prices changes, so a price check reads
+ * one snapshot without taking a lock and always sees prices that belong together.
+ */
+final class Prices implements Serializable {
+
+  final long regular;
+  final long current;
+  final long member;
+  final long floor;
+
+  /**
+   * Creates a snapshot of prices, in cents.
+   *
+   * @param regular the regular price per unit
+   * @param current the price per unit now
+   * @param membershipDeduction the part of the current price members do not pay
+   * @param floor the least price per unit the product may be sold at
+   */
+  Prices(long regular, long current, double membershipDeduction, long floor) {
+    this.regular = regular;
+    this.current = current;
+    this.member = current - Money.times(current, membershipDeduction);
+    this.floor = floor;
+  }
+
+  /**
+   * Returns the price per unit a customer pays.
+   *
+   * @param membershipStatus true if the customer is a member
+   * @return the price per unit, in cents
+   */
+  long price(boolean membershipStatus) {
+    return membershipStatus ? member : current;
+  }
+}
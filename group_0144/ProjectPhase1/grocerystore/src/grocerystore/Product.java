@@ -13,16 +13,17 @@ public class Product implements Serializable {
   boolean backOrderStatus; //True if the stock of this Product is <= 0
   boolean needReorder;
   int reorderQuantity; //Default quantity for re-ordering is 3 times the threshold
-  double costPerQ; //Ordering price from a supplier
+  long costPerQ; //Ordering price from a supplier, in cents
   private String subSection;
   private int threshold; //The quantity below which this Product is automatically re-ordered.
   private String name;
   private String UPC;
   private String distributor;
   private int aisleNo;
-  private int stock;
-  private double currPricePerQ;
-  private double regularPricePerQ;
+  private volatile int stock;
+  //the regular, current and member price of this Product in cents, replaced as a whole when one
+  //changes
+  private volatile Prices prices;
   private OnSaleInfo onsaleInfo; //The on-sale info for this Product, if any
   private PendingOrder pendingOrder; //The associated pending order info for this Product, if any
 
@@ -30,14 +31,9 @@ public class Product implements Serializable {
   //current price of the product.
   private double membershipDeduction = 0.10;
 
-  // the price of the product after considering membership status.
-  private double membershipPriceQ;
-
   //the minimum percentage the store makes above the cost of the product, regardless of discounts.
   private double minimumProfitPercentage = 0.2;
 
-  //the least possible price this product can be sold at due to the set minimum profit percentage.
-  private double  maximumDiscountPrice = costPerQ + (costPerQ * minimumProfitPercentage);
 
   /**
    * Creates a Product, by initializing its related information.
@@ -45,22 +41,42 @@ public class Product implements Serializable {
    * @param productInfo An ArrayList consists of product information in the following order: UPC
    * (Universal Price Code), initial quantity, section (product type), subsection (sub product
    * type), name, threshold, initial aisle number, initial price per unit, the name of the supplier
-   * for this Product, supplier cost per unit.
+   * for this Product, supplier cost per unit. Prices and costs are in dollars, such as "3.49".
    */
   public Product(String[] productInfo) {
-    UPC = productInfo[0];
-    stock = Integer.parseInt(productInfo[1]);
-    section = productInfo[2];
-    subSection = productInfo[3];
-    name = productInfo[4];
-    threshold = Integer.parseInt(productInfo[5]);
-    aisleNo = Integer.parseInt(productInfo[6]);
-    regularPricePerQ = Double.parseDouble(productInfo[7]);
-    distributor = productInfo[8];
-    costPerQ = Double.parseDouble(productInfo[9]);
+    this(productInfo[0], Integer.parseInt(productInfo[1]), productInfo[2], productInfo[3],
+        productInfo[4], Integer.parseInt(productInfo[5]), Integer.parseInt(productInfo[6]),
+        Money.parse(productInfo[7]), productInfo[8], Money.parse(productInfo[9]));
+  }
+
+  /**
+   * Creates a Product from information that has already been parsed.
+   *
+   * @param UPC The UPC (Universal Price Code) of this Product.
+   * @param stock The initial quantity.
+   * @param section The section (product type).
+   * @param subSection The subsection (sub product type).
+   * @param name The name of this Product.
+   * @param threshold The quantity below which this Product is re-ordered.
+   * @param aisleNo The initial aisle number.
+   * @param regularPricePerQ The initial price per unit, in cents.
+   * @param distributor The name of the supplier for this Product.
+   * @param costPerQ The supplier cost per unit, in cents.
+   */
+  Product(String UPC, int stock, String section, String subSection, String name, int threshold,
+      int aisleNo, long regularPricePerQ, String distributor, long costPerQ) {
+    this.UPC = UPC;
+    this.stock = stock;
+    this.section = section;
+    this.subSection = subSection;
+    this.name = name;
+    this.threshold = threshold;
+    this.aisleNo = aisleNo;
+    this.distributor = distributor;
+    this.costPerQ = costPerQ;
 
     needReorder = false;
-    currPricePerQ = regularPricePerQ;
+    publishPrices(regularPricePerQ, regularPricePerQ);
     reorderQuantity = 3 * threshold;
 
     pendingOrder = new PendingOrder(this);
@@ -79,11 +95,30 @@ public class Product implements Serializable {
   /**
    * Returns the membership price per unit of this Product.
    *
-   * @return The membership price per unit of this Product.
+   * @return The membership price per unit of this Product, in cents.
+   */
+  long getMemberPrice() {
+    return prices.member;
+  }
+
+  /**
+   * Returns the prices of this Product as one snapshot, which does not change when the prices of
+   * this Product are changed later.
+   *
+   * @return The prices of this Product.
    */
-  double getMemberPrice() {
-    membershipPriceQ = currPricePerQ - (currPricePerQ * membershipDeduction);
-    return membershipPriceQ;
+  Prices getPrices() {
+    return prices;
+  }
+
+  /**
+   * Publishes a new snapshot of the prices of this Product. Called with this Product locked, so two
+   * price changes cannot lose one another.
+   */
+  private void publishPrices(long regular, long current) {
+    //the least possible price this product can be sold at due to the set minimum profit percentage.
+    long floor = costPerQ + Money.times(costPerQ, minimumProfitPercentage);
+    prices = new Prices(regular, current, membershipDeduction, floor);
   }
 
   /**
@@ -103,6 +138,15 @@ public class Product implements Serializable {
    */
   int getThreshold(){return threshold;}
 
+  /**
+   * Returns the subsection (sub product type) of this Product.
+   *
+   * @return The subsection of this Product.
+   */
+  String getSubSection() {
+    return subSection;
+  }
+
   /**
    * Returns the name of this Product.
    *
@@ -142,38 +186,38 @@ public class Product implements Serializable {
   /**
    * Gets the current price of this Product.
    *
-   * @return The current price of this Product.
+   * @return The current price of this Product, in cents.
    */
-  double getCurrPrice() {
-    return currPricePerQ;
+  long getCurrPrice() {
+    return prices.current;
   }
 
   /**
    * This method can change the current price per unit of this Product.
    *
-   * @param price A new current price needs to be associated with this Product.
+   * @param price A new current price needs to be associated with this Product, in cents.
    */
-  void setCurrPrice(double price) {
-    currPricePerQ = price;
+  synchronized void setCurrPrice(long price) {
+    publishPrices(prices.regular, price);
   }
 
   /**
    * Gets the regular price of this Product.
    *
-   * @return The regular price of this Product.
+   * @return The regular price of this Product, in cents.
    */
-  double getRegPrice() {
-    return regularPricePerQ;
+  long getRegPrice() {
+    return prices.regular;
   }
 
   /**
    * This method changes the regular price of this Product. For example, during different seasons,
    * the store may have different regular prices for this Product.
    *
-   * @param newRegP A new regular price for this Product.
+   * @param newRegP A new regular price for this Product, in cents.
    */
-  void setRegPrice(double newRegP) {
-    regularPricePerQ = newRegP;
+  synchronized void setRegPrice(long newRegP) {
+    publishPrices(newRegP, prices.current);
   }
 
   /**
@@ -216,28 +260,32 @@ public class Product implements Serializable {
    * Returns the profit when one unit of this Product is sold.
    *
    * @return Profit per unit which equals to the current price per unit minus the supplier cost per
-   * unit.
+   * unit, in cents.
    */
-  public double getProfit(boolean membershipStatus) {
+  public long getProfit(boolean membershipStatus) {
+    return getProfit(prices, membershipStatus);
+  }
+
+  /**
+   * Returns the profit when one unit of this Product is sold at the given prices.
+   *
+   * @param current A snapshot of the prices of this Product.
+   * @param membershipStatus True if the customer is a member.
+   * @return Profit per unit at those prices, in cents.
+   */
+  long getProfit(Prices current, boolean membershipStatus) {
 
     //Checks whether to use an added reduction on this products price due to the customer having
     //membership status or not.
-    double productPrice;
-    if (membershipStatus) {
-      productPrice = membershipPriceQ;
-    } else {
-      productPrice = currPricePerQ;
-    }
+    long productPrice = current.price(membershipStatus);
 
     //ensures that profit is always earned by checking the result of a maximum discount price on
     //the product and not following lower than this price or else the store is at a disadvantage.
-    if (productPrice > maximumDiscountPrice) {
+    if (productPrice > current.floor) {
       return productPrice - costPerQ;
     } else {
-      return maximumDiscountPrice - costPerQ;
+      return current.floor - costPerQ;
     }
-
-
   }
 
   /**
@@ -266,15 +314,31 @@ public class Product implements Serializable {
    * made and waits for a manager to approve.
    */
   void soldOne() {
-    stock -= 1;
+    sold(1);
+  }
+
+  /**
+   * This method is called when a number of items of this Product are sold together, so the stock
+   * of this Product decreases by that number. The threshold and backorder checks are made once on
+   * the new stock.
+   *
+   * @param quantity The number of items sold.
+   * @return true if this sale took the stock below the threshold. This happens once until the
+   * Product is received again, however many sales follow.
+   */
+  boolean sold(int quantity) {
+    stock -= quantity;
 
+    boolean crossed = false;
     if (stock < threshold && !needReorder) {
       needReorder = true;
+      crossed = true;
     }
     if (stock <= 0 && !backOrderStatus) {
 
       backOrderStatus = true;
     }
+    return crossed;
   }
 
   /**
@@ -282,10 +346,51 @@ public class Product implements Serializable {
    * stock of this Product increases by 1.
    */
   void addOne() {
-    if (backOrderStatus) {
+    added(1);
+  }
+
+  /**
+   * This method is called when a number of items of this Product are added to the store's
+   * inventory together, so the stock of this Product increases by that number.
+   *
+   * @param quantity The number of items added.
+   */
+  void added(int quantity) {
+    stock += quantity;
+    if (backOrderStatus && stock > 0) {
       backOrderStatus = false;
     }
-    stock += 1;
+  }
+
+  /**
+   * Sets the stock of this Product to a value recorded earlier, for example when the inventory
+   * journal is replayed, and updates its backorder and reorder status to match.
+   *
+   * @param recordedStock The stock this Product had.
+   * @return true if the recorded stock is below the threshold and the Product was not already
+   * waiting to be reordered.
+   */
+  boolean restoreStock(int recordedStock) {
+    stock = recordedStock;
+    backOrderStatus = stock <= 0;
+    if (stock < threshold && !needReorder) {
+      needReorder = true;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the information of this Product in the same order the constructor takes it: UPC,
+   * stock, section, subsection, name, threshold, aisle number, regular price per unit, distributor
+   * and cost per unit.
+   *
+   * @return The information of this Product as a String array.
+   */
+  String[] toRecord() {
+    return new String[]{UPC, String.valueOf(stock), section, subSection, name,
+        String.valueOf(threshold), String.valueOf(aisleNo), Money.format(prices.regular),
+        distributor, Money.format(costPerQ)};
   }
 
   /**
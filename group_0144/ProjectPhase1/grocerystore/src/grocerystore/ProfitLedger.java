@@ -0,0 +1,345 @@
+package grocerystore;
+
+import java.io.File;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * A ProfitLedger is an append-only record of the profit (or loss) of every checkout and return,
+ * kept in time order. Every entry has the time it was made at (in epoch milliseconds) and a
+ * sequence number, so two checkouts in the same millisecond are both kept. Running totals are kept
+ * next to the entries, so the total profit between two times is two binary searches and a
+ * subtraction however many entries lie between them. Profit is also added up per minute, hour and
+ * day as entries come in, so long ranges can be looked at a bucket at a time. Profit is kept in
+ * cents, so totals over any range are exact and adding them up makes no objects.
+ *
+ * The start of the minute, hour and day of an entry is worked out from its epoch milliseconds and
+ * the offset of the zone, which is looked up once for as long as it stays the same within a day,
+ * so adding an entry makes no objects either.
+ *
+ * The entries and the minute, hour and day totals are kept in LongTables, so only the newest of
+ * them stay on the heap and the rest are written to files under HistoryEvents.SEGMENT_DIRECTORY.
+ */
+class ProfitLedger implements Serializable {
+
+  /**
+   * The sizes of the buckets profit is added up in.
+   */
+  enum Granularity {
+    MINUTE,
+    HOUR,
+    DAY
+  }
+
+  private static final long MINUTE_MILLIS = 60 * 1000;
+  private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+
+  /**
+   * The columns of the entries: the time of the entry in epoch milliseconds, its sequence number,
+   * its profit in cents, and the total profit of the entries up to and including it.
+   */
+  private static final int TIME = 0;
+  private static final int SEQ = 1;
+  private static final int AMOUNT = 2;
+  private static final int TOTAL = 3;
+
+  /**
+   * entries : the entries, in order of time
+   * nextSeq : the sequence number of the next entry
+   * rollups : the total profit of each bucket, for each granularity by its ordinal
+   * zone : the time zone minutes, hours and days are taken in
+   * offsetFrom, offsetUntil : the epoch milliseconds, within one day, that offset is the offset of
+   * the zone from (included) and until (left out)
+   * offset : the offset of the zone in milliseconds
+   * dayStart : the start of the day offsetFrom is in, in epoch milliseconds
+   */
+  private final LongTable entries;
+  private long nextSeq;
+  private final Rollup[] rollups = new Rollup[Granularity.values().length];
+  private final ZoneId zone;
+  private long offsetFrom = Long.MAX_VALUE;
+  private long offsetUntil = Long.MIN_VALUE;
+  private long offset;
+  private long dayStart;
+
+  /**
+   * Creates an empty ledger that takes days in the time zone of this computer.
+   *
+   * @param directory the directory of the history, or null for the current working directory
+   */
+  ProfitLedger(File directory) {
+    this(directory, ZoneId.systemDefault());
+  }
+
+  /**
+   * Creates an empty ledger.
+   *
+   * @param directory the directory of the history, or null for the current working directory
+   * @param zone the time zone minutes, hours and days are taken in
+   */
+  ProfitLedger(File directory, ZoneId zone) {
+    this.zone = zone;
+    File tables = new File(directory, HistoryEvents.SEGMENT_DIRECTORY);
+    String id = UUID.randomUUID().toString();
+    entries = new LongTable(new File(tables, id + "-profit.tbl"), 4);
+    for (Granularity g : Granularity.values()) {
+      String name = id + "-" + g.name().toLowerCase() + ".tbl";
+      rollups[g.ordinal()] = new Rollup(new File(tables, name));
+    }
+  }
+
+  /**
+   * Returns a local time as epoch milliseconds in the zone of this ledger.
+   *
+   * @param when the local time
+   * @return the epoch milliseconds of when
+   */
+  long toMillis(LocalDateTime when) {
+    return when.atZone(zone).toInstant().toEpochMilli();
+  }
+
+  /**
+   * Returns epoch milliseconds as a local time in the zone of this ledger.
+   *
+   * @param millis the epoch milliseconds
+   * @return the local time
+   */
+  LocalDateTime toLocal(long millis) {
+    return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone);
+  }
+
+  /**
+   * Adds an entry. Entries normally come in time order; an entry older than the last one (the
+   * clock was turned back) is put in its place, which costs a shift of the entries after it. An
+   * entry older than every entry still on the heap is kept as made at the time of the newest entry
+   * written to a file.
+   *
+   * @param millis when the profit was made, in epoch milliseconds
+   * @param amount the profit in cents, negative for a loss
+   * @return the sequence number of the entry
+   */
+  long append(long millis, long amount) {
+    long seq = nextSeq++;
+    int size = entries.size();
+    int at;
+    if (size > 0 && entries.get(size - 1, TIME) > millis) {
+      at = entries.insert(upperBound(millis));
+      if (at > 0) {
+        millis = Math.max(millis, entries.get(at - 1, TIME));
+      }
+    } else {
+      at = entries.add();
+    }
+    entries.set(at, TIME, millis);
+    entries.set(at, SEQ, seq);
+    entries.set(at, AMOUNT, amount);
+    for (int i = at; i <= size; i++) {
+      entries.set(i, TOTAL, prefix(i) + entries.get(i, AMOUNT));
+    }
+
+    if (millis < offsetFrom || millis >= offsetUntil) {
+      findOffset(millis);
+    }
+    rollups[Granularity.MINUTE.ordinal()].add(start(millis, MINUTE_MILLIS), amount);
+    rollups[Granularity.HOUR.ordinal()].add(start(millis, HOUR_MILLIS), amount);
+    rollups[Granularity.DAY.ordinal()].add(dayStart, amount);
+    return seq;
+  }
+
+  /**
+   * Returns the start of the minute or hour millis is in, in the zone of this ledger. millis must
+   * be from offsetFrom until offsetUntil.
+   */
+  private long start(long millis, long length) {
+    return Math.floorDiv(millis + offset, length) * length - offset;
+  }
+
+  /**
+   * Looks up the offset of the zone at millis, the start of its day, and how long within that day
+   * the offset stays the same.
+   */
+  private void findOffset(long millis) {
+    ZoneRules rules = zone.getRules();
+    Instant instant = Instant.ofEpochMilli(millis);
+    LocalDate day = LocalDateTime.ofInstant(instant, zone).toLocalDate();
+    dayStart = day.atStartOfDay(zone).toInstant().toEpochMilli();
+    offsetFrom = dayStart;
+    offsetUntil = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    offset = rules.getOffset(instant).getTotalSeconds() * 1000L;
+    ZoneOffsetTransition previous = rules.previousTransition(instant.plusMillis(1));
+    if (previous != null) {
+      offsetFrom = Math.max(offsetFrom, previous.toEpochSecond() * 1000);
+    }
+    ZoneOffsetTransition next = rules.nextTransition(instant);
+    if (next != null) {
+      offsetUntil = Math.min(offsetUntil, next.toEpochSecond() * 1000);
+    }
+  }
+
+  /**
+   * Returns the total profit of the entries from start to end, both included.
+   *
+   * @param start the start in epoch milliseconds
+   * @param end the end in epoch milliseconds
+   * @return the total profit, in cents
+   */
+  long total(long start, long end) {
+    if (end < start) {
+      return 0;
+    }
+    return prefix(upperBound(end)) - prefix(lowerBound(start));
+  }
+
+  /**
+   * Returns the total profit of the first count entries.
+   */
+  private long prefix(int count) {
+    return count == 0 ? 0 : entries.get(count - 1, TOTAL);
+  }
+
+  /**
+   * Returns the entries from start to end, both included, in time order, keyed by the local time
+   * they were made at. Entries made at the same time get their sequence number appended to the key
+   * ("2018-03-01T10:15:30.123#42") so none of them is hidden.
+   *
+   * @param start the start in epoch milliseconds
+   * @param end the end in epoch milliseconds
+   * @return the profit in cents of the entries of the range
+   */
+  Map<String, Long> entries(long start, long end) {
+    Map<String, Long> range = new LinkedHashMap<>();
+    if (end < start) {
+      return range;
+    }
+    int to = upperBound(end);
+    for (int i = lowerBound(start); i < to; i++) {
+      String key = toLocal(entries.get(i, TIME)).toString();
+      if (range.containsKey(key)) {
+        key = key + "#" + entries.get(i, SEQ);
+      }
+      range.put(key, entries.get(i, AMOUNT));
+    }
+    return range;
+  }
+
+  /**
+   * Returns the total profit of each bucket of the given size that starts from start to end, keyed
+   * by the start of the bucket in epoch milliseconds. Buckets without any entries are left out.
+   *
+   * @param granularity the size of the buckets
+   * @param start the start in epoch milliseconds
+   * @param end the end in epoch milliseconds
+   * @return the total of each bucket, in cents
+   */
+  SortedMap<Long, Long> rollup(Granularity granularity, long start, long end) {
+    return rollups[granularity.ordinal()].range(start, end);
+  }
+
+  /**
+   * Returns the number of entries.
+   *
+   * @return the number of entries
+   */
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the index of the first entry at or after millis.
+   */
+  private int lowerBound(long millis) {
+    return lowerBound(entries, TIME, millis);
+  }
+
+  /**
+   * Returns the index of the first entry after millis.
+   */
+  private int upperBound(long millis) {
+    return millis == Long.MAX_VALUE ? entries.size() : lowerBound(entries, TIME, millis + 1);
+  }
+
+  /**
+   * Returns the first row of table whose value in column, in which the rows are in order, is at or
+   * after value.
+   */
+  private static int lowerBound(LongTable table, int column, long value) {
+    int lo = 0;
+    int hi = table.size();
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (table.get(mid, column) < value) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * The total profit of each bucket of one size, kept in a LongTable in order of the start of the
+   * bucket. Entries come in time order, so a total is nearly always added to the last bucket or
+   * starts a new one after it.
+   */
+  private static class Rollup implements Serializable {
+
+    private static final int START = 0;
+    private static final int BUCKET_TOTAL = 1;
+
+    private final LongTable buckets;
+
+    Rollup(File file) {
+      buckets = new LongTable(file, 2);
+    }
+
+    /**
+     * Adds amount to the total of the bucket that starts at start, adding the bucket if there is
+     * none. A bucket older than every bucket still on the heap is added to the oldest of those
+     * instead.
+     */
+    void add(long start, long amount) {
+      int size = buckets.size();
+      int at;
+      if (size > 0 && buckets.get(size - 1, START) >= start) {
+        at = start == buckets.get(size - 1, START)
+            ? size - 1 : lowerBound(buckets, START, start);
+        int first = buckets.firstMutable();
+        if (at < first) {
+          at = first;
+          start = buckets.get(at, START);
+        }
+        if (buckets.get(at, START) != start) {
+          at = buckets.insert(at);
+          buckets.set(at, START, start);
+        }
+      } else {
+        at = buckets.add();
+        buckets.set(at, START, start);
+      }
+      buckets.set(at, BUCKET_TOTAL, buckets.get(at, BUCKET_TOTAL) + amount);
+    }
+
+    /**
+     * Returns the totals of the buckets that start from start to end, both included.
+     */
+    SortedMap<Long, Long> range(long start, long end) {
+      SortedMap<Long, Long> range = new TreeMap<>();
+      int size = buckets.size();
+      for (int i = lowerBound(buckets, START, start);
+          i < size && buckets.get(i, START) <= end; i++) {
+        range.put(buckets.get(i, START), buckets.get(i, BUCKET_TOTAL));
+      }
+      return range;
+    }
+  }
+}
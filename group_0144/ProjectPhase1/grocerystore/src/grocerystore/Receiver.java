@@ -1,11 +1,9 @@
 package grocerystore;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Scanner;
 
 /**
  * A Receiver working for the store, who can scan items (getting the Product UPCs) to perform any
@@ -16,7 +14,7 @@ import java.util.Scanner;
 public class Receiver extends Worker {
 
   private Map<Product, Integer> newCart = new HashMap<>();
-  private Map<String, Product> newItems = new HashMap<>();
+  private UpcIndex<Product> newItems = new UpcIndex<>();
 
   /**
    * Creates a receiver.
@@ -37,23 +35,22 @@ public class Receiver extends Worker {
    * @param filePath a csv file containing information on the new products, the columns of
    * information in the format and order: UPC, Quantity, Section, Subsection, Name, Threshold, Aisle
    * Number, Price, Distributor's Name, and Cost.
+   * @return the number of rows of the file that were rejected.
+   * @throws IOException Throws an IOException.
    */
-  public void newShipment(String filePath) throws FileNotFoundException {
+  public int newShipment(String filePath) throws IOException {
     File file = new File(filePath);
+    int rejected = 0;
     if (file.exists()) {
-      Scanner scanner = new Scanner(new FileInputStream(filePath));
-      String[] productData;
-      Product currproduct;
-
-      scanner.nextLine();
-      while (scanner.hasNextLine()) {
-        productData = scanner.nextLine().split(",");
-        currproduct = new Product(productData);
-        newItems.put(productData[0], currproduct);
-      }
-      scanner.close();
+      rejected = new CsvIngester(IO.PRODUCT_COLUMNS).readAndReport(filePath, IO.PRODUCT_ROW,
+          new CsvIngester.RowConsumer<Product>() {
+            public void accept(Product currproduct) {
+              newItems.put(UpcIndex.parse(currproduct.getUPC(), false), currproduct);
+            }
+          });
     }
     performMeasure += 1;
+    return rejected;
   }
 
   /**
@@ -63,7 +60,18 @@ public class Receiver extends Worker {
    * @return True if newItems contains this product.
    */
   public boolean isInNewItems(String upc){
-    return newItems.containsKey(upc);
+    return getNewItem(upc) != null;
+  }
+
+  /**
+   * Returns the product with upc from the new shipment.
+   *
+   * @param upc The upc of the product.
+   * @return the product, or null if it is not in the new shipment.
+   */
+  private Product getNewItem(String upc) {
+    long key = UpcIndex.parse(upc, false);
+    return key < 0 ? null : newItems.get(key);
   }
 
   /**
@@ -98,8 +106,8 @@ public class Receiver extends Worker {
       Product p = inventory.getProduct(upc);
       cart.put(p, numScanned);
     } else {
-      if (newItems.containsKey(upc)) {
-        Product p = newItems.get(upc);
+      Product p = getNewItem(upc);
+      if (p != null) {
         newCart.put(p, numScanned);
       }
     }
@@ -111,12 +119,7 @@ public class Receiver extends Worker {
    */
   public void checkout(Inventory inventory) {
     for (Product p : cart.keySet()) {
-      String currUPC = p.getUPC();
-      Integer quantity = cart.get(p);
-      while (0 < quantity) {
-        inventory.receivedProduct(currUPC);
-        quantity = quantity - 1;
-      }
+      inventory.receivedProduct(p.getUPC(), cart.get(p));
       p.needReorder = false;
       p.getPendingOrder().clearPendingOrder();
     }
@@ -134,12 +137,8 @@ public class Receiver extends Worker {
    */
   public void checkoutNew(Inventory inventory) {
     for (Product p : newCart.keySet()) {
-      Integer quantity = newCart.get(p);
       inventory.addNewProduct(p);
-      while (0 < quantity) {
-        inventory.receivedProduct(p.getUPC());
-        quantity = quantity - 1;
-      }
+      inventory.receivedProduct(p.getUPC(), newCart.get(p));
     }
 
     //Leaves this cart of products in the storage room for the reshelver.
@@ -9,6 +9,11 @@ import java.util.Map;
  */
 public class Reshelver extends Worker {
 
+  /**
+   * The aisle this Reshelver is working in, or -1 before it has taken anything.
+   */
+  private int aisle = -1;
+
   /**
    * Creates a Reshelver.
    *
@@ -22,15 +27,31 @@ public class Reshelver extends Worker {
   }
 
   /**
-   * Makes a record in <code>History</code> that all products from the <code>Receiver</code> have
-   * been placed onto shelves.
+   * Takes loads from the storage room, places their products onto shelves and makes a record of
+   * each in <code>History</code>. This Reshelver shelves every load waiting for the aisle it is
+   * working in, then moves to the aisle with the most waiting and goes on, until it has shelved at
+   * least as many loads as the cart of its first load was split into and its aisle has nothing
+   * left, so one go puts away at least a whole cart's worth.
+   *
+   * @return the number of loads shelved, 0 if the storage room was empty
    */
-  public void reshelvesCart(Inventory inventory) throws IOException {
-    Map<Product, Integer> cartFromReceiver = inventory.getStoredCart();
-    if (cartFromReceiver != null) {
-      history.recordShelved(this, cartFromReceiver);
+  public int reshelvesCart(Inventory inventory) throws IOException {
+    int shelved = 0;
+    int cartLoads = 0;
+    StorageRoom.Load load;
+    while ((load = inventory.getStoredLoad(aisle, shelved < cartLoads || shelved == 0)) != null) {
+      if (shelved == 0) {
+        cartLoads = load.parts;
+      }
+      aisle = load.aisle;
+      history.recordShelved(this, load.cart);
+      shelved += 1;
+    }
+    if (shelved == 0) {
+      aisle = -1;
     }
     performMeasure += 1;
+    return shelved;
   }
 
   /**
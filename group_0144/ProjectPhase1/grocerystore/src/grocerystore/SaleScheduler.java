@@ -0,0 +1,248 @@
+package grocerystore;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SaleScheduler puts products on sale and takes them off sale at the start and end of their
+ * sale windows while the store is open, instead of only when the store is set up. The windows of
+ * each product are kept by start time, and two windows of one product may not overlap, so whether a
+ * new window overlaps one that is already scheduled is found by looking at the one window that
+ * starts last before the new one ends. The start and end of every window wait in a priority queue,
+ * and a background timer wakes up at the earliest of them.
+ *
+ * Products are looked up by UPC in the inventory when a window starts or ends, since the inventory
+ * is saved apart from the managers.
+ */
+class SaleScheduler implements Serializable {
+
+  /**
+   * The timer that starts and ends sales, shared by every scheduler.
+   */
+  private static final ScheduledExecutorService timer =
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "sale-scheduler");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+
+  /**
+   * A product's sale price, in cents, from start until end.
+   */
+  static final class Window implements Serializable {
+
+    final String upc;
+    final LocalDateTime start;
+    final LocalDateTime end;
+    final long price;
+
+    Window(String upc, LocalDateTime start, LocalDateTime end, long price) {
+      this.upc = upc;
+      this.start = start;
+      this.end = end;
+      this.price = price;
+    }
+  }
+
+  /**
+   * The start or end of a window, ordered by when it happens and then by when it was scheduled.
+   */
+  private static final class Transition implements Comparable<Transition>, Serializable {
+
+    final LocalDateTime time;
+    final boolean start;
+    final Window window;
+    final long seq;
+
+    Transition(LocalDateTime time, boolean start, Window window, long seq) {
+      this.time = time;
+      this.start = start;
+      this.window = window;
+      this.seq = seq;
+    }
+
+    public int compareTo(Transition other) {
+      int c = time.compareTo(other.time);
+      return c != 0 ? c : Long.compare(seq, other.seq);
+    }
+  }
+
+  /**
+   * windows : the windows of each product that have not ended, by UPC and then by start
+   * transitions : the starts and ends that have not happened yet, earliest first
+   * active : the window each product on sale is in, by UPC
+   * nextSeq : the sequence number of the next transition
+   * inventory : the inventory products are looked up in, once the scheduler is started
+   * wakeUp : the timer task that runs at the earliest transition
+   * wakeTime : when wakeUp runs
+   */
+  private final Map<String, TreeMap<LocalDateTime, Window>> windows = new HashMap<>();
+  private final PriorityQueue<Transition> transitions = new PriorityQueue<>();
+  private final Map<String, Window> active = new HashMap<>();
+  private long nextSeq;
+  private transient Inventory inventory;
+  private transient ScheduledFuture<?> wakeUp;
+  private transient LocalDateTime wakeTime;
+
+  /**
+   * Starts (or restarts, after the scheduler is read back) starting and ending sales on time.
+   * Windows that started or ended while the scheduler was not running are caught up at once.
+   *
+   * @param inventory the inventory products are looked up in
+   */
+  synchronized void start(Inventory inventory) {
+    this.inventory = inventory;
+    fire();
+  }
+
+  /**
+   * Returns the scheduled window of a product that overlaps the time from start to end.
+   *
+   * @param upc the UPC of the product
+   * @param start the start of the time
+   * @param end the end of the time
+   * @return the overlapping window, or null if there is none
+   */
+  synchronized Window overlapping(String upc, LocalDateTime start, LocalDateTime end) {
+    TreeMap<LocalDateTime, Window> product = windows.get(upc);
+    if (product == null) {
+      return null;
+    }
+    //windows of a product never overlap, so only the last one to start by end can reach start
+    Map.Entry<LocalDateTime, Window> before = product.floorEntry(end);
+    if (before != null && !before.getValue().end.isBefore(start)) {
+      return before.getValue();
+    }
+    return null;
+  }
+
+  /**
+   * Schedules a sale window for a product, unless it overlaps one already scheduled for it.
+   *
+   * @param upc the UPC of the product
+   * @param start the start of the sale
+   * @param end the end of the sale
+   * @param price the sale price, in cents
+   * @return false if the window overlaps another window of the product
+   */
+  synchronized boolean schedule(String upc, LocalDateTime start, LocalDateTime end, long price) {
+    if (end.isBefore(start) || overlapping(upc, start, end) != null) {
+      return false;
+    }
+    Window window = new Window(upc, start, end, price);
+    TreeMap<LocalDateTime, Window> product = windows.get(upc);
+    if (product == null) {
+      product = new TreeMap<>();
+      windows.put(upc, product);
+    }
+    product.put(start, window);
+    transitions.add(new Transition(start, true, window, nextSeq++));
+    transitions.add(new Transition(end, false, window, nextSeq++));
+    fire();
+    return true;
+  }
+
+  /**
+   * Returns the products that are on sale now.
+   *
+   * @return the products on sale
+   */
+  synchronized List<Product> onSale() {
+    List<Product> products = new ArrayList<>(active.size());
+    if (inventory != null) {
+      for (String upc : active.keySet()) {
+        Product p = inventory.getProduct(upc);
+        if (p != null) {
+          products.add(p);
+        }
+      }
+    }
+    return products;
+  }
+
+  /**
+   * Applies every transition that is due, then sets the timer for the next one if it is not set
+   * for it already.
+   */
+  private synchronized void fire() {
+    if (inventory == null) {
+      return;
+    }
+    LocalDateTime now = LocalDateTime.now();
+    while (!transitions.isEmpty() && !transitions.peek().time.isAfter(now)) {
+      apply(transitions.poll());
+    }
+    if (transitions.isEmpty()) {
+      return;
+    }
+    LocalDateTime next = transitions.peek().time;
+    if (wakeUp == null || next.isBefore(wakeTime)) {
+      if (wakeUp != null) {
+        wakeUp.cancel(false);
+      }
+      wakeTime = next;
+      wakeUp = timer.schedule(new Runnable() {
+        public void run() {
+          wake();
+        }
+      }, Math.max(ChronoUnit.MILLIS.between(now, next), 0), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Runs on the timer when the earliest transition is due.
+   */
+  private synchronized void wake() {
+    wakeUp = null;
+    fire();
+  }
+
+  /**
+   * Puts the product of a window on sale or takes it off sale.
+   */
+  private void apply(Transition transition) {
+    Window window = transition.window;
+    Product p = inventory.getProduct(window.upc);
+    if (transition.start) {
+      active.put(window.upc, window);
+      if (p != null) {
+        p.getOnSaleInfo().startSale(window.price, window.start, window.end);
+      }
+    } else {
+      if (active.get(window.upc) == window) {
+        active.remove(window.upc);
+        if (p != null) {
+          p.getOnSaleInfo().endSale();
+        }
+      }
+      TreeMap<LocalDateTime, Window> product = windows.get(window.upc);
+      product.remove(window.start);
+      if (product.isEmpty()) {
+        windows.remove(window.upc);
+      }
+    }
+  }
+
+  /**
+   * Writes the scheduler while holding its lock, so the timer cannot change it halfway through.
+   */
+  private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+  }
+}
@@ -0,0 +1,55 @@
+package grocerystore;
+
+/**
+ * A Session is one worker signed in at one terminal. Every terminal signed in to the store holds
+ * its own session and its own button manager, so many terminals can drive the same store at once
+ * without sharing any state of the one worker who happens to have signed in last. A worker can be
+ * signed in at one terminal at a time, since the worker's cart belongs to the worker.
+ */
+public final class Session {
+
+  /**
+   * worker : the worker who signed in
+   * terminal : the number of the terminal, unique among the sessions of the store
+   * key : the key of the worker in the registry
+   * registry : the registry the session is signed in with
+   */
+  private final Worker worker;
+  private final long terminal;
+  final String key;
+  private final SessionRegistry registry;
+
+  Session(Worker worker, long terminal, String key, SessionRegistry registry) {
+    this.worker = worker;
+    this.terminal = terminal;
+    this.key = key;
+    this.registry = registry;
+  }
+
+  /**
+   * Return the worker who signed in.
+   * @return the worker of this session
+   */
+  public Worker getWorker() {
+    return worker;
+  }
+
+  /**
+   * Return the number of the terminal of this session.
+   * @return the terminal number
+   */
+  public long getTerminal() {
+    return terminal;
+  }
+
+  /**
+   * Signs the worker out of this terminal. Does nothing if the session has already ended.
+   */
+  public void signOut() {
+    registry.signOut(this);
+  }
+
+  public String toString() {
+    return worker.getWorkerType() + " " + worker.id + " at terminal " + terminal;
+  }
+}
@@ -0,0 +1,112 @@
+package grocerystore;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The SessionRegistry knows every worker of a store by worker type and id, and which of them are
+ * signed in and at which terminal. Looking a worker up takes one hash lookup however many workers
+ * the store has, and signing in and out takes no lock shared by the other terminals.
+ */
+class SessionRegistry {
+
+  /**
+   * roster : every worker of the store, by key
+   * signedIn : the session of every worker who is signed in, by key
+   * nextTerminal : the number of the next terminal to sign in
+   */
+  private final Map<String, Worker> roster = new ConcurrentHashMap<>();
+  private final Map<String, Session> signedIn = new ConcurrentHashMap<>();
+  private final AtomicLong nextTerminal = new AtomicLong(1);
+
+  /**
+   * Adds a worker to the roster, replacing any worker with the same type and id.
+   * @param worker the worker
+   */
+  void register(Worker worker) {
+    roster.put(key(worker.getWorkerType(), worker.id), worker);
+  }
+
+  /**
+   * Adds every worker to the roster.
+   * @param workers the workers
+   */
+  void registerAll(Collection<? extends Worker> workers) {
+    for (Worker worker : workers) {
+      register(worker);
+    }
+  }
+
+  /**
+   * Returns the worker with a type and id.
+   * @param workerType the type of the worker, such as "Cashier"
+   * @param id the id of the worker
+   * @return the worker, or null if there is none
+   */
+  Worker worker(String workerType, String id) {
+    return roster.get(key(workerType, id));
+  }
+
+  /**
+   * Returns whether a worker is signed in at some terminal.
+   * @param workerType the type of the worker
+   * @param id the id of the worker
+   * @return true if the worker is signed in
+   */
+  boolean isSignedIn(String workerType, String id) {
+    return signedIn.containsKey(key(workerType, id));
+  }
+
+  /**
+   * Signs a worker in at a new terminal.
+   * @param workerType the type of the worker
+   * @param id the id of the worker
+   * @return the new session, or null if there is no such worker or the worker is already signed in
+   */
+  Session signIn(String workerType, String id) {
+    String key = key(workerType, id);
+    Worker worker = roster.get(key);
+    if (worker == null) {
+      return null;
+    }
+    Session session = new Session(worker, nextTerminal.getAndIncrement(), key, this);
+    if (signedIn.putIfAbsent(key, session) != null) {
+      return null;
+    }
+    worker.setActive();
+    return session;
+  }
+
+  /**
+   * Ends a session, if it has not ended already.
+   * @param session the session
+   */
+  void signOut(Session session) {
+    if (signedIn.remove(session.key, session)) {
+      session.getWorker().setNotActive();
+    }
+  }
+
+  /**
+   * Ends every session, such as when the store closes.
+   */
+  void signOutAll() {
+    for (Session session : signedIn.values()) {
+      signOut(session);
+    }
+  }
+
+  /**
+   * Returns the sessions that have not ended.
+   * @return the sessions
+   */
+  Collection<Session> sessions() {
+    return signedIn.values();
+  }
+
+  private static String key(String workerType, String id) {
+    return workerType + ':' + id;
+  }
+}
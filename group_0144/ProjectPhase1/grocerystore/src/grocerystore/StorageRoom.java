@@ -0,0 +1,176 @@
+package grocerystore;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The StorageRoom holds the products that were received or returned until a reshelver puts them
+ * on the shelves. A cart put in the storage room is split by aisle into loads, and each aisle has
+ * its own queue of loads, oldest first. A reshelver keeps taking loads of the aisle it is working
+ * in; when that aisle is done it takes the newest load of the aisle with the most loads waiting, so
+ * reshelvers spread themselves over the aisles with the most work and rarely reach for the same
+ * load. Taking a load does not lock anything: the load is claimed, and a reshelver that loses the
+ * race for a load just goes on to the next one.
+ */
+class StorageRoom implements Serializable {
+
+  /**
+   * The products of one cart that belong in one aisle, and the number of loads the cart was split
+   * into.
+   */
+  static final class Load implements Serializable {
+
+    final long id;
+    final int aisle;
+    final Map<Product, Integer> cart;
+    final int parts;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    private Load(long id, int aisle, Map<Product, Integer> cart, int parts) {
+      this.id = id;
+      this.aisle = aisle;
+      this.cart = cart;
+      this.parts = parts;
+    }
+  }
+
+  /**
+   * The queue of loads of one aisle, and how many loads in it are not claimed yet.
+   */
+  private static final class AisleQueue implements Serializable {
+
+    final ConcurrentLinkedDeque<Load> loads = new ConcurrentLinkedDeque<>();
+    final AtomicInteger backlog = new AtomicInteger();
+  }
+
+  /**
+   * aisles : the queue of loads of each aisle, by aisle number
+   * waiting : every load that is not claimed yet, by id
+   * nextId : the id of the next load
+   */
+  private final ConcurrentMap<Integer, AisleQueue> aisles = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Long, Load> waiting = new ConcurrentHashMap<>();
+  private long nextId;
+
+  /**
+   * Splits a cart by aisle and puts the loads in the queues of their aisles. Loads get their ids
+   * one after another, in the order of the aisles of the cart.
+   *
+   * @param cart the products of the cart mapped to their quantity
+   * @return the number of loads the cart was split into
+   */
+  synchronized int store(Map<Product, Integer> cart) {
+    Map<Integer, Map<Product, Integer>> byAisle = new TreeMap<>();
+    for (Map.Entry<Product, Integer> item : cart.entrySet()) {
+      int aisle = item.getKey().getAisleNo();
+      Map<Product, Integer> part = byAisle.get(aisle);
+      if (part == null) {
+        part = new HashMap<>();
+        byAisle.put(aisle, part);
+      }
+      part.put(item.getKey(), item.getValue());
+    }
+    for (Map.Entry<Integer, Map<Product, Integer>> part : byAisle.entrySet()) {
+      Load load = new Load(nextId++, part.getKey(), part.getValue(), byAisle.size());
+      AisleQueue queue = aisles.get(load.aisle);
+      if (queue == null) {
+        queue = new AisleQueue();
+        aisles.put(load.aisle, queue);
+      }
+      waiting.put(load.id, load);
+      queue.backlog.incrementAndGet();
+      queue.loads.addLast(load);
+    }
+    return byAisle.size();
+  }
+
+  /**
+   * Takes the oldest load of an aisle, or, if that aisle has none and steal is set, the newest load
+   * of the aisle with the most loads waiting.
+   *
+   * @param aisle the aisle the reshelver is working in, or -1 for none
+   * @param steal whether to take a load of another aisle if this one has none
+   * @return the load taken, or null if there is none to take
+   */
+  Load take(int aisle, boolean steal) {
+    AisleQueue home = aisles.get(aisle);
+    if (home != null) {
+      Load load = claim(home, true);
+      if (load != null) {
+        return load;
+      }
+    }
+    while (steal && !waiting.isEmpty()) {
+      AisleQueue fullest = null;
+      int most = 0;
+      for (AisleQueue queue : aisles.values()) {
+        int backlog = queue.backlog.get();
+        if (backlog > most) {
+          most = backlog;
+          fullest = queue;
+        }
+      }
+      if (fullest == null) {
+        return null;
+      }
+      Load load = claim(fullest, false);
+      if (load != null) {
+        return load;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Takes the load with the given id out of the storage room, as when a recorded take is replayed.
+   *
+   * @param id the id of the load
+   * @return the load, or null if it is not waiting
+   */
+  Load remove(long id) {
+    Load load = waiting.get(id);
+    if (load == null || !load.claimed.compareAndSet(false, true)) {
+      return null;
+    }
+    taken(aisles.get(load.aisle), load);
+    return load;
+  }
+
+  /**
+   * Returns the number of loads waiting in the storage room.
+   *
+   * @return the number of loads
+   */
+  int size() {
+    return waiting.size();
+  }
+
+  /**
+   * Claims the first unclaimed load from one end of a queue, dropping the claimed loads it passes.
+   */
+  private Load claim(AisleQueue queue, boolean oldest) {
+    Load load;
+    while ((load = oldest ? queue.loads.pollFirst() : queue.loads.pollLast()) != null) {
+      if (load.claimed.compareAndSet(false, true)) {
+        taken(queue, load);
+        return load;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Counts a claimed load out of its queue.
+   */
+  private void taken(AisleQueue queue, Load load) {
+    waiting.remove(load.id);
+    queue.backlog.decrementAndGet();
+  }
+}
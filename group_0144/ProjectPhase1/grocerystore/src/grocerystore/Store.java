@@ -4,6 +4,7 @@ import grocerystore.buttonManager.CashierButtonManager;
 import grocerystore.buttonManager.ManagerButtonManager;
 import grocerystore.buttonManager.ReceiverButtonManager;
 import grocerystore.buttonManager.ReshelverButtonManager;
+import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
@@ -25,8 +26,16 @@ public class Store {
    * inventory : the inventory that holds the products
    * loadInventory : the name of the inventory ser file
    * loadWorker : the name of the worker ser file
-   * currWorker : the current worker of the store
+   * loadJournal : the name of the journal file that inventory changes are appended to
+   * journal : the write-ahead journal of the inventory
+   * catalogDirectory : the directory of the memory-mapped product catalog, or null to keep every
+   * product on the heap
+   * sharedCatalog : whether the catalog is shared, read only, with the other stores of a cluster
+   * membersDirectory : the directory of the membership directory
+   * members : the loyalty members of the store, kept apart from the inventory snapshot
+   * sessions : every worker of the store by type and id, and the terminals they are signed in at
    * mainManager : the main manager of the store
+   * stats : the size of the store shown over JMX while it is open
    * storeName : the name of the store
    */
   String inventoryInitialFile;
@@ -37,9 +46,16 @@ public class Store {
 
   String loadInventory = "inventory.ser";
   String loadWorker = "workerData.ser";
+  String loadJournal = "inventory.journal";
+  InventoryJournal journal;
+  String catalogDirectory;
+  boolean sharedCatalog;
+  String membersDirectory = MembershipDirectory.DEFAULT_DIRECTORY;
+  MembershipDirectory members;
 
-  Worker currWorker;
+  final SessionRegistry sessions = new SessionRegistry();
   Manager mainManager;
+  StoreStats stats;
 
   String storeName;
 
@@ -51,11 +67,32 @@ public class Store {
    * @throws IOException Throws an IOException.
    */
   private Store(String storeName, String inventoryFile, String workerFile) throws IOException{
+    this(storeName, inventoryFile, workerFile, null);
+  }
+
+  /**
+   * Instantiate a Store that keeps its files (inventory, workers, journal, members and history) in
+   * a directory of its own, so that several stores can run in one process.
+   * @param storeName name of the Store
+   * @param inventoryFile csv file of the initial inventory
+   * @param workerFile csv file of the initial workers
+   * @param directory the directory of the files of this store, or null for the current directory
+   * @throws IOException Throws an IOException.
+   */
+  Store(String storeName, String inventoryFile, String workerFile, File directory)
+      throws IOException{
     this.storeName = storeName;
     this.inventoryInitialFile = inventoryFile;
     this.workerInitialFile = workerFile;
     this.workers = new ArrayList<>();
-    this.storeHis = new History();
+    if (directory != null) {
+      directory.mkdirs();
+      loadInventory = new File(directory, loadInventory).getPath();
+      loadWorker = new File(directory, loadWorker).getPath();
+      loadJournal = new File(directory, loadJournal).getPath();
+      membersDirectory = new File(directory, membersDirectory).getPath();
+    }
+    this.storeHis = new History(directory);
   }
 
   /**
@@ -66,16 +103,58 @@ public class Store {
     return storeName;
   }
 
+  /**
+   * Keep the products of this store in a memory-mapped catalog in directory instead of on the heap.
+   * The catalog is built from the initial inventory file the first time. Must be called before
+   * the store is set up.
+   * @param directory the directory of the catalog
+   */
+  public void useMappedCatalog(String directory) {
+    this.catalogDirectory = directory;
+  }
+
+  /**
+   * Keep the products of this store in a memory-mapped catalog that is shared, read only, with
+   * other stores. The catalog must have been built already. Must be called before the store is set
+   * up.
+   * @param directory the directory of the catalog
+   */
+  void useSharedCatalog(String directory) {
+    this.catalogDirectory = directory;
+    this.sharedCatalog = true;
+  }
+
+  /**
+   * Return whether this store has been set up before, so it should be read rather than set up.
+   * @return true if the store has been saved
+   */
+  boolean hasBeenSetUp() {
+    return new File(loadInventory).exists() && new File(loadWorker).exists();
+  }
+
   /**
    * Set up the store for when it is first used
    */
   public void initialSetUp(){
 
     try{
-      inventory = new Inventory(inventoryInitialFile);
+      if (catalogDirectory == null) {
+        inventory = new Inventory(inventoryInitialFile);
+      } else if (sharedCatalog) {
+        inventory = new MappedInventory(MappedCatalog.shared(catalogDirectory));
+      } else {
+        inventory = MappedInventory.open(catalogDirectory, inventoryInitialFile);
+      }
+      openMembers();
       IO.setUpStore(this);
       mainManager.setWorkers(workers);
       updateStore(mainManager, inventory);
+
+      //take a first snapshot so the journal always has something to be replayed on top of.
+      openJournal();
+      inventory.checkpoint();
+      IO.doSerialize(workers, loadWorker);
+      stats = StoreStats.register(this);
     }catch (IOException e) {
       e.printStackTrace();
     }
@@ -91,6 +170,14 @@ public class Store {
     try {
       inventory = (Inventory) IO.doDeserialize(loadInventory);
       workers = (ArrayList<Worker>) IO.doDeserialize(loadWorker);
+      sessions.registerAll(workers);
+      openMembers();
+
+      //recover whatever happened after the last snapshot was taken.
+      openJournal();
+      if (journal.replay(inventory) > 0) {
+        inventory.checkpoint();
+      }
       IO.setUpStore(this);
 
       for(Worker worker : workers){
@@ -99,6 +186,7 @@ public class Store {
         }
       }
       updateStore(mainManager, inventory);
+      stats = StoreStats.register(this);
     } catch (ClassNotFoundException | IOException e) {
       e.printStackTrace();
     }
@@ -110,18 +198,52 @@ public class Store {
   public void closeStore(){
     //set every workers as deactive in their active boolean variable
     //Serialize inventory and arraylist of workers to loadInventory and loadWorker filepaths.
+    sessions.signOutAll();
     for (Worker worker : workers) {
       worker.setNotActive();
     }
+    if (stats != null) {
+      stats.unregister();
+      stats = null;
+    }
 
     try {
-      IO.doSerialize(inventory, loadInventory);
+      if (journal == null) {
+        openJournal();
+      }
+      inventory.checkpoint();
+      journal.close();
+      members.flush();
       IO.doSerialize(workers, loadWorker);
+      //write out history lines still waiting for their group commit
+      storeHis.close();
+      for (Worker worker : workers) {
+        worker.history.close();
+      }
+      EventLog.get().flush();
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
+  /**
+   * Opens the membership directory of the store and attaches it to the inventory.
+   * @throws IOException Throws an IOException.
+   */
+  private void openMembers() throws IOException {
+    members = MembershipDirectory.open(membersDirectory);
+    inventory.setMembers(members);
+  }
+
+  /**
+   * Opens the journal of the inventory and attaches it so that every change is recorded.
+   */
+  private void openJournal() {
+    journal = new InventoryJournal(loadJournal, loadInventory,
+        InventoryJournal.DEFAULT_COMPACT_EVERY);
+    inventory.setJournal(journal);
+  }
+
   /**
    * Call update store from the manager
    * @param manager The manager responsible for this store
@@ -136,17 +258,13 @@ public class Store {
   }
 
   /**
-   * Check if there is a worker with the right type and id and set it active if it is a worker
+   * Check if there is a worker with the right type and id.
    * @param workerType Type of the worker
    * @param id ID of the worker
    * @return True if the person with id is a valid worker.
    */
   public boolean isAWorker(String workerType, String id){
-    boolean isAWorker = workerExists(workerType, id);
-    if (isAWorker) {
-      currWorker.setActive();
-    }
-    return isAWorker;
+    return workerExists(workerType, id);
   }
 
   /**
@@ -156,46 +274,64 @@ public class Store {
    * @return whether the worker exists
    */
   public boolean workerExists(String workerType, String id){
-    for(Worker w: workers){
-      if((w.id.equals(id)) && (w.getWorkerType().equals(workerType))){
-        currWorker = w;
-        return true;
-      }
-    }
-    return false;
+    return sessions.worker(workerType, id) != null;
+  }
+
+  /**
+   * Return whether this worker is signed in at some terminal.
+   * @param workerType the type of the worker
+   * @param id the id of the worker
+   * @return whether the worker is signed in
+   */
+  public boolean isSignedIn(String workerType, String id){
+    return sessions.isSignedIn(workerType, id);
   }
 
+  /**
+   * Sign a worker in at a new terminal and set it active.
+   * @param workerType the type of the worker
+   * @param id the id of the worker
+   * @return the session of the terminal, or null if there is no such worker or the worker is
+   * signed in at another terminal
+   */
+  public Session signIn(String workerType, String id){
+    return sessions.signIn(workerType, id);
+  }
 
   /**
    * Return a manager's button manager.
+   * @param session the session of the manager
    * @return a manager's button manager
    */
-  public ManagerButtonManager getManagerBM(){
-    return new ManagerButtonManager((Manager)currWorker, inventory);
+  public ManagerButtonManager getManagerBM(Session session){
+    return new ManagerButtonManager(session, inventory);
   }
 
   /**
    * Return a cashier's button manager.
+   * @param session the session of the cashier
    * @return a cashier's button manager
    */
-  public CashierButtonManager getCashierBM(){
-    return new CashierButtonManager((Cashier)currWorker, inventory);
+  public CashierButtonManager getCashierBM(Session session){
+    return new CashierButtonManager(session, inventory);
   }
 
   /**
    * Return a receiver's button manager.
+   * @param session the session of the receiver
    * @return a receiver's button manager
    */
-  public ReceiverButtonManager getReceiverBM(){
-    return new ReceiverButtonManager((Receiver)currWorker, inventory);
+  public ReceiverButtonManager getReceiverBM(Session session){
+    return new ReceiverButtonManager(session, inventory);
   }
 
   /**
-   * Return a receiver's button manager.
-   * @return a receiver's button manager
+   * Return a reshelver's button manager.
+   * @param session the session of the reshelver
+   * @return a reshelver's button manager
    */
-  public ReshelverButtonManager getReshelverBM(){
-    return new ReshelverButtonManager((Reshelver)currWorker, inventory);
+  public ReshelverButtonManager getReshelverBM(Session session){
+    return new ReshelverButtonManager(session, inventory);
   }
 
   /**
@@ -206,12 +342,22 @@ public class Store {
   public static void main(String[] args) throws IOException{
     Store currStore = new Store("AMAZING grocery store title window",
         "InitialItems.csv", "InitialWorkers.csv");
-    JFrame frame = new JFrame(currStore.getStoreName());
+    currStore.openTerminal(false);
+  }
+
+  /**
+   * Opens a window for a terminal of this store.
+   * @param launched true if the store has been set up or read already, so the terminal does not
+   * need to launch it
+   */
+  void openTerminal(boolean launched){
+    JFrame frame = new JFrame(getStoreName());
 
     //Add Panel container and set all the information it needs to set up.
     PanelContainer thisPanel = new PanelContainer();
     thisPanel.setFrame(frame);
-    thisPanel.setSystemPanel(currStore);
+    thisPanel.setSystemPanel(this);
+    thisPanel.setSystemLaunched(launched);
 
     //Adjust features of this frame.
     frame.add(thisPanel);
@@ -0,0 +1,177 @@
+package grocerystore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A StoreCluster runs many stores in one process, such as the stores of a region. The stores share
+ * one product catalog, memory-mapped and read only, so a product's name, section, distributor and
+ * cost are held once however many stores sell it. Each store only makes a Product object for the
+ * products it has asked for, and keeps its own stock and prices on them. Everything else is per
+ * store: its workers, inventory, journal, members and history live in a directory of its own under
+ * the directory of the cluster.
+ *
+ * Stores are opened (set up the first time, read after that) and closed in parallel on a pool with
+ * one thread per core, since each store only touches its own files.
+ */
+public class StoreCluster {
+
+  /**
+   * directory : the directory the stores keep their files in, one directory per store
+   * catalogDirectory : the directory of the shared catalog
+   * stores : the stores of the cluster, in the order they were added
+   * pool : the threads stores are opened and closed on
+   */
+  private final File directory;
+  private final String catalogDirectory;
+  private final List<Store> stores = new ArrayList<>();
+  private final ExecutorService pool;
+
+  /**
+   * Creates a cluster whose stores share the catalog built from itemsFile. The catalog is built in
+   * catalogDirectory the first time.
+   *
+   * @param directory the directory the stores keep their files in
+   * @param catalogDirectory the directory of the shared catalog
+   * @param itemsFile a csv file in the same format as InitialItems.csv
+   * @throws IOException Throws an IOException.
+   */
+  StoreCluster(File directory, String catalogDirectory, String itemsFile) throws IOException {
+    this.directory = directory;
+    this.catalogDirectory = catalogDirectory;
+    if (!MappedCatalog.exists(catalogDirectory)) {
+      MappedCatalog.build(catalogDirectory, itemsFile);
+    }
+    MappedCatalog.shared(catalogDirectory);
+    final AtomicInteger threads = new AtomicInteger();
+    pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+        new ThreadFactory() {
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "store-cluster-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          }
+        });
+  }
+
+  /**
+   * Adds a store to the cluster. The store is not opened until open is called.
+   *
+   * @param storeName the name of the store, also the name of its directory
+   * @param workerFile a csv file of the workers of the store, in the same format as
+   * InitialWorkers.csv
+   * @return the store
+   * @throws IOException Throws an IOException.
+   */
+  synchronized Store addStore(String storeName, String workerFile) throws IOException {
+    Store store = new Store(storeName, null, workerFile, new File(directory, storeName));
+    store.useSharedCatalog(catalogDirectory);
+    stores.add(store);
+    return store;
+  }
+
+  /**
+   * Returns the stores of the cluster.
+   *
+   * @return an unmodifiable list of the stores
+   */
+  synchronized List<Store> getStores() {
+    return Collections.unmodifiableList(new ArrayList<>(stores));
+  }
+
+  /**
+   * Opens every store in parallel: a store that has been saved before is read, any other is set up
+   * for the first time. Either way its manager starts the sales of the store.
+   */
+  void open() {
+    forEachStore(new StoreTask() {
+      public void run(Store store) {
+        if (store.hasBeenSetUp()) {
+          store.readStore();
+        } else {
+          store.initialSetUp();
+        }
+      }
+    });
+  }
+
+  /**
+   * Closes every store in parallel, saving its inventory, workers and history.
+   */
+  void close() {
+    forEachStore(new StoreTask() {
+      public void run(Store store) {
+        store.closeStore();
+      }
+    });
+  }
+
+  /**
+   * Closes every store and stops the threads of the cluster.
+   */
+  void shutdown() {
+    close();
+    pool.shutdown();
+  }
+
+  /**
+   * Something done to one store.
+   */
+  private interface StoreTask {
+
+    void run(Store store);
+  }
+
+  /**
+   * Does a task to every store on the pool and waits for all of them to finish.
+   */
+  private void forEachStore(final StoreTask task) {
+    List<Future<Void>> done = new ArrayList<>();
+    for (final Store store : getStores()) {
+      done.add(pool.submit(new Callable<Void>() {
+        public Void call() {
+          task.run(store);
+          return null;
+        }
+      }));
+    }
+    for (Future<Void> future : done) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        e.getCause().printStackTrace();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Runs a cluster of stores that all use InitialItems.csv and InitialWorkers.csv, with a terminal
+   * window for each store.
+   * @param args the number of stores, 2 if not given.
+   * @throws IOException Throws an IOException.
+   */
+  public static void main(String[] args) throws IOException {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+    StoreCluster cluster = new StoreCluster(new File("stores"), "catalog", "InitialItems.csv");
+    for (int i = 1; i <= count; i++) {
+      cluster.addStore("store" + i, "InitialWorkers.csv");
+    }
+    cluster.open();
+    for (Store store : cluster.getStores()) {
+      store.openTerminal(true);
+    }
+  }
+}
@@ -0,0 +1,768 @@
+package grocerystore;
+
+import grocerystore.buttonManager.CashierButtonManager;
+import grocerystore.buttonManager.ManagerButtonManager;
+import grocerystore.buttonManager.ReceiverButtonManager;
+import grocerystore.buttonManager.ReshelverButtonManager;
+import grocerystore.buttonManager.WorkerButtonManager;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The StoreSimulation drives a store without its windows, through the same button managers the
+ * terminals use, as fast as it can. It either replays a script of events in the events.txt format
+ * described in help.txt ("Cashier 2 addToCart <<14100089001,2>>"), one line after the other, or
+ * signs every worker of the store in at a terminal of its own and has each of them do random work
+ * of their kind on a thread of its own: cashiers scan carts and check them out (or take returns),
+ * receivers receive stock, reshelvers shelve it and look products up, and managers put products on
+ * sale and send orders.
+ *
+ * Every call into a button manager is timed, and at the end the simulation reports how many events
+ * it ran per second and the latency of each kind of operation.
+ */
+public class StoreSimulation {
+
+  /**
+   * The kinds of operation latencies are reported for.
+   */
+  enum Operation {
+    STORE,
+    SIGN_IN,
+    SIGN_OUT,
+    SCAN,
+    CHANGE_QUANTITY,
+    CLEAR_CART,
+    CHECKOUT,
+    RETURN,
+    RECEIVE,
+    NEW_SHIPMENT,
+    RESHELVE,
+    SALE,
+    PRICE_CHANGE,
+    SEND_ORDERS,
+    LOOKUP
+  }
+
+  /**
+   * The message a cashier's checkout is refused with when there is not enough stock.
+   */
+  private static final String REFUSED = "There is not enough stock";
+
+  /**
+   * store : the store being driven
+   * verbose : whether the answer of every event is printed
+   * upcs : the UPCs random events pick products from
+   */
+  private final Store store;
+  private final boolean verbose;
+  private List<String> upcs;
+
+  /**
+   * Creates a simulation of a store.
+   *
+   * @param store the store to drive
+   * @param verbose true to print the answer of every event
+   */
+  StoreSimulation(Store store, boolean verbose) {
+    this.store = store;
+    this.verbose = verbose;
+  }
+
+  /**
+   * The latencies and counts of the events run on one thread, so threads never share one while
+   * they run.
+   */
+  static final class Recorder {
+
+    final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    long events;
+    long refused;
+    long failed;
+    long skipped;
+
+    /**
+     * Records that an operation took from start until now.
+     */
+    void record(Operation op, long start) {
+      long took = System.nanoTime() - start;
+      LatencyHistogram histogram = latencies.get(op);
+      if (histogram == null) {
+        histogram = new LatencyHistogram();
+        latencies.put(op, histogram);
+      }
+      histogram.record(took);
+      events++;
+    }
+
+    /**
+     * Adds the latencies and counts of another recorder to this one.
+     */
+    void add(Recorder other) {
+      for (Map.Entry<Operation, LatencyHistogram> entry : other.latencies.entrySet()) {
+        LatencyHistogram histogram = latencies.get(entry.getKey());
+        if (histogram == null) {
+          histogram = new LatencyHistogram();
+          latencies.put(entry.getKey(), histogram);
+        }
+        histogram.add(entry.getValue());
+      }
+      events += other.events;
+      refused += other.refused;
+      failed += other.failed;
+      skipped += other.skipped;
+    }
+  }
+
+  // SCRIPTED =====================================================================================
+
+  /**
+   * Replays a script of events, one line after the other. Lines are "Worker id Action Object" as
+   * in events.txt; blank lines and lines starting with # are left out. An event that cannot be
+   * done is counted as failed and the replay goes on.
+   *
+   * @param eventsFile the script
+   * @return the latencies and counts of the events
+   * @throws IOException if the script cannot be read
+   */
+  Recorder replay(String eventsFile) throws IOException {
+    Recorder recorder = new Recorder();
+    Map<String, WorkerButtonManager> terminals = new HashMap<>();
+    BufferedReader reader = new BufferedReader(new FileReader(eventsFile));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        String[] words = line.split("\\s+");
+        if (words.length < 3) {
+          recorder.skipped++;
+          continue;
+        }
+        try {
+          String object = words.length > 3 ? words[3] : "";
+          if (!replayEvent(words[0], words[1], words[2], object, terminals, recorder)) {
+            recorder.skipped++;
+            System.out.println("Skipped: " + line);
+          }
+        } catch (IOException | ParseException | RuntimeException e) {
+          recorder.failed++;
+          System.out.println("Failed: " + line + " (" + e + ")");
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return recorder;
+  }
+
+  /**
+   * Does one event of a script.
+   *
+   * @return false if the action is not known, the worker is not signed in, or a product of the
+   * event is not in the store
+   */
+  private boolean replayEvent(String workerType, String id, String action, String object,
+      Map<String, WorkerButtonManager> terminals, Recorder recorder)
+      throws IOException, ParseException {
+    String key = workerType + " " + id;
+    long start = System.nanoTime();
+    switch (action) {
+      case "SetupStore":
+        store.initialSetUp();
+        recorder.record(Operation.STORE, start);
+        return signIn(workerType, id, terminals);
+      case "readStore":
+      case "ReadStore":
+        store.readStore();
+        recorder.record(Operation.STORE, start);
+        return true;
+      case "closeStore":
+      case "CloseStore":
+        for (WorkerButtonManager terminal : terminals.values()) {
+          terminal.callSetNotActive();
+        }
+        terminals.clear();
+        store.closeStore();
+        recorder.record(Operation.STORE, start);
+        return true;
+      case "setActive":
+        boolean signedIn = signIn(workerType, id, terminals);
+        recorder.record(Operation.SIGN_IN, start);
+        return signedIn;
+      default:
+        break;
+    }
+    WorkerButtonManager terminal = terminals.get(key);
+    if (terminal == null) {
+      return false;
+    }
+    List<String[]> pairs = pairs(object);
+    if (!knownProducts(terminal, action, pairs)) {
+      return false;
+    }
+    String answer;
+    Operation op;
+    switch (action) {
+      case "setNotActive":
+      case "signOut":
+        answer = terminal.callSetNotActive();
+        terminals.remove(key);
+        op = Operation.SIGN_OUT;
+        break;
+      case "addToCart":
+        for (String[] pair : pairs) {
+          terminal.callAddToCart(pair[0], Integer.parseInt(pair[1]));
+        }
+        answer = terminal.callGetCart();
+        op = Operation.SCAN;
+        break;
+      case "changeQuantity":
+        answer = terminal.callChangeQuantity(pairs.get(0)[0], Integer.parseInt(pairs.get(0)[1]));
+        op = Operation.CHANGE_QUANTITY;
+        break;
+      case "clearCart":
+        answer = terminal.callClearCart();
+        op = Operation.CLEAR_CART;
+        break;
+      case "checkout":
+        if (terminal instanceof CashierButtonManager) {
+          answer = ((CashierButtonManager) terminal).callCheckOut();
+          if (answer.startsWith(REFUSED)) {
+            recorder.refused++;
+          }
+          op = Operation.CHECKOUT;
+        } else if (terminal instanceof ReceiverButtonManager) {
+          answer = ((ReceiverButtonManager) terminal).callCheckout();
+          op = Operation.RECEIVE;
+        } else {
+          return false;
+        }
+        break;
+      case "customerReturn":
+        answer = cashier(terminal).callCustomerReturn();
+        op = Operation.RETURN;
+        break;
+      case "newShipment":
+        answer = receiver(terminal).callNewShipment(object);
+        op = Operation.NEW_SHIPMENT;
+        break;
+      case "checkoutNew":
+        answer = receiver(terminal).callCheckoutNew();
+        op = Operation.RECEIVE;
+        break;
+      case "reshelvesCart":
+        answer = reshelver(terminal).callReshelvesCart();
+        op = Operation.RESHELVE;
+        break;
+      case "addToSaleCart":
+        answer = "";
+        for (String[] pair : pairs) {
+          answer = manager(terminal).callAddToPriceCart(pair[0], Double.valueOf(pair[1]));
+        }
+        op = Operation.SALE;
+        break;
+      case "putsOnSale":
+        answer = manager(terminal).callPutOnSale(pairs.get(0)[0], pairs.get(0)[1]);
+        op = Operation.SALE;
+        break;
+      case "clearSaleCart":
+        answer = manager(terminal).callClearPriceCart();
+        op = Operation.SALE;
+        break;
+      case "changeRegPrice":
+        answer = manager(terminal).callChangeRegPrice();
+        op = Operation.PRICE_CHANGE;
+        break;
+      case "sendOrders":
+        answer = manager(terminal).callSendOrders();
+        op = Operation.SEND_ORDERS;
+        break;
+      case "editPendingOrder":
+        answer = manager(terminal).callEditPendingOrder(pairs.get(0)[0],
+            Integer.valueOf(pairs.get(0)[1]));
+        op = Operation.SEND_ORDERS;
+        break;
+      case "checkPendingOrders":
+        answer = manager(terminal).callCheckPendingOrders();
+        op = Operation.LOOKUP;
+        break;
+      case "createBackOrderFile":
+        answer = manager(terminal).callCreateBackOrderFile();
+        op = Operation.LOOKUP;
+        break;
+      case "changeDefaultQuantity":
+        answer = manager(terminal).callChangeDefaultQuantity(pairs.get(0)[0],
+            Integer.valueOf(pairs.get(0)[1]));
+        op = Operation.LOOKUP;
+        break;
+      case "changeProductLocation":
+        answer = manager(terminal).callChangeProductLocation(pairs.get(0)[0],
+            Integer.valueOf(pairs.get(0)[1]));
+        op = Operation.LOOKUP;
+        break;
+      case "checkAisleProducts":
+        answer = manager(terminal).callCheckAisleProducts(Integer.valueOf(object));
+        op = Operation.LOOKUP;
+        break;
+      case "checkOnSale":
+        answer = manager(terminal).callCheckOnSale();
+        op = Operation.LOOKUP;
+        break;
+      case "checkSalePriceHistory":
+        answer = manager(terminal).callCheckSalePriceHistory();
+        op = Operation.LOOKUP;
+        break;
+      case "checkProfitHistory":
+        answer = manager(terminal).callCheckProfitHistory(pairs.get(0)[0], pairs.get(0)[1]);
+        op = Operation.LOOKUP;
+        break;
+      case "checkTotalProfit":
+        answer = manager(terminal).callCheckTotalProfit(pairs.get(0)[0], pairs.get(0)[1]);
+        op = Operation.LOOKUP;
+        break;
+      case "checkLocation":
+        answer = terminal.callCheckLocation(pairs.get(0)[0]);
+        op = Operation.LOOKUP;
+        break;
+      case "checkCost":
+        answer = terminal.callCheckCost(pairs.get(0)[0]);
+        op = Operation.LOOKUP;
+        break;
+      case "checksCurrQuantity":
+        answer = terminal.callCheckCurrQuantity(pairs.get(0)[0]);
+        op = Operation.LOOKUP;
+        break;
+      case "queryLocation":
+      case "queryPrice":
+      case "querySection":
+      case "queryQuantity":
+      case "queryThreshold":
+        answer = terminal.callQuery(action);
+        op = Operation.LOOKUP;
+        break;
+      default:
+        return false;
+    }
+    recorder.record(op, start);
+    if (verbose) {
+      System.out.println(key + " " + action + ": " + answer);
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether every product an event names is in the store (or, for a receiver scanning, in
+   * its new shipment), as the windows check before they let a worker act on a UPC.
+   */
+  private static boolean knownProducts(WorkerButtonManager terminal, String action,
+      List<String[]> pairs) {
+    switch (action) {
+      case "addToCart":
+      case "changeQuantity":
+      case "addToSaleCart":
+      case "editPendingOrder":
+      case "changeDefaultQuantity":
+      case "changeProductLocation":
+      case "checkLocation":
+      case "checkCost":
+      case "checksCurrQuantity":
+        if (pairs.isEmpty()) {
+          return false;
+        }
+        for (String[] pair : pairs) {
+          if (!terminal.callCheckUPCValid(pair[0])
+              && !(action.equals("addToCart") && terminal.callIsInNewItems(pair[0]))) {
+            return false;
+          }
+        }
+        return true;
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * Signs a worker of a script in at a terminal of its own.
+   *
+   * @return false if there is no such worker or it is already signed in
+   */
+  private boolean signIn(String workerType, String id, Map<String, WorkerButtonManager> terminals) {
+    Session session = store.signIn(workerType, id);
+    if (session == null) {
+      return false;
+    }
+    terminals.put(workerType + " " + id, terminal(session));
+    return true;
+  }
+
+  /**
+   * Returns the pairs of an object of a script, such as <<14100089001,2>,<21000611614,4>>.
+   */
+  private static List<String[]> pairs(String object) {
+    List<String[]> pairs = new ArrayList<>();
+    String inside = object.replaceAll("^<+|>+$", "");
+    if (!inside.isEmpty()) {
+      for (String pair : inside.split(">,<")) {
+        pairs.add(pair.split(","));
+      }
+    }
+    return pairs;
+  }
+
+  private static CashierButtonManager cashier(WorkerButtonManager terminal) {
+    return (CashierButtonManager) terminal;
+  }
+
+  private static ReceiverButtonManager receiver(WorkerButtonManager terminal) {
+    return (ReceiverButtonManager) terminal;
+  }
+
+  private static ReshelverButtonManager reshelver(WorkerButtonManager terminal) {
+    return (ReshelverButtonManager) terminal;
+  }
+
+  private static ManagerButtonManager manager(WorkerButtonManager terminal) {
+    return (ManagerButtonManager) terminal;
+  }
+
+  /**
+   * Returns the button manager for the terminal of a session, of the kind of its worker.
+   */
+  private WorkerButtonManager terminal(Session session) {
+    switch (session.getWorker().getWorkerType()) {
+      case "Manager":
+        return store.getManagerBM(session);
+      case "Cashier":
+        return store.getCashierBM(session);
+      case "Receiver":
+        return store.getReceiverBM(session);
+      default:
+        return store.getReshelverBM(session);
+    }
+  }
+
+  // RANDOM =======================================================================================
+
+  /**
+   * Signs every worker of the store in at a terminal of its own and has each of them do random
+   * work of their kind on a thread of its own, until each has done eventsPerTerminal events.
+   * Reshelvers then keep shelving what is received and returned until every other terminal is done
+   * and the storage room is empty, as the store's reshelvers would. The store must be set up or
+   * read already.
+   *
+   * @param eventsPerTerminal the number of events each terminal does
+   * @param seed the seed of the random events; each terminal gets its own stream from it
+   * @return the latencies and counts of the events of every terminal
+   */
+  Recorder run(final long eventsPerTerminal, long seed) {
+    upcs = store.inventory.getUpcs();
+    List<Session> sessions = new ArrayList<>();
+    for (Worker worker : store.workers) {
+      Session session = store.signIn(worker.getWorkerType(), worker.id);
+      if (session != null) {
+        sessions.add(session);
+      }
+    }
+    Recorder all = new Recorder();
+    if (sessions.isEmpty() || upcs.isEmpty()) {
+      return all;
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(sessions.size());
+    List<Future<Recorder>> done = new ArrayList<>();
+    List<WorkerButtonManager> terminals = new ArrayList<>();
+    int others = 0;
+    for (Session session : sessions) {
+      WorkerButtonManager terminal = terminal(session);
+      terminals.add(terminal);
+      if (!(terminal instanceof ReshelverButtonManager)) {
+        others++;
+      }
+    }
+    final AtomicInteger working = new AtomicInteger(others);
+    for (int i = 0; i < sessions.size(); i++) {
+      final WorkerButtonManager terminal = terminals.get(i);
+      final Random random = new Random(seed + i);
+      done.add(pool.submit(new Callable<Recorder>() {
+        public Recorder call() {
+          Recorder recorder = new Recorder();
+          while (recorder.events + recorder.failed < eventsPerTerminal) {
+            try {
+              randomEvents(terminal, random, recorder);
+            } catch (IOException | ParseException | RuntimeException e) {
+              recorder.failed++;
+              if (verbose) {
+                System.out.println("Failed: " + e);
+              }
+            }
+          }
+          if (terminal instanceof ReshelverButtonManager) {
+            keepShelving((ReshelverButtonManager) terminal, working, recorder);
+          } else {
+            working.decrementAndGet();
+          }
+          terminal.callSetNotActive();
+          return recorder;
+        }
+      }));
+    }
+    for (Future<Recorder> future : done) {
+      try {
+        all.add(future.get());
+      } catch (ExecutionException e) {
+        e.getCause().printStackTrace();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    pool.shutdown();
+    return all;
+  }
+
+  /**
+   * Has a reshelver that has done its own events shelve whatever is in the storage room until the
+   * other terminals are done and the storage room is empty.
+   *
+   * @param terminal the terminal of the reshelver
+   * @param working the number of other terminals still doing their events
+   * @param recorder the latencies and counts of the events of the terminal
+   */
+  private void keepShelving(ReshelverButtonManager terminal, AtomicInteger working,
+      Recorder recorder) {
+    while (working.get() > 0 || store.inventory.storedLoadCount() > 0) {
+      if (store.inventory.storedLoadCount() == 0) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        continue;
+      }
+      long start = System.nanoTime();
+      try {
+        terminal.callReshelvesCart();
+        recorder.record(Operation.RESHELVE, start);
+      } catch (IOException | RuntimeException e) {
+        recorder.failed++;
+        if (verbose) {
+          System.out.println("Failed: " + e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Does a few random events of the kind of worker at a terminal.
+   */
+  private void randomEvents(WorkerButtonManager terminal, Random random, Recorder recorder)
+      throws IOException, ParseException {
+    if (terminal instanceof CashierButtonManager) {
+      randomSale((CashierButtonManager) terminal, random, recorder);
+    } else if (terminal instanceof ReceiverButtonManager) {
+      randomDelivery((ReceiverButtonManager) terminal, random, recorder);
+    } else if (terminal instanceof ReshelverButtonManager) {
+      randomShelving((ReshelverButtonManager) terminal, random, recorder);
+    } else {
+      randomManagement((ManagerButtonManager) terminal, random, recorder);
+    }
+  }
+
+  /**
+   * A cashier scans a cart of one to eight products, sometimes changes a quantity, and checks the
+   * cart out, or takes it back as a return one time in twenty.
+   */
+  private void randomSale(CashierButtonManager terminal, Random random, Recorder recorder)
+      throws IOException {
+    int lines = 1 + random.nextInt(8);
+    String upc = null;
+    for (int i = 0; i < lines; i++) {
+      upc = randomUpc(random);
+      long start = System.nanoTime();
+      terminal.callAddToCart(upc, 1 + random.nextInt(3));
+      recorder.record(Operation.SCAN, start);
+    }
+    if (random.nextInt(10) == 0) {
+      long start = System.nanoTime();
+      terminal.callChangeQuantity(upc, 1 + random.nextInt(2));
+      recorder.record(Operation.CHANGE_QUANTITY, start);
+    }
+    long start = System.nanoTime();
+    if (random.nextInt(20) == 0) {
+      terminal.callCustomerReturn();
+      recorder.record(Operation.RETURN, start);
+    } else {
+      String answer = terminal.callCheckOut();
+      recorder.record(Operation.CHECKOUT, start);
+      if (answer.startsWith(REFUSED)) {
+        recorder.refused++;
+        terminal.callClearCart();
+      }
+    }
+  }
+
+  /**
+   * A receiver scans one to five products of a delivery and puts them in the storage room.
+   */
+  private void randomDelivery(ReceiverButtonManager terminal, Random random, Recorder recorder) {
+    int lines = 1 + random.nextInt(5);
+    for (int i = 0; i < lines; i++) {
+      long start = System.nanoTime();
+      terminal.callAddToCart(randomUpc(random), 12 + random.nextInt(37));
+      recorder.record(Operation.SCAN, start);
+    }
+    long start = System.nanoTime();
+    terminal.callCheckout();
+    recorder.record(Operation.RECEIVE, start);
+  }
+
+  /**
+   * A reshelver looks up where a product goes, and every few products shelves what is waiting in
+   * the storage room.
+   */
+  private void randomShelving(ReshelverButtonManager terminal, Random random, Recorder recorder)
+      throws IOException {
+    long start = System.nanoTime();
+    terminal.callCheckLocation(randomUpc(random));
+    recorder.record(Operation.LOOKUP, start);
+    if (random.nextInt(4) == 0) {
+      start = System.nanoTime();
+      terminal.callReshelvesCart();
+      recorder.record(Operation.RESHELVE, start);
+    }
+  }
+
+  /**
+   * A manager mostly checks stock, and sometimes puts a product on sale for the next hour at a
+   * tenth off or sends the orders that are waiting.
+   */
+  private void randomManagement(ManagerButtonManager terminal, Random random, Recorder recorder)
+      throws IOException {
+    String upc = randomUpc(random);
+    int choice = random.nextInt(10);
+    long start = System.nanoTime();
+    if (choice < 6) {
+      terminal.callCheckCurrQuantity(upc);
+      recorder.record(Operation.LOOKUP, start);
+    } else if (choice < 8) {
+      Product p = store.inventory.getProduct(upc);
+      if (p == null) {
+        return;
+      }
+      LocalDateTime now = LocalDateTime.now().withNano(0);
+      terminal.callAddToPriceCart(upc, p.getCurrPrice() * 0.9 / 100);
+      terminal.callPutOnSale(now.toString(), now.plusHours(1).toString());
+      terminal.callClearPriceCart();
+      recorder.record(Operation.SALE, start);
+    } else {
+      terminal.callSendOrders();
+      recorder.record(Operation.SEND_ORDERS, start);
+    }
+  }
+
+  private String randomUpc(Random random) {
+    return upcs.get(random.nextInt(upcs.size()));
+  }
+
+  // REPORT =======================================================================================
+
+  /**
+   * Prints how many events ran per second and the latency of each kind of operation.
+   *
+   * @param recorder the latencies and counts of the events
+   * @param nanos how long the events took altogether
+   */
+  static void report(Recorder recorder, long nanos) {
+    double seconds = nanos / 1e9;
+    System.out.println(String.format("%d events in %.3f s, %.0f events/s (refused %d, failed %d,"
+            + " skipped %d)", recorder.events, seconds, recorder.events / Math.max(seconds, 1e-9),
+        recorder.refused, recorder.failed, recorder.skipped));
+    System.out.println(String.format("%-16s %10s %10s %10s %10s %10s %10s %10s", "operation",
+        "count", "mean us", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us"));
+    for (Map.Entry<Operation, LatencyHistogram> entry : recorder.latencies.entrySet()) {
+      LatencyHistogram h = entry.getValue();
+      System.out.println(String.format("%-16s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f",
+          entry.getKey(), h.count(), h.mean() / 1e3, h.percentile(0.5) / 1e3,
+          h.percentile(0.9) / 1e3, h.percentile(0.99) / 1e3, h.percentile(0.999) / 1e3,
+          h.max() / 1e3));
+    }
+  }
+
+  /**
+   * Runs a simulation of the store set up from InitialItems.csv and InitialWorkers.csv in the
+   * current directory and reports it. A script keeps the files and log of the store in the
+   * current directory, as the store itself does. Random events keep them in a new scratch
+   * directory, so they never change the files of the real store.
+   *
+   * @param args either the path of a script of events, or "random", the number of events per
+   * terminal (100000 if not given) and a seed; add "-v" to print the answer of every event, and
+   * "-d" and a directory to keep the files of the store in that directory instead.
+   * @throws IOException Throws an IOException.
+   */
+  public static void main(String[] args) throws IOException {
+    List<String> words = new ArrayList<>();
+    boolean verbose = false;
+    File directory = null;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-v")) {
+        verbose = true;
+      } else if (args[i].equals("-d") && i + 1 < args.length) {
+        directory = new File(args[++i]);
+      } else {
+        words.add(args[i]);
+      }
+    }
+    if (words.isEmpty()) {
+      System.out.println(
+          "Usage: StoreSimulation [-v] [-d directory] events.txt | random [events] [seed]");
+      return;
+    }
+    boolean random = words.get(0).equals("random");
+    if (random && directory == null) {
+      directory = Files.createTempDirectory("simulation").toFile();
+      System.out.println("Keeping the files of the store in " + directory);
+    }
+    if (directory != null) {
+      directory.mkdirs();
+      EventLog.setFile(new File(directory, "log.txt"));
+    }
+    Store store = new Store("simulation", "InitialItems.csv", "InitialWorkers.csv", directory);
+    StoreSimulation simulation = new StoreSimulation(store, verbose);
+    Recorder recorder;
+    long start;
+    if (random) {
+      long events = words.size() > 1 ? Long.parseLong(words.get(1)) : 100000;
+      long seed = words.size() > 2 ? Long.parseLong(words.get(2)) : 0;
+      if (store.hasBeenSetUp()) {
+        store.readStore();
+      } else {
+        store.initialSetUp();
+      }
+      start = System.nanoTime();
+      recorder = simulation.run(events, seed);
+      report(recorder, System.nanoTime() - start);
+      System.out.println("loads left in the storage room: " + store.inventory.storedLoadCount());
+      store.closeStore();
+    } else {
+      start = System.nanoTime();
+      recorder = simulation.replay(words.get(0));
+      report(recorder, System.nanoTime() - start);
+    }
+  }
+}
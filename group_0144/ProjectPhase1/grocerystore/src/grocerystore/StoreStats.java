@@ -0,0 +1,82 @@
+package grocerystore;
+
+import javax.management.ObjectName;
+
+/**
+ * The size of an open store, shown over JMX as grocerystore:type=Store,name=&lt;store name&gt; from
+ * when the store is set up or read until it is closed. Every value is read from the store when it
+ * is asked for, from counts the store keeps up to date, so reading one does not go over the
+ * products or the history.
+ */
+public final class StoreStats implements StoreStatsMBean {
+
+  private final Store store;
+  private ObjectName name;
+
+  private StoreStats(Store store) {
+    this.store = store;
+  }
+
+  /**
+   * Shows the stats of a store over JMX.
+   *
+   * @param store the store
+   * @return the stats, to be unregistered when the store is closed
+   */
+  static StoreStats register(Store store) {
+    StoreStats stats = new StoreStats(store);
+    stats.name = OperationMetrics.register(stats,
+        "grocerystore:type=Store,name=" + ObjectName.quote(store.storeName));
+    return stats;
+  }
+
+  /**
+   * Stops showing the stats of the store over JMX.
+   */
+  void unregister() {
+    OperationMetrics.unregister(name);
+    name = null;
+  }
+
+  /**
+   * Returns the history the workers of the store record to, which after the store is read is the
+   * one read with them rather than the store's own.
+   */
+  private History history() {
+    Manager manager = store.mainManager;
+    return manager == null ? store.storeHis : manager.history;
+  }
+
+  @Override
+  public int getInventorySize() {
+    Inventory inventory = store.inventory;
+    return inventory == null ? 0 : inventory.size();
+  }
+
+  @Override
+  public int getBackOrderCount() {
+    Inventory inventory = store.inventory;
+    return inventory == null ? 0 : inventory.backOrderCount();
+  }
+
+  @Override
+  public int getPendingOrderCount() {
+    Inventory inventory = store.inventory;
+    return inventory == null ? 0 : inventory.pendingOrderCount();
+  }
+
+  @Override
+  public int getHistoryEventCount() {
+    return history().eventCount();
+  }
+
+  @Override
+  public int getProfitEntryCount() {
+    return history().profitCount();
+  }
+
+  @Override
+  public int getSignedInCount() {
+    return store.sessions.sessions().size();
+  }
+}
@@ -0,0 +1,37 @@
+package grocerystore;
+
+/**
+ * The JMX view of the size of a store while it is open.
+ */
+public interface StoreStatsMBean {
+
+  /**
+   * @return the number of products in the store, in stock or backordered
+   */
+  int getInventorySize();
+
+  /**
+   * @return the number of backordered products
+   */
+  int getBackOrderCount();
+
+  /**
+   * @return the number of products with a pending order waiting for the manager
+   */
+  int getPendingOrderCount();
+
+  /**
+   * @return the number of sales, orders, reshelvings, price changes and discounts in the history
+   */
+  int getHistoryEventCount();
+
+  /**
+   * @return the number of checkouts and returns in the profit history
+   */
+  int getProfitEntryCount();
+
+  /**
+   * @return the number of workers signed in at a terminal
+   */
+  int getSignedInCount();
+}
@@ -0,0 +1,288 @@
+package grocerystore;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A UpcIndex maps UPCs, parsed into primitive longs, to values (usually the Product slot of that
+ * UPC). It is an open-addressing hash table with linear probing, so a lookup hashes one long and
+ * usually looks at a single slot, without making any objects. The UPC 0 is used to mark an empty
+ * slot and can never be stored.
+ *
+ * Lookups can run from many threads at once without locking: a lookup reads the table
+ * optimistically and only takes the read lock if a change was made to the table while it was
+ * probing. Changes are made one at a time under the write lock.
+ *
+ * @param <V> the type of the values
+ */
+class UpcIndex<V> implements Serializable {
+
+  /**
+   * The most digits a UPC can have and still fit in a long.
+   */
+  private static final int MAX_DIGITS = 18;
+  private static final int INITIAL_CAPACITY = 64;
+
+  /**
+   * keys : the UPCs of the slots, 0 if the slot is empty
+   * values : the values of the slots
+   * size : the number of UPCs in this index
+   * lock : guards changes to the table
+   */
+  private long[] keys;
+  private Object[] values;
+  private int size;
+  private transient StampedLock lock = new StampedLock();
+
+  /**
+   * Creates an empty index.
+   */
+  UpcIndex() {
+    keys = new long[INITIAL_CAPACITY];
+    values = new Object[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Parses a UPC into a long without making any objects.
+   *
+   * @param upc the UPC as scanned or typed in
+   * @param checkDigit true if the last digit must be a valid GTIN check digit
+   * @return the UPC as a long, or -1 if it is not all digits, is too long, is 0, or (when
+   * checkDigit is true) its check digit is wrong.
+   */
+  static long parse(String upc, boolean checkDigit) {
+    int length = upc.length();
+    if (length == 0 || length > MAX_DIGITS) {
+      return -1;
+    }
+    long value = 0;
+    for (int i = 0; i < length; i++) {
+      char c = upc.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    if (value == 0 || (checkDigit && !hasValidCheckDigit(value))) {
+      return -1;
+    }
+    return value;
+  }
+
+  /**
+   * Returns whether the last digit of upc is the GTIN (UPC-A, EAN-13, ...) check digit of the
+   * digits before it. Leading zeros make no difference to the check digit.
+   *
+   * @param upc the UPC to check
+   * @return true if the check digit is valid
+   */
+  static boolean hasValidCheckDigit(long upc) {
+    int check = (int) (upc % 10);
+    long rest = upc / 10;
+    int sum = 0;
+    boolean timesThree = true;
+    while (rest > 0) {
+      int digit = (int) (rest % 10);
+      sum += timesThree ? 3 * digit : digit;
+      timesThree = !timesThree;
+      rest /= 10;
+    }
+    return (10 - sum % 10) % 10 == check;
+  }
+
+  /**
+   * Returns the slot a UPC hashes to in a table of the given capacity.
+   */
+  private static int slot(long upc, int capacity) {
+    long mixed = upc * 0x9E3779B97F4A7C15L;
+    return (int) (mixed ^ (mixed >>> 32)) & (capacity - 1);
+  }
+
+  /**
+   * Returns the value of a UPC.
+   *
+   * @param upc the UPC
+   * @return the value of the UPC, or null if it is not in this index
+   */
+  @SuppressWarnings("unchecked")
+  V get(long upc) {
+    long stamp = lock.tryOptimisticRead();
+    Object value = probe(upc);
+    if (!lock.validate(stamp)) {
+      //the table changed while we were looking, so look again while nothing can change it.
+      stamp = lock.readLock();
+      try {
+        value = probe(upc);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return (V) value;
+  }
+
+  /**
+   * Looks a UPC up in the table. The table may be changing while this runs, in which case the
+   * answer is thrown away by get, so this only has to make sure it does not fail or loop forever.
+   */
+  private Object probe(long upc) {
+    long[] keys = this.keys;
+    Object[] values = this.values;
+    if (keys.length != values.length) {
+      return null;
+    }
+    int mask = keys.length - 1;
+    int i = slot(upc, keys.length);
+    for (int probes = 0; probes < keys.length; probes++) {
+      long key = keys[i];
+      if (key == upc) {
+        return values[i];
+      } else if (key == 0) {
+        return null;
+      }
+      i = (i + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * Returns whether a UPC is in this index.
+   *
+   * @param upc the UPC
+   * @return true if the UPC is in this index
+   */
+  boolean contains(long upc) {
+    return get(upc) != null;
+  }
+
+  /**
+   * Maps a UPC to a value, replacing the value it had before.
+   *
+   * @param upc the UPC, which cannot be 0
+   * @param value the value, which cannot be null
+   */
+  void put(long upc, V value) {
+    long stamp = lock.writeLock();
+    try {
+      insert(upc, value);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Maps a UPC to a value while holding the write lock.
+   */
+  private void insert(long upc, V value) {
+    if ((size + 1) * 4 > keys.length * 3) {
+      resize(keys.length * 2);
+    }
+    int mask = keys.length - 1;
+    int i = slot(upc, keys.length);
+    while (keys[i] != 0 && keys[i] != upc) {
+      i = (i + 1) & mask;
+    }
+    if (keys[i] == 0) {
+      size += 1;
+    }
+    values[i] = value;
+    keys[i] = upc;
+  }
+
+  /**
+   * Removes a UPC from this index. The UPCs after it in its run of slots are shifted back so that
+   * no tombstones are left behind.
+   *
+   * @param upc the UPC
+   */
+  void remove(long upc) {
+    long stamp = lock.writeLock();
+    try {
+      delete(upc);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Removes a UPC from this index while holding the write lock.
+   */
+  private void delete(long upc) {
+    int mask = keys.length - 1;
+    int i = slot(upc, keys.length);
+    while (keys[i] != upc) {
+      if (keys[i] == 0) {
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    size -= 1;
+    int hole = i;
+    for (int j = (hole + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+      int home = slot(keys[j], keys.length);
+      //keys[j] can fill the hole if the hole lies between its home slot and j.
+      if (((j - home) & mask) >= ((j - hole) & mask)) {
+        keys[hole] = keys[j];
+        values[hole] = values[j];
+        hole = j;
+      }
+    }
+    keys[hole] = 0;
+    values[hole] = null;
+  }
+
+  /**
+   * Removes every UPC from this index.
+   */
+  void clear() {
+    long stamp = lock.writeLock();
+    try {
+      keys = new long[INITIAL_CAPACITY];
+      values = new Object[INITIAL_CAPACITY];
+      size = 0;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Returns the number of UPCs in this index.
+   *
+   * @return the number of UPCs
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Moves every UPC into a table of a new capacity.
+   */
+  private void resize(int capacity) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    long[] newKeys = new long[capacity];
+    Object[] newValues = new Object[capacity];
+    int mask = capacity - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldKeys[j] != 0) {
+        int i = slot(oldKeys[j], capacity);
+        while (newKeys[i] != 0) {
+          i = (i + 1) & mask;
+        }
+        newKeys[i] = oldKeys[j];
+        newValues[i] = oldValues[j];
+      }
+    }
+    values = newValues;
+    keys = newKeys;
+  }
+
+  /**
+   * Makes a new lock after the table is deserialized.
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    lock = new StampedLock();
+  }
+}
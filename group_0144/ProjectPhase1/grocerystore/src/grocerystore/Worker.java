@@ -22,8 +22,8 @@ abstract public class Worker implements Serializable {
    */
   String name;
   String id;
-  boolean active; // If this Worker has an active working status
-  Map<Product, Integer> cart = new LinkedHashMap<Product, Integer>();
+  volatile boolean active; // If this Worker has an active working status
+  Cart cart = new Cart();
   History history;
   private String workerType;
 
@@ -76,7 +76,7 @@ abstract public class Worker implements Serializable {
    * Instantiate a cart for this Worker.
    */
   private void createCart() {
-    cart = new LinkedHashMap<>();
+    cart = new Cart();
   }
 
   /**
@@ -123,12 +123,7 @@ abstract public class Worker implements Serializable {
   public void addToCart(String upc, Integer q, Inventory inventory) {
     Product p = inventory.getProduct(upc);
     if (q >= 1 && q <= p.getStock()) {
-      if (!checkInCart(p)) {
-        cart.put(p, q);
-      } else {
-        Integer newQ = cart.get(p) + q;
-        cart.put(p, newQ);
-      }
+      cart.add(p, q);
     }
   }
 
@@ -158,22 +153,13 @@ abstract public class Worker implements Serializable {
     return cart;
   }
 
-  /**
-   * Return whether the product is in the cart
-   * @param p the product to check
-   * @return whether the product is in the cart
-   */
-  private boolean checkInCart(Product p) {
-    return cart.containsKey(p);
-  }
-
   /**
    * Checks the cost per unit for a Product.
    *
    * @param upc The UPC of the requested Product.
-   * @return A double variable showing the cost per unit for the requested Product.
+   * @return The cost per unit for the requested Product, in cents.
    */
-  public Double checkCost(String upc, Inventory inventory) {
+  public long checkCost(String upc, Inventory inventory) {
     return inventory.getProduct(upc).costPerQ;
   }
 
@@ -208,28 +194,26 @@ abstract public class Worker implements Serializable {
    * @param q The number of items of the Product in the cart.
    */
   public void changeQuantity(String upc, int q, Inventory inventory) {
-    Product p = inventory.getProduct(upc);
-    cart.remove(p);
-    if (q > 0) {
-      cart.put(inventory.getProduct(upc), q);
-    }
+    cart.set(inventory.getProduct(upc), q);
   }
 
   /**
    * Checks the regular price changes of all products since inital set up.
    *
-   * @return A map of the product and its value as another map of dates and prices.
+   * @return A map of the name and UPC of the product and its value as another map of dates and
+   * prices.
    */
-  public Map<Product, Map<String, Double>> checkRegPriceHistory() {
+  public Map<String, Map<String, Long>> checkRegPriceHistory() {
     return history.getRegPriceHistory();
   }
 
   /**
    * Check the on-sale price changes of all products that have been on sale.
    *
-   * @return A map of the product and its value as another map of dates and prices.
+   * @return A map of the name and UPC of the product and its value as another map of dates and
+   * prices.
    */
-  public Map<Product, Map<String, Double>> checkSalePriceHistory() {
+  public Map<String, Map<String, Long>> checkSalePriceHistory() {
     return history.getSalePriceHistory();
   }
 
@@ -285,8 +269,7 @@ abstract public class Worker implements Serializable {
     Map<String, String> answers = new LinkedHashMap<>();
     Set<Product> pList = cart.keySet();
     for (Product p : pList) {
-      Double n = p.getCurrPrice();
-      answers.put(p.getUPC(), n.toString());
+      answers.put(p.getUPC(), Money.format(p.getCurrPrice()));
     }
     return answers;
   }
@@ -1,7 +1,9 @@
 package grocerystore.buttonManager;
 
 import grocerystore.Cashier;
+import grocerystore.DisplayManager;
 import grocerystore.Inventory;
+import grocerystore.Session;
 import java.io.IOException;
 
 /**
@@ -23,16 +25,34 @@ public class CashierButtonManager extends WorkerButtonManager{
     this.cashier = cashier;
   }
 
+  /**
+   * Sets up a CashierButtonManager for the terminal a Cashier signed in at.
+   *
+   * @param session the session of the Cashier
+   * @param inventory the inventory
+   */
+  public CashierButtonManager(Session session, Inventory inventory) {
+    super(session, inventory);
+    this.cashier = (Cashier) session.getWorker();
+  }
+
   /**
    * Calls the checkout method in <code>Cashier</code>.
    *
-   * @return A string shows all items in a cart have been checked out.
+   * @return A string shows whether the items in a cart have been checked out.
    * @throws IOException Throws an IOException.
    */
   public String callCheckOut() throws IOException
   {
-    cashier.checkout(inventory);
-    return "All items in the cart are checked out.";
+    long startNanos = System.nanoTime();
+    try {
+      if (!cashier.checkout(inventory)) {
+        return "There is not enough stock left for this cart; nothing was checked out.";
+      }
+      return "All items in the cart are checked out.";
+    } finally {
+      record("callCheckOut", startNanos);
+    }
   }
 
   /**
@@ -43,8 +63,13 @@ public class CashierButtonManager extends WorkerButtonManager{
    */
   public String callCustomerReturn() throws IOException
   {
-    cashier.customerReturn(inventory);
-    return "Items returned.";
+    long startNanos = System.nanoTime();
+    try {
+      cashier.customerReturn(inventory);
+      return "Items returned.";
+    } finally {
+      record("callCustomerReturn", startNanos);
+    }
   }
 
   /**
@@ -53,18 +78,25 @@ public class CashierButtonManager extends WorkerButtonManager{
    * @param memberId A member unique identifier will be assigned to this new member.
    * @param fullName The full name of this new member.
    * @param phoneNum The phone number of this new member.
-   * @return A string shows a new member has been registered.
+   * @return A string shows whether a new member has been registered.
    */
   public String callAddNewMember(String memberId, String fullName, String phoneNum)
   {
-    String [] name = fullName.split(" ");
-    String[] memberInfo = new String[4];
-    memberInfo[0] = memberId;
-    memberInfo[1] = name[0];
-    memberInfo[2] = name[1];
-    memberInfo[3] = phoneNum;
-    inventory.addOneMember(memberId, memberInfo);
-    return "Added one new member.";
+    long startNanos = System.nanoTime();
+    try {
+      String [] name = fullName.split(" ");
+      String[] memberInfo = new String[4];
+      memberInfo[0] = memberId;
+      memberInfo[1] = name[0];
+      memberInfo[2] = name[1];
+      memberInfo[3] = phoneNum;
+      if (!inventory.addOneMember(memberId, memberInfo)) {
+        return "Member ids must be numbers; the member was not added.";
+      }
+      return "Added one new member.";
+    } finally {
+      record("callAddNewMember", startNanos);
+    }
   }
 
   /**
@@ -74,12 +106,17 @@ public class CashierButtonManager extends WorkerButtonManager{
    */
   public String callMemberDiscount(String memberId)
   {
-    if(inventory.isAMember(memberId)){
-      cashier.hasMembershipStatus(memberId, inventory);
-      return "Membership discounts have been applied to the cart, "
-          + "please click Get Cart Total button to see the discounted prices";
-    }else{
-      return "This customer is not a member; membership discount will not be applied to this cart";
+    long startNanos = System.nanoTime();
+    try {
+      if(cashier.hasMembershipStatus(memberId, inventory)){
+        return "Membership discounts have been applied to the cart, "
+            + "please click Get Cart Total button to see the discounted prices";
+      }else{
+        return "This customer is not a member; membership discount will not be applied to this "
+            + "cart";
+      }
+    } finally {
+      record("callMemberDiscount", startNanos);
     }
   }
 
@@ -89,7 +126,12 @@ public class CashierButtonManager extends WorkerButtonManager{
    */
   public String callGetCartTotal()
   {
-    return "The cart total price is: " + cashier.getCartTotal();
+    long startNanos = System.nanoTime();
+    try {
+      return "The cart total price is: " + DisplayManager.displayMoney(cashier.getCartTotal());
+    } finally {
+      record("callGetCartTotal", startNanos);
+    }
   }
 }
 
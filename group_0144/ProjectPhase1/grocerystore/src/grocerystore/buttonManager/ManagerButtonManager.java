@@ -3,9 +3,11 @@ package grocerystore.buttonManager;
 import grocerystore.DisplayManager;
 import grocerystore.Inventory;
 import grocerystore.Manager;
-import java.io.FileNotFoundException;
+import grocerystore.Product;
+import grocerystore.Session;
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.List;
 
 /**
  * When button that belongs to the manager is pressed, one of the methods in this class is called to
@@ -26,18 +28,39 @@ public class ManagerButtonManager extends WorkerButtonManager {
     manager = m;
   }
 
+  /**
+   * Create a ManagerButtonManager for the terminal a manager signed in at.
+   *
+   * @param session the session of the manager
+   * @param inventory the inventory
+   */
+  public ManagerButtonManager(Session session, Inventory inventory) {
+    super(session, inventory);
+    manager = (Manager) session.getWorker();
+  }
+
   /**
    * Clears the sale cart
    *
    * @return string that says the sale cart has been cleared
    */
   public String callClearPriceCart() {
-    manager.clearSaleCart();
-    return "Sale Cart has been cleared";
+    long startNanos = System.nanoTime();
+    try {
+      manager.clearSaleCart();
+      return "Sale Cart has been cleared";
+    } finally {
+      record("callClearPriceCart", startNanos);
+    }
   }
 
   public String callGetPriceCart() {
-    return DisplayManager.displayMap(manager.getSaleCart());
+    long startNanos = System.nanoTime();
+    try {
+      return DisplayManager.displayMoneyMap(manager.getSaleCart());
+    } finally {
+      record("callGetPriceCart", startNanos);
+    }
   }
 
   /**
@@ -45,7 +68,12 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return True if saleCart of manager is empty.
    */
   public boolean callIsSaleCartEmpty() {
-    return manager.isSaleCartEmpty();
+    long startNanos = System.nanoTime();
+    try {
+      return manager.isSaleCartEmpty();
+    } finally {
+      record("callIsSaleCartEmpty", startNanos);
+    }
   }
 
   /**
@@ -56,7 +84,12 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return string of how much profit was made at when
    */
   public String callCheckProfitHistory(String start, String end) {
-    return DisplayManager.displayMap(manager.checkProfitHistory(start, end));
+    long startNanos = System.nanoTime();
+    try {
+      return DisplayManager.displayMoneyMap(manager.checkProfitHistory(start, end));
+    } finally {
+      record("callCheckProfitHistory", startNanos);
+    }
   }
 
   /**
@@ -67,7 +100,12 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return string of how much was made in the time period
    */
   public String callCheckTotalProfit(String start, String end) {
-    return manager.checkTotalProfit(manager.checkProfitHistory(start, end)).toString();
+    long startNanos = System.nanoTime();
+    try {
+      return DisplayManager.displayMoney(manager.checkTotalProfit(start, end));
+    } finally {
+      record("callCheckTotalProfit", startNanos);
+    }
   }
 
   /**
@@ -78,8 +116,13 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return string notifying product with it's new sale price has been added to the sale cart
    */
   public String callAddToPriceCart(String upc, Double price) {
-    manager.addToSaleCart(upc, price, inventory);
-    return "Added " + upc + " with the price " + price + " to the sale cart";
+    long startNanos = System.nanoTime();
+    try {
+      manager.addToSaleCart(upc, price, inventory);
+      return "Added " + upc + " with the price " + price + " to the sale cart";
+    } finally {
+      record("callAddToPriceCart", startNanos);
+    }
   }
 
   /**
@@ -89,8 +132,13 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return A string shows the the product has been removed from price cart.
    */
   public String callRemoveFromPriceCart(String upc) {
-    manager.removeFromPriceCart(upc, inventory);
-    return "Removed " + upc + " from price cart.";
+    long startNanos = System.nanoTime();
+    try {
+      manager.removeFromPriceCart(upc, inventory);
+      return "Removed " + upc + " from price cart.";
+    } finally {
+      record("callRemoveFromPriceCart", startNanos);
+    }
   }
 
   /**
@@ -99,7 +147,12 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return the regular price history
    */
   public String callCheckRegPriceHistory() {
-    return DisplayManager.displayPriceHistory(manager.checkRegPriceHistory());
+    long startNanos = System.nanoTime();
+    try {
+      return DisplayManager.displayPriceHistory(manager.checkRegPriceHistory());
+    } finally {
+      record("callCheckRegPriceHistory", startNanos);
+    }
   }
 
   /**
@@ -108,7 +161,12 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return the sale price history
    */
   public String callCheckSalePriceHistory() {
-    return DisplayManager.displayPriceHistory(manager.checkSalePriceHistory());
+    long startNanos = System.nanoTime();
+    try {
+      return DisplayManager.displayPriceHistory(manager.checkSalePriceHistory());
+    } finally {
+      record("callCheckSalePriceHistory", startNanos);
+    }
   }
 
 
@@ -117,11 +175,21 @@ public class ManagerButtonManager extends WorkerButtonManager {
    *
    * @param start start date
    * @param end end date
-   * @return string notifying the items in the cart have been set on sale
+   * @return string notifying the items in the cart have been set on sale, and which were not
    */
   public String callPutOnSale(String start, String end) throws IOException {
-    manager.putOnSale(start, end);
-    return "Items in the cart have been put on sale from " + start + " to " + end;
+    long startNanos = System.nanoTime();
+    try {
+      List<Product> overlapping = manager.putOnSale(start, end);
+      String message = "Items in the cart have been put on sale from " + start + " to " + end;
+      if (!overlapping.isEmpty()) {
+        message += "\nThese items already have a sale at that time and were left out:\n"
+            + DisplayManager.displayArray(overlapping);
+      }
+      return message;
+    } finally {
+      record("callPutOnSale", startNanos);
+    }
   }
 
   /**
@@ -130,7 +198,12 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return string of what is on sale
    */
   public String callCheckOnSale() {
-    return DisplayManager.displayArray(manager.checkOnSale());
+    long startNanos = System.nanoTime();
+    try {
+      return DisplayManager.displayArray(manager.checkOnSale());
+    } finally {
+      record("callCheckOnSale", startNanos);
+    }
   }
 
   /**
@@ -140,7 +213,12 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return string of items in the aisle
    */
   public String callCheckAisleProducts(Integer aisle) {
-    return DisplayManager.displayArray(manager.checkAisleProducts(aisle, inventory));
+    long startNanos = System.nanoTime();
+    try {
+      return DisplayManager.displayArray(manager.checkAisleProducts(aisle, inventory));
+    } finally {
+      record("callCheckAisleProducts", startNanos);
+    }
   }
 
   /**
@@ -151,8 +229,13 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return string notifying the product;s location has been changed
    */
   public String callChangeProductLocation(String upc,Integer aisle) {
-    manager.changeProductLocation(upc, aisle, inventory);
-    return upc + " has been relocated to aisle " + aisle;
+    long startNanos = System.nanoTime();
+    try {
+      manager.changeProductLocation(upc, aisle, inventory);
+      return upc + " has been relocated to aisle " + aisle;
+    } finally {
+      record("callChangeProductLocation", startNanos);
+    }
   }
 
   /**
@@ -161,15 +244,25 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return string telling if there is or there is not any pending order
    */
   public String callCheckPendingOrders() {
-    if (manager.checkPendingOrders(inventory)) {
-      return "There are no pending orders";
-    } else {
-      return "There are pending orders";
+    long startNanos = System.nanoTime();
+    try {
+      if (manager.checkPendingOrders(inventory)) {
+        return "There are no pending orders";
+      } else {
+        return "There are pending orders";
+      }
+    } finally {
+      record("callCheckPendingOrders", startNanos);
     }
   }
 
   public String callGetPendingOrders() {
-    return DisplayManager.displayMap(manager.getPendingOrders());
+    long startNanos = System.nanoTime();
+    try {
+      return DisplayManager.displayMap(manager.getPendingOrders());
+    } finally {
+      record("callGetPendingOrders", startNanos);
+    }
   }
 
   /**
@@ -180,8 +273,13 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return string notifying the pending order of the product has been changed
    */
   public String callEditPendingOrder(String upc, Integer quantity) {
-    manager.editPendingOrder(upc, quantity, inventory);
-    return "Pending order of " + upc + " has been changed to " + quantity;
+    long startNanos = System.nanoTime();
+    try {
+      manager.editPendingOrder(upc, quantity, inventory);
+      return "Pending order of " + upc + " has been changed to " + quantity;
+    } finally {
+      record("callEditPendingOrder", startNanos);
+    }
   }
 
   /**
@@ -190,8 +288,13 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return string notifying the order has been sent
    */
   public String callSendOrders() throws IOException {
-    manager.sendOrders(inventory);
-    return "Orders have been sent";
+    long startNanos = System.nanoTime();
+    try {
+      manager.sendOrders(inventory);
+      return "Orders have been sent";
+    } finally {
+      record("callSendOrders", startNanos);
+    }
   }
 
   /**
@@ -200,8 +303,13 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return string notifying a back order file has been created
    */
   public String callCreateBackOrderFile() throws IOException {
-    manager.createBackOrderFile(inventory);
-    return "Back order file has been created";
+    long startNanos = System.nanoTime();
+    try {
+      manager.createBackOrderFile(inventory);
+      return "Back order file has been created";
+    } finally {
+      record("callCreateBackOrderFile", startNanos);
+    }
   }
 
   /**
@@ -212,8 +320,13 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return string notifying the default quantity of the product has been changed
    */
   public String callChangeDefaultQuantity(String upc, Integer quantity) {
-    manager.changeDefaultQuantity(upc, quantity, inventory);
-    return "Threshold quantity of " + upc + " has been changed to " + quantity;
+    long startNanos = System.nanoTime();
+    try {
+      manager.changeDefaultQuantity(upc, quantity, inventory);
+      return "Threshold quantity of " + upc + " has been changed to " + quantity;
+    } finally {
+      record("callChangeDefaultQuantity", startNanos);
+    }
   }
 
   /**
@@ -222,8 +335,13 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return string notifying the regular prices of the products have been changed
    */
   public String callChangeRegPrice() throws IOException, ParseException {
-    manager.changeRegPrice();
-    return "Regular prices of the products in the cart have been changed";
+    long startNanos = System.nanoTime();
+    try {
+      manager.changeRegPrice();
+      return "Regular prices of the products in the cart have been changed";
+    } finally {
+      record("callChangeRegPrice", startNanos);
+    }
   }
 
   /**
@@ -231,7 +349,12 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return String of workers and their performance measure
    */
   public String callCheckPerformance() {
-    return DisplayManager.displayMap(manager.checkPerformance());
+    long startNanos = System.nanoTime();
+    try {
+      return DisplayManager.displayMap(manager.checkPerformance());
+    } finally {
+      record("callCheckPerformance", startNanos);
+    }
   }
 
   /**
@@ -240,19 +363,29 @@ public class ManagerButtonManager extends WorkerButtonManager {
    * @return String notifying the members in the file have been added
    */
   public String callAddNewMembers(String filepath) {
+    long startNanos = System.nanoTime();
     try {
-      manager.addNewMembers(filepath, inventory);
-    } catch (FileNotFoundException e) {
-      System.err.println(e.getMessage());
+      try {
+        manager.addNewMembers(filepath, inventory);
+      } catch (IOException e) {
+        System.err.println(e.getMessage());
+      }
+      return "Members in the file have been added";
+    } finally {
+      record("callAddNewMembers", startNanos);
     }
-    return "Members in the file have been added";
   }
 
   public String callRemovePendingOrder(String upc) {
-    if (manager.removePendingOrder(upc, inventory)) {
-      return "Pending order for " + upc + " has been removed";
-    } else {
-      return upc + "does not have a pending order or there is none left in grocery store";
+    long startNanos = System.nanoTime();
+    try {
+      if (manager.removePendingOrder(upc, inventory)) {
+        return "Pending order for " + upc + " has been removed";
+      } else {
+        return upc + "does not have a pending order or there is none left in grocery store";
+      }
+    } finally {
+      record("callRemovePendingOrder", startNanos);
     }
   }
 
@@ -1,7 +1,7 @@
 package grocerystore.buttonManager;
 
 import grocerystore.*;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 
 /**
  * The ReceiverButtonManager receives input from the SignInPanel, LaunchPanel, WorkerPanel.
@@ -21,16 +21,36 @@ public class ReceiverButtonManager extends WorkerButtonManager {
       this.receiver = receiver;
   }
 
+  /**
+   * Sets up a ReceiverButtonManager for the terminal a Receiver signed in at.
+   *
+   * @param session the session of the Receiver
+   * @param inventory the inventory
+   */
+  public ReceiverButtonManager(Session session, Inventory inventory) {
+    super(session, inventory);
+    this.receiver = (Receiver) session.getWorker();
+  }
+
   /**
    * Calls the newShipment method.
    * @param filePath the filepath of the shipment data
    * @return a string that verifies adding of the new shipment
-   * @throws FileNotFoundException Throws a FileNotFoundException if the filePath is invalid.
+   * @throws IOException Throws an IOException if the file cannot be read.
    */
-  public String callNewShipment (String filePath) throws FileNotFoundException
+  public String callNewShipment (String filePath) throws IOException
   {
-    receiver.newShipment(filePath);
-    return "Done adding new shipment to the system.";
+    long startNanos = System.nanoTime();
+    try {
+      int rejected = receiver.newShipment(filePath);
+      if (rejected > 0) {
+        return "Done adding new shipment to the system; " + rejected
+            + " rows could not be read and were left out.";
+      }
+      return "Done adding new shipment to the system.";
+    } finally {
+      record("callNewShipment", startNanos);
+    }
   }
 
   /**
@@ -39,8 +59,13 @@ public class ReceiverButtonManager extends WorkerButtonManager {
    */
   public String callCheckout()
   {
-    receiver.checkout(inventory);
-    return "Pre-existing products are received.";
+    long startNanos = System.nanoTime();
+    try {
+      receiver.checkout(inventory);
+      return "Pre-existing products are received.";
+    } finally {
+      record("callCheckout", startNanos);
+    }
   }
 
   /**
@@ -48,7 +73,12 @@ public class ReceiverButtonManager extends WorkerButtonManager {
    * @return whether the new cart is empty
    */
   public boolean callIsNewCartEmpty() {
-    return receiver.isNewCartEmpty();
+    long startNanos = System.nanoTime();
+    try {
+      return receiver.isNewCartEmpty();
+    } finally {
+      record("callIsNewCartEmpty", startNanos);
+    }
   }
 
   /**
@@ -56,8 +86,13 @@ public class ReceiverButtonManager extends WorkerButtonManager {
    * @return a string that verifies that the new products are received.
    */
   public String callCheckoutNew() {
-    receiver.checkoutNew(inventory);
-    return "New products are received.";
+    long startNanos = System.nanoTime();
+    try {
+      receiver.checkoutNew(inventory);
+      return "New products are received.";
+    } finally {
+      record("callCheckoutNew", startNanos);
+    }
   }
 }
 
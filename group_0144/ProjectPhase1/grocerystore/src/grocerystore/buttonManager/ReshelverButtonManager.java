@@ -3,6 +3,7 @@ package grocerystore.buttonManager;
 import grocerystore.DisplayManager;
 import grocerystore.Inventory;
 import grocerystore.Reshelver;
+import grocerystore.Session;
 import java.io.IOException;
 
 /**
@@ -23,18 +24,43 @@ public class ReshelverButtonManager extends WorkerButtonManager {
     this.reshelver = reshelver;
   }
 
+  /**
+   * Sets up a ReshelverButtonManager for the terminal a Reshelver signed in at.
+   *
+   * @param session the session of the Reshelver
+   * @param inventory the inventory
+   */
+  public ReshelverButtonManager(Session session, Inventory inventory) {
+    super(session, inventory);
+    this.reshelver = (Reshelver) session.getWorker();
+  }
+
   /**
    * Calls the reshelvesCart method in <code>Reshelver</code>.
-   * @return A string that verifies that the cart has been reshelved.
+   * @return A string that says how many loads were reshelved and how many are left.
    * @throws IOException Throws an IOException.
    */
   public String callReshelvesCart() throws IOException
   {
-    reshelver.reshelvesCart(inventory);
-    return "All items in the cart are reshelved.";
+    long startNanos = System.nanoTime();
+    try {
+      int shelved = reshelver.reshelvesCart(inventory);
+      if (shelved == 0) {
+        return "There is nothing in the storage room to reshelve.";
+      }
+      return "Reshelved " + shelved + (shelved == 1 ? " load" : " loads") + ", "
+          + inventory.storedLoadCount() + " left in the storage room.";
+    } finally {
+      record("callReshelvesCart", startNanos);
+    }
   }
 
   public String callGetOrderHistory(String upc) {
-    return DisplayManager.displayMap(reshelver.getOrderHist(upc, inventory));
+    long startNanos = System.nanoTime();
+    try {
+      return DisplayManager.displayMap(reshelver.getOrderHist(upc, inventory));
+    } finally {
+      record("callGetOrderHistory", startNanos);
+    }
   }
 }
@@ -2,6 +2,8 @@ package grocerystore.buttonManager;
 
 import grocerystore.DisplayManager;
 import grocerystore.Inventory;
+import grocerystore.OperationMetrics;
+import grocerystore.Session;
 import grocerystore.Worker;
 import grocerystore.Receiver;
 
@@ -9,15 +11,19 @@ import grocerystore.Receiver;
  * The button manager receives input from the SignInPanel, LaunchPanel, WorkerPanel. For each panel,
  * it maps the function of each button to the corresponding method in the responsible class and
  * returns a String or boolean that for displaying in the Panels. Every
- * worker has its own button manager.
+ * worker has its own button manager. Every call is timed into OperationMetrics under the class of
+ * the button manager it was made on and the name of the method, such as
+ * CashierButtonManager.callAddToCart.
  */
 abstract public class WorkerButtonManager {
 
   /**
-   * The inventory and worker the button manager uses for some methods.
+   * The inventory and worker the button manager uses for some methods, and the session of the
+   * terminal it belongs to, if it belongs to one.
    */
   Inventory inventory;
   Worker worker;
+  Session session;
 
   /**
    * Create a WorkerButtonManager.
@@ -30,13 +36,39 @@ abstract public class WorkerButtonManager {
     this.inventory = inventory;
   }
 
+  /**
+   * Create a WorkerButtonManager for the terminal of a session.
+   *
+   * @param session The session of the worker at this terminal.
+   * @param inventory The inventory of the store.
+   */
+  public WorkerButtonManager(Session session, Inventory inventory) {
+    this(session.getWorker(), inventory);
+    this.session = session;
+  }
+
+  /**
+   * Records how long a call to this button manager took.
+   *
+   * @param operation the name of the method called
+   * @param startNanos the System.nanoTime() at which the call started
+   */
+  void record(String operation, long startNanos) {
+    OperationMetrics.record(getClass().getSimpleName() + "." + operation, startNanos);
+  }
+
   /**
    * Calls the clear cart method.
    * @return the string that verifies the cart is cleared
    */
   public String callClearCart() {
-    worker.clearCart();
-    return "Cart is cleared!";
+    long startNanos = System.nanoTime();
+    try {
+      worker.clearCart();
+      return "Cart is cleared!";
+    } finally {
+      record("callClearCart", startNanos);
+    }
   }
 
   /**
@@ -44,7 +76,12 @@ abstract public class WorkerButtonManager {
    * @return whether the cart is empty
    */
   public boolean callIsCartEmpty() {
-    return worker.isCartEmpty();
+    long startNanos = System.nanoTime();
+    try {
+      return worker.isCartEmpty();
+    } finally {
+      record("callIsCartEmpty", startNanos);
+    }
   }
 
   /**
@@ -53,14 +90,24 @@ abstract public class WorkerButtonManager {
    * @return whether the UPC is valid
    */
   public boolean callCheckUPCValid(String upc) {
-    return worker.checkUPCValid(upc, inventory);
+    long startNanos = System.nanoTime();
+    try {
+      return worker.checkUPCValid(upc, inventory);
+    } finally {
+      record("callCheckUPCValid", startNanos);
+    }
   }
 
   public boolean callIsInNewItems(String upc) {
-    if (worker instanceof Receiver) {
-      return ((Receiver) worker).isInNewItems(upc);
+    long startNanos = System.nanoTime();
+    try {
+      if (worker instanceof Receiver) {
+        return ((Receiver) worker).isInNewItems(upc);
+      }
+      return false;
+    } finally {
+      record("callIsInNewItems", startNanos);
     }
-    return false;
   }
   /**
    * Calls the checkCost method.
@@ -69,8 +116,12 @@ abstract public class WorkerButtonManager {
    * @return A string showing the cost per unit for the requested Product.
    */
   public String callCheckCost(String upc) {
-    Double cost = worker.checkCost(upc, inventory);
-    return cost.toString();
+    long startNanos = System.nanoTime();
+    try {
+      return DisplayManager.displayMoney(worker.checkCost(upc, inventory));
+    } finally {
+      record("callCheckCost", startNanos);
+    }
   }
 
   /**
@@ -78,16 +129,30 @@ abstract public class WorkerButtonManager {
    * @return A string that displays the content of the cart
    */
   public String callGetCart() {
-    return DisplayManager.displayMap(worker.getCart());
+    long startNanos = System.nanoTime();
+    try {
+      return DisplayManager.displayMap(worker.getCart());
+    } finally {
+      record("callGetCart", startNanos);
+    }
   }
 
   /**
-   * Calls the setNotActive method.
+   * Calls the setNotActive method, signing the worker out of this terminal.
    * @return A string that verifies the worker is not active.
    */
   public String callSetNotActive() {
-    worker.setActive();
-    return worker.toString() + " is not active.";
+    long startNanos = System.nanoTime();
+    try {
+      if (session != null) {
+        session.signOut();
+      } else {
+        worker.setNotActive();
+      }
+      return worker.toString() + " is not active.";
+    } finally {
+      record("callSetNotActive", startNanos);
+    }
   }
 
   /**
@@ -97,7 +162,12 @@ abstract public class WorkerButtonManager {
    * @param q The specified quantity of the product being added.
    */
   public void callAddToCart(String upc, Integer q) {
-    worker.addToCart(upc, q, inventory);
+    long startNanos = System.nanoTime();
+    try {
+      worker.addToCart(upc, q, inventory);
+    } finally {
+      record("callAddToCart", startNanos);
+    }
   }
 
   /**
@@ -106,7 +176,12 @@ abstract public class WorkerButtonManager {
    * @param upc the upc of the product
    */
   public void callRemoveFromCart(String upc) {
-    worker.removeFromCart(upc, inventory);
+    long startNanos = System.nanoTime();
+    try {
+      worker.removeFromCart(upc, inventory);
+    } finally {
+      record("callRemoveFromCart", startNanos);
+    }
   }
 
   /**
@@ -116,7 +191,12 @@ abstract public class WorkerButtonManager {
    * @return An integer variable showing aisle number for the requested Product.
    */
   public String callCheckLocation(String upc) {
-    return worker.checkLocation(upc, inventory).toString();
+    long startNanos = System.nanoTime();
+    try {
+      return worker.checkLocation(upc, inventory).toString();
+    } finally {
+      record("callCheckLocation", startNanos);
+    }
   }
 
   /**
@@ -125,7 +205,12 @@ abstract public class WorkerButtonManager {
    * @return a string representation of the current quantity
    */
   public String callCheckCurrQuantity(String upc) {
-    return worker.checkCurrQuantity(upc, inventory).toString();
+    long startNanos = System.nanoTime();
+    try {
+      return worker.checkCurrQuantity(upc, inventory).toString();
+    } finally {
+      record("callCheckCurrQuantity", startNanos);
+    }
   }
 
   /**
@@ -135,8 +220,13 @@ abstract public class WorkerButtonManager {
    * @param q The number of items of the Product in the cart.
    */
   public String callChangeQuantity(String upc, int q) {
-    worker.changeQuantity(upc, q, inventory);
-    return upc + " quantity has been changed to " + q;
+    long startNanos = System.nanoTime();
+    try {
+      worker.changeQuantity(upc, q, inventory);
+      return upc + " quantity has been changed to " + q;
+    } finally {
+      record("callChangeQuantity", startNanos);
+    }
   }
 
   /**
@@ -146,8 +236,13 @@ abstract public class WorkerButtonManager {
    * @param q the reorder quantity multiplier
    */
   public String callSetReOrderQuantity(String upc, Integer q) {
-    worker.setReOrderQuantity(upc, q, inventory);
-    return upc + " now has a ReOrder quantity of " + q;
+    long startNanos = System.nanoTime();
+    try {
+      worker.setReOrderQuantity(upc, q, inventory);
+      return upc + " now has a ReOrder quantity of " + q;
+    } finally {
+      record("callSetReOrderQuantity", startNanos);
+    }
   }
 
   // ==================================== QUERIES ======================================
@@ -159,24 +254,29 @@ abstract public class WorkerButtonManager {
    * @return a String of the answer to the question
    */
   public String callQuery(String question) {
-    switch (question) {
-      case "queryLocation": {
-        return DisplayManager.displayMap(worker.getLocations(inventory));
-      }
-      case "queryPrice": {
-        return DisplayManager.displayMap(worker.getPrices(inventory));
-      }
-      case "querySection": {
-        return DisplayManager.displayMap(worker.getSections(inventory));
-      }
-      case "queryQuantity": {
-        return DisplayManager.displayMap(worker.getQuantities(inventory));
-      }
-      case "queryThreshold": {
-        return DisplayManager.displayMap(worker.getThresholds(inventory));
+    long startNanos = System.nanoTime();
+    try {
+      switch (question) {
+        case "queryLocation": {
+          return DisplayManager.displayMap(worker.getLocations(inventory));
+        }
+        case "queryPrice": {
+          return DisplayManager.displayMap(worker.getPrices(inventory));
+        }
+        case "querySection": {
+          return DisplayManager.displayMap(worker.getSections(inventory));
+        }
+        case "queryQuantity": {
+          return DisplayManager.displayMap(worker.getQuantities(inventory));
+        }
+        case "queryThreshold": {
+          return DisplayManager.displayMap(worker.getThresholds(inventory));
+        }
+        default:
+          return "Sorry, that is not a valid query.";
       }
-      default:
-        return "Sorry, that is not a valid query.";
+    } finally {
+      record("callQuery", startNanos);
     }
   }
 
@@ -1,5 +1,6 @@
 package userView;
 import grocerystore.buttonManager.*;
+import grocerystore.Session;
 import grocerystore.Store;
 import javax.swing.*;
 import java.awt.CardLayout;
@@ -19,6 +20,7 @@ public class PanelContainer extends JPanel{
    * systemLaunched: boolean tracks if the Launch panel has set up the system.
    * personalFrame: allows for closure of the JFrame this panel resides in.
    * currStore: the Store that this system belongs to.
+   * session: the session of the worker signed in at this terminal.
    */
   private SignInPanel sIPanel = new SignInPanel();
   private LaunchPanel launchPanel = new LaunchPanel();
@@ -27,6 +29,7 @@ public class PanelContainer extends JPanel{
   private boolean systemLaunched;
   private JFrame personalFrame;
   private Store currStore;
+  private Session session;
 
 
   public PanelContainer(){
@@ -70,6 +73,28 @@ public class PanelContainer extends JPanel{
     return currStore.isAWorker(workerType, workerId);
   }
 
+  /**
+   * Signs a worker in at this terminal.
+   * @param workerType the type of worker: Manager, Cashier, Receiver, or Reshelver
+   * @param workerId a unique id given to each worker.
+   * @return True if the worker is now signed in here, false if there is no such worker or the
+   * worker is signed in at another terminal.
+   */
+  public boolean signIn(String workerType, String workerId){
+    session = currStore.signIn(workerType, workerId);
+    return session != null;
+  }
+
+  /**
+   * Gets the Store to check if this worker is signed in at some terminal.
+   * @param workerType the type of worker: Manager, Cashier, Receiver, or Reshelver
+   * @param workerId a unique id given to each worker.
+   * @return True if the worker is signed in.
+   */
+  public boolean getIsSignedIn(String workerType, String workerId){
+    return currStore.isSignedIn(workerType, workerId);
+  }
+
   /**
    * sets the JFrame this panel resides in.
    * @param frame The Jframe this panel resides in.
@@ -98,7 +123,7 @@ public class PanelContainer extends JPanel{
    */
   public void setUpCashier(){
     CashierPanel cashierPanel = new CashierPanel();
-    cashierPanel.setCashierBM(currStore.getCashierBM());
+    cashierPanel.setCashierBM(currStore.getCashierBM(session));
     cashierPanel.setSwitchAbility(cardlayout, this);
     add(cashierPanel, "Cashier Action Panel");
 
@@ -111,7 +136,7 @@ public class PanelContainer extends JPanel{
   public void setUpManager(){
     ManagerPanel managerPanel = new ManagerPanel();
     managerPanel.setSwitchAbility(cardlayout, this);
-    managerPanel.setManagerBM(currStore.getManagerBM());
+    managerPanel.setManagerBM(currStore.getManagerBM(session));
     managerPanel.setFrame(personalFrame);
     managerPanel.setSystemIOAbility(currStore);
     add(managerPanel, "Manager Action Panel");
@@ -126,7 +151,7 @@ public class PanelContainer extends JPanel{
     //add worker panels
     ReshelverPanel reshelverPanel = new ReshelverPanel();
     reshelverPanel.setSwitchAbility(cardlayout, this);
-    reshelverPanel.setReshelverBM(currStore.getReshelverBM());
+    reshelverPanel.setReshelverBM(currStore.getReshelverBM(session));
     add(reshelverPanel, "Reshelver Action Panel");
 
   }
@@ -138,7 +163,7 @@ public class PanelContainer extends JPanel{
   public void setUpReceiver(){
     ReceiverPanel receiverPanel = new ReceiverPanel();
     receiverPanel.setSwitchAbility(cardlayout, this);
-    receiverPanel.setReceiverBM(currStore.getReceiverBM());
+    receiverPanel.setReceiverBM(currStore.getReceiverBM(session));
     add(receiverPanel, "Receiver Action Panel");
 
   }
@@ -3,7 +3,7 @@ package userView;
 import grocerystore.buttonManager.ReceiverButtonManager;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import javax.swing.*;
@@ -68,7 +68,7 @@ public class ReceiverPanel extends WorkerPanel {
         try {
           newItemsFilePath = textField.getText();
           addTextDisplayAnswer(receiverBM.callNewShipment(newItemsFilePath));
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
           e.printStackTrace();
         }
       }
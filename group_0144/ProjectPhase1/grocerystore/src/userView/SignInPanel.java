@@ -137,7 +137,7 @@ public class SignInPanel extends JPanel {
         workerId = inputArea.getText();
         inputArea.setText("");
         if (workerId != null && workerType != null) {
-          if (parentPanel.getIsAWorker(workerType, workerId) && parentPanel.getSystemLaunched()) {
+          if (parentPanel.getSystemLaunched() && parentPanel.signIn(workerType, workerId)) {
             switch (workerType) {
               case "Cashier":
                 parentPanel.setUpCashier();
@@ -167,6 +167,9 @@ public class SignInPanel extends JPanel {
           } else if (!parentPanel.getIsAWorker(workerType, workerId)) {
             JOptionPane.showMessageDialog(null, "Position or "
                 + "Id incorrect!");
+          } else if (parentPanel.getIsSignedIn(workerType, workerId)) {
+            JOptionPane.showMessageDialog(null, "Already signed in "
+                + "at another terminal!");
           }
         }
         }